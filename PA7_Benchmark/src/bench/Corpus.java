@@ -0,0 +1,59 @@
+package bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Source programs for the benchmarks, by name
+// A name is a file of the custom_tests corpus, read from the directory in the
+// bench.corpus property (default ../PA7_Optimization/custom_tests), or a ProgramGenerator
+// spec such as gen:statements=4000:functions=16 for a generated program
+public final class Corpus {
+
+    private static final String CORPUS_DIR = System.getProperty("bench.corpus", "../PA7_Optimization/custom_tests");
+
+    private Corpus () {
+    }
+
+    public static String source (String name) throws IOException {
+        if (ProgramGenerator.isSpec(name)) {
+            return ProgramGenerator.parse(name).generate();
+        }
+        Path file = Paths.get(CORPUS_DIR, name + ".txt");
+        return Files.readString(file);
+    }
+
+    // whitespace separated input for the readInt/readBool calls of a program
+    public static byte[] input () {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            sb.append(i % 16 + 1).append(' ');
+        }
+        return sb.toString().getBytes();
+    }
+
+    // the compiler prints warnings, dot graphs and debugging output, keep them out of the results
+    private static PrintStream savedOut;
+    private static PrintStream savedErr;
+
+    public static void silence () {
+        if (savedOut == null) {
+            savedOut = System.out;
+            savedErr = System.err;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        }
+    }
+
+    public static void restore () {
+        if (savedOut != null) {
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+            savedOut = null;
+            savedErr = null;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ast.AST;
+import coco.Compiler;
+import coco.DLXMachine;
+import coco.Scanner;
+import coco.Token;
+import types.TypeChecker;
+
+// One benchmark per phase of CompilerTester, each timing only its phase
+// The input of a phase is rebuilt before every invocation by running the phases before it,
+// since several of them change the AST or SSA they are given
+// Run with "make run" for ops/s and, through -prof gc, the allocation rate of each phase
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+    private static final int NUM_REGS = 24;
+    private static final long STEP_BUDGET = 10_000_000;     // some programs never return
+
+    // Source of the program under test =======================================
+
+    @State(Scope.Benchmark)
+    public static class Source {
+        @Param({
+            "arrayAccess", "arrayCodeGen", "boolTest", "constantPropagation", "controlFlow",
+            "deadCode", "deadWithFunc", "foldLoops", "foldRelation", "funcArray", "ifStatement",
+            "largeWhile", "loopTest", "multiCalls", "multiDimArray", "problem", "problemRepeat",
+            "problemWhile", "recursive", "repeatLoop", "returns", "simpleStmt", "testIf",
+            "uninitWhile", "whileConst", "whileStatement"
+        })
+        public String program;
+
+        public String text;
+
+        @Setup(Level.Trial)
+        public void load () throws IOException {
+            Corpus.silence();
+            text = Corpus.source(program);
+        }
+
+        @TearDown(Level.Trial)
+        public void unload () {
+            Corpus.restore();
+        }
+
+        Compiler compiler () throws IOException {
+            return new Compiler(new Scanner(new StringReader(text)), NUM_REGS);
+        }
+    }
+
+    private static CommandLine commandLine (String... args) {
+        Options options = new Options();
+        options.addOption("max", "maxOpt", false, "");
+        try {
+            return new DefaultParser().parse(options, args);
+        }
+        catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    // Inputs of the phases ===================================================
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        Compiler compiler;
+        AST ast;
+
+        @Setup(Level.Invocation)
+        public void setup (Source source) throws IOException {
+            compiler = source.compiler();
+            ast = compiler.genAST();
+            if (ast.getRoot() == null) {
+                throw new IllegalStateException(source.program + " does not parse: " + compiler.errorReport());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Checked {
+        Compiler compiler;
+        AST ast;
+
+        @Setup(Level.Invocation)
+        public void setup (Source source) throws IOException {
+            compiler = source.compiler();
+            ast = compiler.genAST();
+            TypeChecker tc = new TypeChecker();
+            if (!tc.check(ast)) {
+                throw new IllegalStateException(source.program + " does not type check: " + tc.errorReport());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lowered {
+        @Param({"cp", "cf", "cpp", "cse", "dce", "max"})
+        public String opt;
+
+        Compiler compiler;
+        List<String> opts;
+        CommandLine cmd;
+
+        @Setup(Level.Invocation)
+        public void setup (Source source) throws IOException {
+            compiler = source.compiler();
+            AST ast = compiler.genAST();
+            new TypeChecker().check(ast);
+            compiler.genSSA(ast);
+            if (opt.equals("max")) {
+                opts = new ArrayList<>();
+                cmd = commandLine("-max");
+            }
+            else {
+                opts = Arrays.asList(opt);
+                cmd = commandLine();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Optimized {
+        Compiler compiler;
+
+        @Setup(Level.Invocation)
+        public void setup (Source source) throws IOException {
+            compiler = source.compiler();
+            AST ast = compiler.genAST();
+            new TypeChecker().check(ast);
+            compiler.genSSA(ast);
+            compiler.optimization(new ArrayList<>(), commandLine());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Allocated {
+        Compiler compiler;
+
+        @Setup(Level.Invocation)
+        public void setup (Source source) throws IOException {
+            compiler = source.compiler();
+            AST ast = compiler.genAST();
+            new TypeChecker().check(ast);
+            compiler.genSSA(ast);
+            compiler.optimization(new ArrayList<>(), commandLine());
+            compiler.regAlloc(NUM_REGS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Compiled {
+        @Param({"false", "true"})
+        public boolean translate;
+
+        DLXMachine machine;
+        int[] program;
+        byte[] input;
+
+        @Setup(Level.Trial)
+        public void setup (Source source) throws IOException {
+            Compiler compiler = source.compiler();
+            AST ast = compiler.genAST();
+            new TypeChecker().check(ast);
+            compiler.genSSA(ast);
+            compiler.optimization(new ArrayList<>(), commandLine());
+            compiler.regAlloc(NUM_REGS);
+            program = compiler.genCode();
+
+            machine = new DLXMachine(OutputStream.nullOutputStream(), new PrintStream(OutputStream.nullOutputStream()));
+            machine.setQuiet(true);
+            machine.setTranslate(translate);
+            machine.setLimits(STEP_BUDGET, 0);
+            input = Corpus.input();
+        }
+
+        // every run starts from freshly loaded memory; the translation is kept
+        @Setup(Level.Invocation)
+        public void reload () {
+            machine.load(program);
+        }
+    }
+
+    // Phases =================================================================
+
+    @Benchmark
+    public int scan (Source source) throws IOException {
+        Scanner scanner = new Scanner(new StringReader(source.text));
+        int tokens = 0;
+        while (!scanner.next().is(Token.Kind.EOF)) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    // parsing pulls its tokens from the scanner, so this includes scanning
+    @Benchmark
+    public AST genAST (Source source) throws IOException {
+        return source.compiler().genAST();
+    }
+
+    @Benchmark
+    public boolean typeCheck (Parsed parsed) {
+        return new TypeChecker().check(parsed.ast);
+    }
+
+    @Benchmark
+    public Object genSSA (Checked checked) {
+        return checked.compiler.genSSA(checked.ast);
+    }
+
+    // includes the uninitialized variable check and CFG cleanup that optimization always runs
+    @Benchmark
+    public String optimization (Lowered lowered) {
+        return lowered.compiler.optimization(lowered.opts, lowered.cmd);
+    }
+
+    @Benchmark
+    public void regAlloc (Optimized optimized) {
+        optimized.compiler.regAlloc(NUM_REGS);
+    }
+
+    @Benchmark
+    public int[] genCode (Allocated allocated) {
+        return allocated.compiler.genCode();
+    }
+
+    @Benchmark
+    public void execute (Compiled compiled, Blackhole bh) {
+        try {
+            compiled.machine.execute(new ByteArrayInputStream(compiled.input));
+        }
+        catch (DLXMachine.MachineError | IOException e) {
+            // out of steps or input, or a runtime error of the program: the work is done either way
+            bh.consume(e);
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Seeded generator of valid, type-correct coco programs of a chosen size
+// The same spec always gives the same program, and every generated program terminates:
+//   - all variables are initialized before the statements that use them
+//   - no variable is a compile time constant, since main reads the globals from the input and
+//     functions start from their parameters and array elements, so only expressions of literals
+//     fold, and those stay inside a 16 bit DLX immediate
+//   - only main uses the global scalars, functions share state with it through the arrays,
+//     their parameters and results, as the compiler keeps globals in registers across calls
+//   - loops count a dedicated counter up to a small bound and nothing else assigns it
+//   - array indices are literals or loop counters, both below every dimension
+//   - divisors and exponents are small positive literals, and only loop counters are raised to a power
+//   - functions only call functions declared before them, within a budget of executed statements
+// A spec is written "gen" followed by any of ":key=value", e.g. gen:statements=2000:depth=4
+//     functions    functions besides main                          (default 8)
+//     statements   statements in the whole program, excluding the
+//                  initialization and the final uses of the live variables (default 400)
+//     depth        deepest nesting of if, while and repeat         (default 3)
+//     dims         dimensions of the global arrays                 (default 2)
+//     live         int variables of each function kept live to its end (default 8)
+//     seed         random seed                                     (default 1)
+public final class ProgramGenerator {
+
+    public static final String PREFIX = "gen";
+
+    private static final int ARRAYS = 3;
+    private static final int GLOBAL_INTS = 4;
+    private static final int GLOBAL_BOOLS = 2;
+    private static final int MAX_BOUND = 4;         // loops run 1 to MAX_BOUND times
+    private static final int DIM_SIZE = MAX_BOUND;  // so any loop counter is a valid index
+    private static final int MAX_LITERAL = 40;      // 40 * 9^3, the largest folded value, fits an immediate
+    private static final long CALL_BUDGET = 200_000; // estimated statements executed by one call
+
+    private int functions = 8;
+    private int statements = 400;
+    private int depth = 3;
+    private int dims = 2;
+    private int live = 8;
+    private long seed = 1;
+
+    public ProgramGenerator () {
+    }
+
+    // prints the program of each spec, e.g. to feed one to CompilerTester
+    public static void main (String[] args) {
+        for (String spec : args.length == 0 ? new String[] {PREFIX} : args) {
+            System.out.print(parse(spec).generate());
+        }
+    }
+
+    public static boolean isSpec (String name) {
+        return name.equals(PREFIX) || name.startsWith(PREFIX + ":");
+    }
+
+    public static ProgramGenerator parse (String spec) {
+        if (!isSpec(spec)) {
+            throw new IllegalArgumentException("Not a generator spec: " + spec);
+        }
+        ProgramGenerator gen = new ProgramGenerator();
+        for (String field : spec.substring(PREFIX.length()).split(":")) {
+            if (field.isEmpty()) {
+                continue;
+            }
+            int eq = field.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value in " + spec + ": " + field);
+            }
+            String key = field.substring(0, eq);
+            long value = Long.parseLong(field.substring(eq + 1));
+            switch (key) {
+                case "functions":  gen.functions(value); break;
+                case "statements": gen.statements(value); break;
+                case "depth":      gen.depth(value); break;
+                case "dims":       gen.dims(value); break;
+                case "live":       gen.live(value); break;
+                case "seed":       gen.seed(value); break;
+                default:
+                    throw new IllegalArgumentException("Unknown generator parameter " + key + " in " + spec);
+            }
+        }
+        return gen;
+    }
+
+    public ProgramGenerator functions (long n) {
+        functions = (int) check("functions", n, 0);
+        return this;
+    }
+
+    public ProgramGenerator statements (long n) {
+        statements = (int) check("statements", n, 1);
+        return this;
+    }
+
+    public ProgramGenerator depth (long n) {
+        depth = (int) check("depth", n, 0);
+        return this;
+    }
+
+    public ProgramGenerator dims (long n) {
+        dims = (int) check("dims", n, 1);
+        return this;
+    }
+
+    public ProgramGenerator live (long n) {
+        live = (int) check("live", n, 1);
+        return this;
+    }
+
+    public ProgramGenerator seed (long n) {
+        seed = n;
+        return this;
+    }
+
+    private static long check (String key, long n, long min) {
+        if (n < min || n > 1_000_000) {
+            throw new IllegalArgumentException(key + " must be between " + min + " and 1000000, got " + n);
+        }
+        return n;
+    }
+
+    @Override
+    public String toString () {
+        return PREFIX + ":functions=" + functions + ":statements=" + statements + ":depth=" + depth
+             + ":dims=" + dims + ":live=" + live + ":seed=" + seed;
+    }
+
+    // Generation =============================================================
+
+    // one declared function: its name, parameter types and return type
+    private static final class Function {
+        final String name;
+        final boolean[] boolParams;
+        final Kind returns;
+        long cost = 1;
+
+        Function (String name, boolean[] boolParams, Kind returns) {
+            this.name = name;
+            this.boolParams = boolParams;
+            this.returns = returns;
+        }
+    }
+
+    private enum Kind { INT, BOOL, VOID }
+
+    private Random rand;
+    private StringBuilder out;
+    private List<Function> declared;
+
+    // scope of the function body being generated
+    private List<String> ints;
+    private List<String> bools;
+    private String counter;         // prefix of the loop counters, k in functions and m in main
+    private int loops;              // loops enclosing the current statement
+    private final List<String> counters = new ArrayList<>();    // their counters, innermost last
+    private long multiplier;        // estimated times the current statement runs per call
+    private Function current;
+
+    public String generate () {
+        rand = new Random(seed);
+        out = new StringBuilder(statements * 48 + 1024);
+        declared = new ArrayList<>();
+
+        out.append("// ").append(this).append('\n');
+        out.append("main\n\n");
+        StringBuilder shape = new StringBuilder();
+        for (int d = 0; d < dims; d++) {
+            shape.append("[ ").append(DIM_SIZE).append(" ]");
+        }
+        for (int a = 0; a < ARRAYS; a++) {
+            out.append("int ").append(shape).append(" a").append(a).append(";\n");
+        }
+        out.append("int ").append(names("g", GLOBAL_INTS)).append(";\n");
+        out.append("bool ").append(names("b", GLOBAL_BOOLS)).append(";\n");
+        // loop counters of main, which cannot have locals
+        out.append("int ").append(names("m", Math.max(1, Math.max(depth, dims)))).append(";\n\n");
+
+        // the statements are spread over the functions and main
+        int[] share = new int[functions + 1];
+        for (int s = 0; s < statements; s++) {
+            share[s % share.length]++;
+        }
+        for (int f = 0; f < functions; f++) {
+            function(f, share[f]);
+        }
+        mainBody(share[functions]);
+        return out.toString();
+    }
+
+    private static String names (String prefix, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : ", ").append(prefix).append(i);
+        }
+        return sb.toString();
+    }
+
+    private void function (int index, int count) {
+        int params = rand.nextInt(3);
+        boolean[] boolParams = new boolean[params];
+        for (int p = 0; p < params; p++) {
+            boolParams[p] = rand.nextInt(4) == 0;
+        }
+        Kind[] kinds = Kind.values();
+        current = new Function("f" + index, boolParams, kinds[rand.nextInt(kinds.length)]);
+        counter = "k";
+
+        out.append("function ").append(current.name).append(" (");
+        ints = new ArrayList<>();
+        bools = new ArrayList<>();
+        for (int p = 0; p < params; p++) {
+            String name = "p" + p;
+            out.append(p == 0 ? "" : ", ").append(boolParams[p] ? "bool " : "int ").append(name);
+            (boolParams[p] ? bools : ints).add(name);
+        }
+        out.append(") : ").append(current.returns.name().toLowerCase()).append("\n{\n");
+        locals();
+        body(count);
+
+        switch (current.returns) {
+            case INT:
+                out.append("    return ").append(liveSum()).append(";\n");
+                break;
+            case BOOL:
+                out.append("    return ").append(liveSum()).append(" > ").append(rand.nextInt(MAX_LITERAL)).append(";\n");
+                break;
+            default:
+                out.append("    ").append(array()).append(" = ").append(liveSum()).append(";\n");
+        }
+        out.append("};\n\n");
+        declared.add(current);
+    }
+
+    private void mainBody (int count) {
+        current = new Function("main", new boolean[0], Kind.VOID);
+        counter = "m";
+        ints = new ArrayList<>();
+        bools = new ArrayList<>();
+        out.append("{\n");
+        for (int g = 0; g < GLOBAL_INTS; g++) {
+            out.append("    g").append(g).append(" = call readInt();\n");
+            ints.add("g" + g);
+        }
+        for (int b = 0; b < GLOBAL_BOOLS; b++) {
+            out.append("    b").append(b).append(" = ").append(rand.nextBoolean()).append(";\n");
+            bools.add("b" + b);
+        }
+        arrayInit();
+        body(count);
+        out.append("    call printInt(").append(liveSum()).append(");\n");
+        for (String g : ints) {
+            out.append("    call printInt(").append(g).append(");\n");
+        }
+        out.append("    call println();\n");
+        out.append("}.\n");
+    }
+
+    // main writes every array element before anything reads them
+    private void arrayInit () {
+        for (int d = 0; d < dims; d++) {
+            String k = "m" + d;
+            out.append("    ".repeat(d + 1)).append(k).append(" = 0;\n");
+            out.append("    ".repeat(d + 1)).append("while (").append(k).append(" < ").append(DIM_SIZE).append(") do\n");
+        }
+        for (int a = 0; a < ARRAYS; a++) {
+            out.append("    ".repeat(dims + 1)).append("a").append(a);
+            for (int d = 0; d < dims; d++) {
+                out.append("[m").append(d).append("]");
+            }
+            out.append(" = g").append(a % GLOBAL_INTS).append(" + m").append(dims - 1).append(";\n");
+        }
+        for (int d = dims - 1; d >= 0; d--) {
+            out.append("    ".repeat(d + 2)).append("m").append(d).append("++;\n");
+            out.append("    ".repeat(d + 1)).append("od;\n");
+        }
+    }
+
+    // the live variables, one counter per loop level and a few bools, all initialized
+    private void locals () {
+        out.append("    int ").append(names("v", live));
+        for (int k = 0; k < depth; k++) {
+            out.append(", k").append(k);
+        }
+        out.append(";\n");
+        out.append("    bool ").append(names("c", 2)).append(";\n");
+        for (int v = 0; v < live; v++) {
+            out.append("    v").append(v).append(" = ");
+            out.append(v < ints.size() ? ints.get(v) : array());
+            out.append(" + ").append(rand.nextInt(MAX_LITERAL));
+            out.append(";\n");
+        }
+        for (int c = 0; c < 2; c++) {
+            out.append("    c").append(c).append(" = ").append(rand.nextBoolean()).append(";\n");
+        }
+        for (int v = 0; v < live; v++) {
+            ints.add("v" + v);
+        }
+        bools.add("c0");
+        bools.add("c1");
+    }
+
+    // uses every live variable once, so none of them dies before the end
+    private String liveSum () {
+        StringBuilder sb = new StringBuilder();
+        for (String v : ints) {
+            if (v.startsWith(current.name.equals("main") ? "g" : "v")) {
+                sb.append(sb.length() == 0 ? "" : " + ").append(v);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void body (int count) {
+        loops = 0;
+        multiplier = 1;
+        int left = count;
+        while (left > 0) {
+            left -= statement(1, left);
+        }
+    }
+
+    // Statements =============================================================
+
+    // writes a statement nested at level and returns the number of statements written,
+    // which may go slightly over budget
+    private int statement (int level, int budget) {
+        int pick = rand.nextInt(10);
+        if (level <= depth && budget >= 3 && pick < 3) {
+            switch (rand.nextInt(3)) {
+                case 0:  return ifStat(level, budget);
+                case 1:  return whileStat(level, budget);
+                default: return repeatStat(level, budget);
+            }
+        }
+        indent(level);
+        current.cost += multiplier;
+        if (pick < 4 && !declared.isEmpty() && callStat()) {
+            return 1;
+        }
+        if (pick < 5) {
+            out.append("call printInt(").append(intExpr(2)).append(");\n");
+        }
+        else if (pick < 6) {
+            out.append(array()).append(" = ").append(intExpr(2)).append(";\n");
+        }
+        else if (pick < 7) {
+            out.append(pickFrom(bools)).append(" = ").append(boolExpr(2)).append(";\n");
+        }
+        else {
+            assign();
+        }
+        return 1;
+    }
+
+    private void assign () {
+        String target = pickFrom(ints);
+        switch (rand.nextInt(8)) {
+            case 0:  out.append(target).append("++;\n"); break;
+            case 1:  out.append(target).append("--;\n"); break;
+            case 2:  out.append(target).append(" += ").append(intExpr(2)).append(";\n"); break;
+            case 3:  out.append(target).append(" -= ").append(intExpr(2)).append(";\n"); break;
+            case 4:  out.append(target).append(" *= ").append(1 + rand.nextInt(3)).append(";\n"); break;
+            case 5:  out.append(target).append(" /= ").append(1 + rand.nextInt(7)).append(";\n"); break;
+            default: out.append(target).append(" = ").append(varExpr(3)).append(";\n");
+        }
+    }
+
+    private boolean callStat () {
+        Function f = callee();
+        if (f == null) {
+            return false;
+        }
+        if (f.returns == Kind.INT) {
+            out.append(pickFrom(ints)).append(" = ").append(call(f)).append(";\n");
+        }
+        else if (f.returns == Kind.BOOL) {
+            out.append(pickFrom(bools)).append(" = ").append(call(f)).append(";\n");
+        }
+        else {
+            out.append(call(f)).append(";\n");
+        }
+        return true;
+    }
+
+    private int ifStat (int level, int budget) {
+        indent(level);
+        out.append("if (").append(boolExpr(2)).append(") then\n");
+        int used = 1 + block(level + 1, (budget - 1) / 2);
+        if (rand.nextBoolean() && budget - used >= 1) {
+            indent(level);
+            out.append("else\n");
+            used += block(level + 1, budget - used);
+        }
+        indent(level);
+        out.append("fi;\n");
+        return used;
+    }
+
+    private int whileStat (int level, int budget) {
+        String k = counter + loops;
+        int bound = 1 + rand.nextInt(MAX_BOUND);
+        indent(level);
+        out.append(k).append(" = 0;\n");
+        indent(level);
+        out.append("while (").append(k).append(" < ").append(bound).append(") do\n");
+        int used = 2 + enterLoop(level, budget - 2, bound);
+        indent(level + 1);
+        out.append(k).append("++;\n");
+        indent(level);
+        out.append("od;\n");
+        return used;
+    }
+
+    private int repeatStat (int level, int budget) {
+        String k = counter + loops;
+        int bound = 1 + rand.nextInt(MAX_BOUND);
+        indent(level);
+        out.append(k).append(" = 0;\n");
+        indent(level);
+        out.append("repeat\n");
+        int used = 2 + enterLoop(level, budget - 2, bound);
+        indent(level + 1);
+        out.append(k).append("++;\n");
+        indent(level);
+        out.append("until (").append(k).append(" >= ").append(bound).append(");\n");
+        return used;
+    }
+
+    // the counter is readable in the body, as an index among other things, but never assigned
+    private int enterLoop (int level, int budget, int bound) {
+        String k = counter + loops;
+        loops++;
+        long saved = multiplier;
+        multiplier *= bound;
+        counters.add(k);
+        int used = block(level + 1, Math.max(1, budget));
+        counters.remove(counters.size() - 1);
+        multiplier = saved;
+        loops--;
+        return used;
+    }
+
+    // a statSeq of at least one statement
+    private int block (int level, int budget) {
+        int target = 1 + rand.nextInt(Math.max(1, Math.min(budget, 8)));
+        int used = 0;
+        while (used < target) {
+            used += statement(level, target - used);
+        }
+        return used;
+    }
+
+    private void indent (int level) {
+        out.append("    ".repeat(level));
+    }
+
+    // Expressions ============================================================
+
+    private String intExpr (int size) {
+        if (size <= 0) {
+            return intAtom();
+        }
+        switch (rand.nextInt(9)) {
+            case 0:  return intExpr(size - 1) + " + " + intExpr(size - 1);
+            case 1:  return intExpr(size - 1) + " - " + intExpr(size - 1);
+            case 2:  return "(" + intExpr(size - 1) + ") * " + (1 + rand.nextInt(9));
+            case 3:  return "(" + intExpr(size - 1) + ") / " + (1 + rand.nextInt(9));
+            case 4:  return "(" + intExpr(size - 1) + ") % " + (1 + rand.nextInt(9));
+            case 5:
+                // DLX has no negative powers, and the counters are the only values known not to be
+                if (!counters.isEmpty()) {
+                    return pickFrom(counters) + " ^ " + (1 + rand.nextInt(2));
+                }
+                return intAtom();
+            case 6:  return "(" + intExpr(size - 1) + ")";
+            default: return intAtom();
+        }
+    }
+
+    // an expression with a variable in it, so it does not fold to a constant
+    private String varExpr (int size) {
+        String var = pickFrom(ints);
+        switch (rand.nextInt(3)) {
+            case 0:  return var + " + " + intExpr(size - 1);
+            case 1:  return intExpr(size - 1) + " - " + var;
+            default: return "(" + intExpr(size - 1) + ") * " + var;
+        }
+    }
+
+    private String intAtom () {
+        switch (rand.nextInt(6)) {
+            case 0:  return String.valueOf(rand.nextInt(MAX_LITERAL));
+            case 1:  return array();
+            case 2:  return pickFrom(counters.isEmpty() ? ints : counters);
+            default: return pickFrom(ints);
+        }
+    }
+
+    private String boolExpr (int size) {
+        if (size <= 0) {
+            return relation();
+        }
+        switch (rand.nextInt(6)) {
+            case 0:  return "(" + boolExpr(size - 1) + ") and (" + boolExpr(size - 1) + ")";
+            case 1:  return "(" + boolExpr(size - 1) + ") or (" + boolExpr(size - 1) + ")";
+            case 2:  return "not (" + boolExpr(size - 1) + ")";
+            case 3:  return pickFrom(bools);
+            default: return relation();
+        }
+    }
+
+    private static final String[] REL_OPS = {"==", "!=", "<", "<=", ">", ">="};
+
+    private String relation () {
+        return intExpr(1) + " " + REL_OPS[rand.nextInt(REL_OPS.length)] + " " + intExpr(1);
+    }
+
+    // an element of a global array, indexed by literals and enclosing loop counters
+    private String array () {
+        StringBuilder sb = new StringBuilder("a").append(rand.nextInt(ARRAYS));
+        for (int d = 0; d < dims; d++) {
+            sb.append('[');
+            if (!counters.isEmpty() && rand.nextBoolean()) {
+                sb.append(pickFrom(counters));
+            } else {
+                sb.append(rand.nextInt(DIM_SIZE));
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    // Calls ==================================================================
+
+    // an earlier function whose cost, times how often this statement runs, stays in budget
+    private Function callee () {
+        for (int tries = 0; tries < 4; tries++) {
+            Function f = declared.get(rand.nextInt(declared.size()));
+            long added = multiplier * f.cost;
+            if (current.cost + added <= CALL_BUDGET) {
+                current.cost += added;
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private String call (Function f) {
+        StringBuilder sb = new StringBuilder("call ").append(f.name).append('(');
+        for (int p = 0; p < f.boolParams.length; p++) {
+            sb.append(p == 0 ? "" : ", ").append(f.boolParams[p] ? boolExpr(0) : intExpr(1));
+        }
+        return sb.append(')').toString();
+    }
+
+    private String pickFrom (List<String> names) {
+        return names.get(rand.nextInt(names.size()));
+    }
+}
@@ -0,0 +1,252 @@
+package bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import ast.AST;
+import coco.Compiler;
+import coco.Scanner;
+import coco.Token;
+import ir.SSA;
+import types.TypeChecker;
+
+// Compile time and memory of each compiler phase against the size of generated programs
+// For every size, a program of that many statements is generated from the spec and compiled
+// reps times after as many warmup compilations, then once more with a GC around each phase
+// Prints CSV to stdout, one row per size and phase, for plotting:
+//     statements  statements of the generated program
+//     tokens      tokens the scanner returns for it
+//     phase       scan, genAST, typeCheck, genSSA, dot (SSA.asDotGraph), optimization, regAlloc, genCode
+//     millis      median time of the phase
+//     allocMB     memory allocated by the phase, median
+//     retainedMB  growth of the live heap over the phase
+// followed on stderr by the growth exponent of each phase, the fitted slope of log(millis)
+// against log(tokens) over the sizes: about 1 for linear phases and 2 for quadratic ones
+//     java bench.ScalingBenchmark -spec gen:functions=16:depth=4 -sizes 500,1000,2000 -reps 5
+public final class ScalingBenchmark {
+
+    private static final int NUM_REGS = 24;
+    private static final String[] PHASES = {
+        "scan", "genAST", "typeCheck", "genSSA", "dot", "optimization", "regAlloc", "genCode"
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final ProgramGenerator generator;
+    private final boolean maxOpt;
+    private final List<String> opts;
+    private final int reps;
+
+    // per phase of the compilation being measured
+    private final long[] nanos = new long[PHASES.length];
+    private final long[] allocated = new long[PHASES.length];
+    private final long[] retained = new long[PHASES.length];
+    private boolean measureRetained;
+
+    private ScalingBenchmark (ProgramGenerator generator, String opt, int reps) {
+        this.generator = generator;
+        this.maxOpt = opt.equals("max");
+        this.opts = maxOpt || opt.isEmpty() ? new ArrayList<>() : Arrays.asList(opt.split(","));
+        this.reps = reps;
+    }
+
+    public static void main (String[] args) throws IOException {
+        Options options = new Options();
+        options.addOption("spec", "spec", true, "Generator spec, statements is replaced by each size, default gen");
+        options.addOption("sizes", "sizes", true, "Comma separated statement counts, default 250,500,1000,2000,4000,8000");
+        options.addOption("reps", "reps", true, "Measured compilations per size, default 5");
+        options.addOption("o", "opt", true, "Comma separated optimizations, or max (default)");
+
+        CommandLine cmd = null;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        }
+        catch (ParseException e) {
+            new HelpFormatter().printHelp("ScalingBenchmark", options);
+            System.exit(-1);
+        }
+
+        ProgramGenerator generator = ProgramGenerator.parse(cmd.getOptionValue("spec", ProgramGenerator.PREFIX));
+        int reps = Math.max(1, Integer.parseInt(cmd.getOptionValue("reps", "5")));
+        String[] sizes = cmd.getOptionValue("sizes", "250,500,1000,2000,4000,8000").split(",");
+        new ScalingBenchmark(generator, cmd.getOptionValue("opt", "max"), reps).run(sizes, System.out, System.err);
+    }
+
+    private void run (String[] sizes, PrintStream csv, PrintStream summary) throws IOException {
+        csv.println("statements,tokens,phase,millis,allocMB,retainedMB");
+        double[][] millis = new double[sizes.length][PHASES.length];
+        int[] tokens = new int[sizes.length];
+
+        for (int s = 0; s < sizes.length; s++) {
+            int statements = Integer.parseInt(sizes[s].trim());
+            String text = generator.statements(statements).generate();
+            summary.println("compiling " + generator);
+
+            long[][] repNanos = new long[PHASES.length][reps];
+            long[][] repAlloc = new long[PHASES.length][reps];
+            Corpus.silence();
+            try {
+                for (int r = 0; r < reps; r++) {
+                    tokens[s] = compile(text);        // warmup
+                }
+                for (int r = 0; r < reps; r++) {
+                    compile(text);
+                    for (int p = 0; p < PHASES.length; p++) {
+                        repNanos[p][r] = nanos[p];
+                        repAlloc[p][r] = allocated[p];
+                    }
+                }
+                measureRetained = true;
+                compile(text);
+                measureRetained = false;
+            }
+            finally {
+                Corpus.restore();
+            }
+
+            for (int p = 0; p < PHASES.length; p++) {
+                millis[s][p] = median(repNanos[p]) / 1e6;
+                csv.println(String.format(Locale.ROOT, "%d,%d,%s,%.3f,%.3f,%.3f", statements, tokens[s], PHASES[p],
+                                          millis[s][p], median(repAlloc[p]) / 1e6, retained[p] / 1e6));
+            }
+            csv.flush();
+        }
+
+        if (sizes.length > 1) {
+            summary.println();
+            summary.println(String.format("%-14s %s", "phase", "growth exponent (millis ~ tokens^k)"));
+            for (int p = 0; p < PHASES.length; p++) {
+                summary.println(String.format(Locale.ROOT, "%-14s %.2f", PHASES[p], slope(tokens, millis, p)));
+            }
+        }
+    }
+
+    // runs every phase on the program, filling in nanos, allocated and retained,
+    // and returns the number of tokens
+    private int compile (String text) throws IOException {
+        int p = 0;
+
+        start();
+        Scanner scanner = new Scanner(new StringReader(text));
+        int tokens = 0;
+        while (!scanner.next().is(Token.Kind.EOF)) {
+            tokens++;
+        }
+        stop(p++);
+
+        Compiler compiler = new Compiler(new Scanner(new StringReader(text)), NUM_REGS);
+        start();
+        AST ast = compiler.genAST();
+        stop(p++);
+        if (ast.getRoot() == null) {
+            throw new IllegalStateException(generator + " does not parse: " + compiler.errorReport());
+        }
+
+        start();
+        TypeChecker tc = new TypeChecker();
+        boolean checked = tc.check(ast);
+        stop(p++);
+        if (!checked) {
+            throw new IllegalStateException(generator + " does not type check: " + tc.errorReport());
+        }
+
+        start();
+        SSA ssa = compiler.genSSA(ast);
+        stop(p++);
+
+        start();
+        ssa.asDotGraph();
+        stop(p++);
+
+        start();
+        compiler.optimization(new ArrayList<>(opts), optimizationOptions());
+        stop(p++);
+
+        start();
+        compiler.regAlloc(NUM_REGS);
+        stop(p++);
+
+        start();
+        compiler.genCode();
+        stop(p++);
+        if (compiler.hasError()) {
+            throw new IllegalStateException(generator + " does not compile: " + compiler.errorReport());
+        }
+        return tokens;
+    }
+
+    private CommandLine optimizationOptions () {
+        Options options = new Options();
+        options.addOption("max", "maxOpt", false, "");
+        try {
+            return new DefaultParser().parse(options, maxOpt ? new String[] {"-max"} : new String[0]);
+        }
+        catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    // Measurement ============================================================
+
+    private long startNanos;
+    private long startAllocated;
+    private long startUsed;
+
+    private void start () {
+        if (measureRetained) {
+            startUsed = usedAfterGC();
+        }
+        startAllocated = THREADS.getCurrentThreadAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    private void stop (int phase) {
+        nanos[phase] = System.nanoTime() - startNanos;
+        allocated[phase] = THREADS.getCurrentThreadAllocatedBytes() - startAllocated;
+        if (measureRetained) {
+            retained[phase] = usedAfterGC() - startUsed;
+        }
+    }
+
+    private static long usedAfterGC () {
+        System.gc();
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    // least squares slope of log(millis[][phase]) against log(tokens)
+    private static double slope (int[] tokens, double[][] millis, int phase) {
+        int n = tokens.length;
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (int i = 0; i < n; i++) {
+            double x = Math.log(tokens[i]);
+            double y = Math.log(Math.max(millis[i][phase], 1e-3));
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+        }
+        return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+    }
+
+    private static double median (long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+    }
+}
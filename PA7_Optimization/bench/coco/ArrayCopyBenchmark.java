@@ -0,0 +1,138 @@
+package coco;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Micro-benchmark for ARRCPY: the old word by word copy against System.arraycopy on a
+// bare int[], then whole DLX programs copying with ARRCPY against an LDW/STW loop
+// Run with "make bench-arrcpy"
+public class ArrayCopyBenchmark {
+
+    private static final int WORDS = 16000;     // largest count an ADDI immediate can hold
+    private static final int REPS = 200;
+    private static final int ROUNDS = 5;        // the first ones warm up the JIT
+
+    private static final int DST_TOP = WORDS + 100;
+    private static final int SRC_TOP = 2 * WORDS + 200;
+    private static final int MEM_SIZE = 4 * (SRC_TOP + 100);
+
+    public static void main (String[] args) throws IOException {
+        arrays();
+        System.out.println();
+        programs();
+    }
+
+// Bare memory ================================================================
+
+    // the loop DLXMachine used to run for ARRCPY
+    private static void loopCopy (int[] M, int dst, int src, int count) {
+        for (int i = 0; i < count; i++) {
+            M[(dst - 4*i) / 4] = M[(src - 4*i) / 4];
+        }
+    }
+
+    private static void arrays () {
+        int[] M = new int[MEM_SIZE / 4];
+        for (int i = 0; i < M.length; i++) {
+            M[i] = i;
+        }
+        System.out.println(String.format("Copying %d words %d times:", WORDS, REPS));
+        double loop = 0, bulk = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int rep = 0; rep < REPS; rep++) {
+                loopCopy(M, 4 * DST_TOP, 4 * SRC_TOP, WORDS);
+            }
+            loop = millis(start);
+
+            start = System.nanoTime();
+            for (int rep = 0; rep < REPS; rep++) {
+                System.arraycopy(M, SRC_TOP - WORDS + 1, M, DST_TOP - WORDS + 1, WORDS);
+            }
+            bulk = millis(start);
+        }
+        System.out.println(String.format("  %-24s %10.2f ms", "word by word", loop));
+        System.out.println(String.format("  %-24s %10.2f ms  (%.1fx)", "System.arraycopy", bulk, loop / bulk));
+    }
+
+// DLX programs ===============================================================
+
+    // R1, R2 = top destination and source addresses, R3 = count, R4 = repetitions
+    private static int[] prologue () {
+        return new int[] {
+            DLX.assemble(DLX.ADDI, 1, 0, DST_TOP),
+            DLX.assemble(DLX.LSHI, 1, 1, 2),
+            DLX.assemble(DLX.ADDI, 2, 0, SRC_TOP),
+            DLX.assemble(DLX.LSHI, 2, 2, 2),
+            DLX.assemble(DLX.ADDI, 3, 0, WORDS),
+            DLX.assemble(DLX.ADDI, 4, 0, REPS),
+        };
+    }
+
+    private static int[] arrcpyProgram () {
+        return concat(prologue(), new int[] {
+            DLX.assemble(DLX.ARRCPY, 1, 2, 3),
+            DLX.assemble(DLX.SUBI, 4, 4, 1),
+            DLX.assemble(DLX.BGT, 4, -2),
+            DLX.assemble(DLX.RET, 0),
+        });
+    }
+
+    // what a compiler without ARRCPY emits for the same copy
+    private static int[] loopProgram () {
+        return concat(prologue(), new int[] {
+            DLX.assemble(DLX.ADD, 5, 0, 3),
+            DLX.assemble(DLX.ADD, 6, 0, 1),
+            DLX.assemble(DLX.ADD, 7, 0, 2),
+            DLX.assemble(DLX.LDW, 8, 7, 0),
+            DLX.assemble(DLX.STW, 8, 6, 0),
+            DLX.assemble(DLX.SUBI, 6, 6, 4),
+            DLX.assemble(DLX.SUBI, 7, 7, 4),
+            DLX.assemble(DLX.SUBI, 5, 5, 1),
+            DLX.assemble(DLX.BGT, 5, -5),
+            DLX.assemble(DLX.SUBI, 4, 4, 1),
+            DLX.assemble(DLX.BGT, 4, -10),
+            DLX.assemble(DLX.RET, 0),
+        });
+    }
+
+    private static int[] concat (int[] first, int[] second) {
+        int[] all = new int[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+    private static double run (int[] program, boolean translate) throws IOException {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            DLXMachine machine = new DLXMachine(MEM_SIZE, false, OutputStream.nullOutputStream(),
+                    new PrintStream(OutputStream.nullOutputStream()));
+            machine.setTranslate(translate);
+            machine.load(program);
+            long start = System.nanoTime();
+            machine.execute(new ByteArrayInputStream(new byte[0]));
+            best = Math.min(best, millis(start));
+        }
+        return best;
+    }
+
+    private static void programs () throws IOException {
+        int[] arrcpy = arrcpyProgram();
+        int[] loop = loopProgram();
+        System.out.println(String.format("DLX programs copying %d words %d times (best of %d):", WORDS, REPS, ROUNDS));
+        for (boolean translate : new boolean[] {false, true}) {
+            double loopTime = run(loop, translate);
+            double arrcpyTime = run(arrcpy, translate);
+            String mode = translate ? "translated" : "interpreted";
+            System.out.println(String.format("  %-24s %10.2f ms", "LDW/STW loop, " + mode, loopTime));
+            System.out.println(String.format("  %-24s %10.2f ms  (%.1fx)", "ARRCPY, " + mode, arrcpyTime, loopTime / arrcpyTime));
+        }
+    }
+
+    private static double millis (long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
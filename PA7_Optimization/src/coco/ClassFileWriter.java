@@ -0,0 +1,458 @@
+package coco;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Minimal class file writer for the classes generated by DLXTranslator
+// Writes version 49 class files, which are verified by type inference and need no StackMapTable
+public class ClassFileWriter {
+
+    // opcodes
+    static final int ICONST_M1 = 0x02;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int FLOAD = 0x17;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int ISTORE = 0x36;
+    static final int FSTORE = 0x38;
+    static final int IASTORE = 0x4f;
+    static final int POP = 0x57;
+    static final int IADD = 0x60;
+    static final int FADD = 0x62;
+    static final int ISUB = 0x64;
+    static final int FSUB = 0x66;
+    static final int IMUL = 0x68;
+    static final int FMUL = 0x6a;
+    static final int IDIV = 0x6c;
+    static final int FDIV = 0x6e;
+    static final int IREM = 0x70;
+    static final int FREM = 0x72;
+    static final int INEG = 0x74;
+    static final int ISHL = 0x78;
+    static final int ISHR = 0x7a;
+    static final int IUSHR = 0x7c;
+    static final int IAND = 0x7e;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int I2D = 0x87;
+    static final int L2I = 0x88;
+    static final int FCMPL = 0x95;
+    static final int FCMPG = 0x96;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int TABLESWITCH = 0xaa;
+    static final int LOOKUPSWITCH = 0xab;
+    static final int IRETURN = 0xac;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+
+    // access flags
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    // constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> poolIndex = new HashMap<String, Integer>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<Method> methods = new ArrayList<Method>();
+
+    public ClassFileWriter (String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+// Constant Pool ==============================================================
+    private int entry (String key) {
+        Integer idx = poolIndex.get(key);
+        return idx == null ? 0 : idx;
+    }
+
+    private int add (String key) {
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    int utf8 (String s) {
+        int idx = entry("U" + s);
+        if (idx == 0) {
+            try {
+                pool.writeByte(CONSTANT_UTF8);
+                pool.writeUTF(s);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            idx = add("U" + s);
+        }
+        return idx;
+    }
+
+    int classRef (String name) {
+        int nameIdx = utf8(name);
+        int idx = entry("C" + name);
+        if (idx == 0) {
+            write(CONSTANT_CLASS, nameIdx);
+            idx = add("C" + name);
+        }
+        return idx;
+    }
+
+    int methodRef (String owner, String name, String desc) {
+        int ownerIdx = classRef(owner);
+        int nameIdx = utf8(name);
+        int descIdx = utf8(desc);
+        int ntIdx = entry("N" + name + ":" + desc);
+        if (ntIdx == 0) {
+            write(CONSTANT_NAME_AND_TYPE, nameIdx, descIdx);
+            ntIdx = add("N" + name + ":" + desc);
+        }
+        String key = "M" + owner + "." + name + ":" + desc;
+        int idx = entry(key);
+        if (idx == 0) {
+            write(CONSTANT_METHODREF, ownerIdx, ntIdx);
+            idx = add(key);
+        }
+        return idx;
+    }
+
+    int intConst (int val) {
+        int idx = entry("I" + val);
+        if (idx == 0) {
+            try {
+                pool.writeByte(CONSTANT_INTEGER);
+                pool.writeInt(val);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            idx = add("I" + val);
+        }
+        return idx;
+    }
+
+    int floatConst (float val) {
+        int bits = Float.floatToRawIntBits(val);
+        int idx = entry("F" + bits);
+        if (idx == 0) {
+            try {
+                pool.writeByte(CONSTANT_FLOAT);
+                pool.writeInt(bits);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            idx = add("F" + bits);
+        }
+        return idx;
+    }
+
+    private void write (int tag, int... shorts) {
+        try {
+            pool.writeByte(tag);
+            for (int s : shorts) {
+                pool.writeShort(s);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+// Methods ====================================================================
+    public Method method (int access, String name, String desc, int maxStack, int maxLocals) {
+        Method m = new Method(access, name, desc, maxStack, maxLocals);
+        methods.add(m);
+        return m;
+    }
+
+    // Branch target inside a method, resolved when the method is written
+    public static class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<int[]>();  // {opcode position, patch position, width}
+    }
+
+    public class Method {
+        private final int access, name, desc, maxStack, maxLocals;
+        private byte[] code = new byte[256];
+        private int length = 0;
+        private final List<Label> labels = new ArrayList<Label>();
+        private final List<Object[]> handlers = new ArrayList<Object[]>();
+
+        private Method (int access, String name, String desc, int maxStack, int maxLocals) {
+            this.access = access;
+            this.name = utf8(name);
+            this.desc = utf8(desc);
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        public int size () {
+            return length;
+        }
+
+        private void put (int b) {
+            if (length == code.length) {
+                code = java.util.Arrays.copyOf(code, code.length * 2);
+            }
+            code[length++] = (byte) b;
+        }
+
+        private void put2 (int s) {
+            put(s >>> 8);
+            put(s);
+        }
+
+        private void put4 (int i) {
+            put2(i >>> 16);
+            put2(i);
+        }
+
+        public void op (int opcode) {
+            put(opcode);
+        }
+
+        public void iload (int local) {
+            put(ILOAD);
+            put(local);
+        }
+
+        public void istore (int local) {
+            put(ISTORE);
+            put(local);
+        }
+
+        public void fload (int local) {
+            put(FLOAD);
+            put(local);
+        }
+
+        public void fstore (int local) {
+            put(FSTORE);
+            put(local);
+        }
+
+        public void aload (int local) {
+            put(ALOAD);
+            put(local);
+        }
+
+        // push an int constant with the shortest encoding
+        public void iconst (int val) {
+            if (val >= -1 && val <= 5) {
+                put(ICONST_0 + val);
+            }
+            else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE) {
+                put(BIPUSH);
+                put(val);
+            }
+            else if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE) {
+                put(SIPUSH);
+                put2(val);
+            }
+            else {
+                ldc(intConst(val));
+            }
+        }
+
+        public void fconst (float val) {
+            ldc(floatConst(val));
+        }
+
+        private void ldc (int idx) {
+            if (idx < 256) {
+                put(LDC);
+                put(idx);
+            }
+            else {
+                put(LDC_W);
+                put2(idx);
+            }
+        }
+
+        public void invoke (int opcode, String owner, String name, String desc) {
+            put(opcode);
+            put2(methodRef(owner, name, desc));
+        }
+
+        public Label label () {
+            Label l = new Label();
+            labels.add(l);
+            return l;
+        }
+
+        public void mark (Label l) {
+            l.position = length;
+        }
+
+        // conditional branch or goto
+        public void jump (int opcode, Label target) {
+            int at = length;
+            put(opcode);
+            target.fixups.add(new int[] {at, length, 2});
+            put2(0);
+        }
+
+        public void lookupswitch (Label dflt, int[] keys, Label[] targets) {
+            int at = length;
+            put(LOOKUPSWITCH);
+            while (length % 4 != 0) {
+                put(0);
+            }
+            dflt.fixups.add(new int[] {at, length, 4});
+            put4(0);
+            put4(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                put4(keys[i]);
+                targets[i].fixups.add(new int[] {at, length, 4});
+                put4(0);
+            }
+        }
+
+        public void tableswitch (Label dflt, int low, Label[] targets) {
+            int at = length;
+            put(TABLESWITCH);
+            while (length % 4 != 0) {
+                put(0);
+            }
+            dflt.fixups.add(new int[] {at, length, 4});
+            put4(0);
+            put4(low);
+            put4(low + targets.length - 1);
+            for (Label l : targets) {
+                l.fixups.add(new int[] {at, length, 4});
+                put4(0);
+            }
+        }
+
+        // catch exceptions of type thrown from [start, end) at handler
+        public void handler (Label start, Label end, Label handler, String type) {
+            handlers.add(new Object[] {start, end, handler, classRef(type)});
+        }
+
+        private void resolve () {
+            for (Label l : labels) {
+                for (int[] fix : l.fixups) {
+                    if (l.position < 0) {
+                        throw new IllegalStateException("Unplaced label in " + name);
+                    }
+                    int offset = l.position - fix[0];
+                    if (fix[2] == 2) {
+                        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                            throw new IllegalStateException("Branch offset too large in " + name);
+                        }
+                        code[fix[1]] = (byte) (offset >>> 8);
+                        code[fix[1] + 1] = (byte) offset;
+                    }
+                    else {
+                        for (int i = 0; i < 4; i++) {
+                            code[fix[1] + i] = (byte) (offset >>> (24 - 8*i));
+                        }
+                    }
+                }
+            }
+        }
+
+        private void writeTo (DataOutputStream out) throws IOException {
+            resolve();
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(desc);
+            out.writeShort(1);
+
+            // Code attribute
+            out.writeShort(utf8Code);
+            out.writeInt(12 + length + 8 * handlers.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(handlers.size());
+            for (Object[] h : handlers) {
+                out.writeShort(((Label) h[0]).position);
+                out.writeShort(((Label) h[1]).position);
+                out.writeShort(((Label) h[2]).position);
+                out.writeShort((Integer) h[3]);
+            }
+            out.writeShort(0);
+        }
+    }
+
+    private int utf8Code;
+
+    public byte[] toByteArray () {
+        utf8Code = utf8("Code");
+        for (Method m : methods) {
+            if (m.length > 65535) {
+                throw new IllegalStateException("Method too large");
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces) {
+                out.writeShort(i);
+            }
+            out.writeShort(0);  // fields
+            out.writeShort(methods.size());
+            for (Method m : methods) {
+                m.writeTo(out);
+            }
+            out.writeShort(0);  // attributes
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.TreeMap;
 import java.util.HashSet;
 
@@ -28,6 +29,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
     private Variable[] spillRegs;
     private int usedSpill = 0;
 
+    // Bytes pushed while calling, spilled locals are that much further from SP
+    private int pushedBytes = 0;
+
     private HashMap<Symbol, Integer> globalOffsets;
     private HashMap<Symbol, Integer> localOffsets;
     private HashMap<Symbol, Integer> paramOffsets;
@@ -85,7 +89,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 }
                 // Pull from local space
                 else if (v.isLocal()) {
-                    currInstr.add(DLX.assemble(DLX.LDW, reg, SP, localOffsets.get(v.symbol())));
+                    currInstr.add(DLX.assemble(DLX.LDW, reg, SP, localOffsets.get(v.symbol()) + pushedBytes));
                 }
                 // Store in parameter space
                 else {
@@ -105,13 +109,20 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
     private int allocateSize(List<Symbol> vars, HashMap<Symbol, Integer> offsets) {
         int totalSize = 0;
         
-        // Allocate
+        // Allocate scalars first, so their offsets fit in LDW/STW immediates however large the arrays are
         for (Symbol s : vars) {
-            // Track offset from end of memory
-            offsets.put(s, totalSize);
+            if (!(s.type() instanceof ArrayType)) {
+                // Track offset from end of memory
+                offsets.put(s, totalSize);
+                totalSize += 4;
+            }
+        }
 
-            // If array, need to account for all values
+        // Then arrays, which need to account for all values
+        for (Symbol s : vars) {
             if (s.type() instanceof ArrayType) {
+                offsets.put(s, totalSize);
+
                 ArrayType currType = (ArrayType) s.type();
                 int arrSize = currType.numElements() * 4;
 
@@ -122,15 +133,46 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
 
                 totalSize += arrSize;
             }
-            // Otherwise, the variable is 4 bytes
-            else {
-                totalSize += 4;
-            }
         }
 
         return totalSize;
     }
 
+    // F1 immediates are 16-bit signed, larger sizes and offsets are built in a register
+    private static boolean fitsImmediate(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    // reg = value, for 0 <= value < 2^30
+    private void loadConstant(List<Integer> code, int reg, int value) {
+        code.add(DLX.assemble(DLX.ADDI, reg, zeroReg, value >>> 15));
+        code.add(DLX.assemble(DLX.LSHI, reg, reg, 15));
+        code.add(DLX.assemble(DLX.ORI, reg, reg, value & 0x7FFF));
+    }
+
+    // dest = src - size, e.g. to move GDB or SP past a large global section or frame
+    private void subtractSize(List<Integer> code, int dest, int src, int size) {
+        if (fitsImmediate(size)) {
+            code.add(DLX.assemble(DLX.SUBI, dest, src, size));
+        } else {
+            loadConstant(code, spillReg1, size);
+            code.add(DLX.assemble(DLX.SUB, dest, src, spillReg1));
+        }
+    }
+
+    // dest = base + offset, building offsets past the immediate range in the scratch return register
+    private void addOffset(List<Integer> code, int dest, int base, int offset) {
+        if (fitsImmediate(offset) || Math.abs(offset) >= 1 << 30) {
+            code.add(DLX.assemble(DLX.ADDI, dest, base, offset));
+        } else if (offset > 0) {
+            loadConstant(code, returnReg, offset);
+            code.add(DLX.assemble(DLX.ADD, dest, base, returnReg));
+        } else {
+            loadConstant(code, returnReg, -offset);
+            code.add(DLX.assemble(DLX.SUB, dest, base, returnReg));
+        }
+    }
+
     public int[] generate(SSA ssa, HashMap<Variable, Integer> regAllocs, List<Symbol> globalSymbols) {
         // Generate reassignment sets for globals
         ReassignedSetGenerator reassignSetGen = new ReassignedSetGenerator();
@@ -162,7 +204,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
 
         // Move GDB past global section
         if (globalSize > 0) {
-            instructions.add(DLX.assemble(DLX.SUBI, GDB, GDB, globalSize));
+            subtractSize(instructions, GDB, GDB, globalSize);
         }
 
         // System.out.println("GLOBAL OFFSETS:");
@@ -183,11 +225,14 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
 
         int localSize = allocateSize(localSymbols, localOffsets);
         if (localSize > 0) {
-            instructions.add(DLX.assemble(DLX.SUBI, SP, FP, localSize));
+            subtractSize(instructions, SP, FP, localSize);
         } else {
             instructions.add(DLX.assemble(DLX.ADD, SP, FP, zeroReg));
         }
 
+        // Each function lays out its own frame, main keeps this one whenever it is generated
+        HashMap<Symbol, Integer> mainOffsets = localOffsets;
+
         // Order blocks of code by their starting line numbers
         funcBlocks = new ArrayList<Pair<CFG, TreeMap<Integer, List<Integer>>>>();
 
@@ -206,10 +251,10 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             funcBlocks.add(new Pair<>(cfg, codeBlocks));
 
             usedRegs = new HashSet<Integer>();
+            localOffsets = mainOffsets;
 
             // Create function prologues
             if (cfg.function() != SymbolTable.mainSymbol) {
-                localOffsets.clear();
                 List<Integer> prologue = new ArrayList<Integer>();
                 codeBlocks.put(Integer.MIN_VALUE, prologue);
 
@@ -220,7 +265,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
 
                 // Allocate space for local variables and temporaries
                 localSymbols.clear();
-                localOffsets.clear();
+                localOffsets = new HashMap<Symbol, Integer>();
                 for (Symbol s : cfg.localVariables()) {
                     localSymbols.add(s);
                 }
@@ -231,7 +276,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 }
                 localSize = allocateSize(localSymbols, localOffsets);
                 if (localSize > 0) {
-                    prologue.add(DLX.assemble(DLX.SUBI, SP, SP, localSize));
+                    subtractSize(prologue, SP, SP, localSize);
                 }
             
                 // System.out.println("LOCAL OFFSETS FOR " + cfg.function() + ":");
@@ -252,11 +297,16 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 //     System.out.println("\t" + s.name() + ": " + paramOffsets.get(s));
                 // }
 
-                // Pull in params
+                // Pull in the params live at the start, a dead one may share its register with
+                // anything, and a spilled one is read from its parameter space where it is used
+                BitSet entryLive = cfg.start().getEntryLiveSet();
                 offset = 8;
                 for (int i = cfg.parameters().size() - 1; i >= 0; i--) {
                     Variable pVar = new Variable(cfg.parameters().get(i));
-                    prologue.add(DLX.assemble(DLX.LDW, getRegR(pVar), FP, offset));
+                    if (entryLive.get(cfg.numbering().number(pVar.symbol()))
+                            && regAllocs.get(pVar) != RegisterAllocator.spilled) {
+                        prologue.add(DLX.assemble(DLX.LDW, getRegR(pVar), FP, offset));
+                    }
                     offset += 4;
                 }
 
@@ -270,7 +320,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             }
 
             // Convert the CFG to assembly
-            cfg.start().accept(this);
+            for (BasicBlock block : cfg.preorder()) {
+                visit(block);
+            }
 
             // Create function epilogues
             if (cfg.function() != SymbolTable.mainSymbol) {
@@ -391,9 +443,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                     else if (dest.isLocal()) {
                         currInstr.add(DLX.assemble(DLX.STW, spillReg1, SP, localOffsets.get(dest.symbol())));
                     }
-                    // Store in parameter space
-                    else if (dest.isGlobal()) {
-                        currInstr.add(DLX.assemble(DLX.STW, spillReg1, FP, paramOffsets.get(dest.symbol())));
+                    // Store in parameter space, past saved BA and FP
+                    else {
+                        currInstr.add(DLX.assemble(DLX.STW, spillReg1, FP, paramOffsets.get(dest.symbol()) + 8));
                     }
 
                     spillRegs[0] = null;
@@ -409,20 +461,15 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                     else if (dest.isLocal()) { 
                         currInstr.add(DLX.assemble(DLX.STW, spillReg2, SP, localOffsets.get(dest.symbol())));
                     }
-                    // Store in parameter space
-                    else if (dest.isGlobal()) {
-                        currInstr.add(DLX.assemble(DLX.STW, spillReg2, FP, paramOffsets.get(dest.symbol())));
+                    // Store in parameter space, past saved BA and FP
+                    else {
+                        currInstr.add(DLX.assemble(DLX.STW, spillReg2, FP, paramOffsets.get(dest.symbol()) + 8));
                     }
 
                     spillRegs[1] = null;
                 }
             }
         }
-
-        // Visit all successors
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
-        }
     }
 
     @Override
@@ -437,7 +484,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 currInstr.add(DLX.assemble(DLX.ADD, getRegW(dest), getRegR(lVar), getRegR(rVar)));
             } else {
                 Literal rVal = (Literal) instr.rightOperand();
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), getRegR(lVar), rVal.value()));
+                addOffset(currInstr, getRegW(dest), getRegR(lVar), rVal.value());
             }
         } else if (instr.leftOperand() instanceof Literal) {
             Literal lVal = (Literal) instr.leftOperand();
@@ -445,22 +492,23 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             if (instr.rightOperand() instanceof Variable) {
                 // Can just swap because it's commutative
                 Variable rVar = (Variable) instr.rightOperand();
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), getRegR(rVar), lVal.value()));
+                addOffset(currInstr, getRegW(dest), getRegR(rVar), lVal.value());
             } else {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, destReg, rVal.value()));
             }
         } else if (instr.leftOperand() instanceof Gdb) {
             // Always add variable to GDB
             Variable rOp = (Variable) instr.rightOperand();
-            currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), GDB, globalOffsets.get(rOp.symbol())));
+            addOffset(currInstr, getRegW(dest), GDB, globalOffsets.get(rOp.symbol()));
         } else if (instr.leftOperand() instanceof Sp) {
             // Always add variable to GDB
             Variable rOp = (Variable) instr.rightOperand();
-            currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), SP, localOffsets.get(rOp.symbol())));
+            addOffset(currInstr, getRegW(dest), SP, localOffsets.get(rOp.symbol()));
         }
     }
 
@@ -504,8 +552,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.ANDI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.ANDI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -531,16 +580,18 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             // CMPI
             if (instr.rightOperand() instanceof Variable) {
                 Variable rOp = (Variable) instr.rightOperand();                
-                currInstr.add(DLX.assemble(DLX.CMPI, getRegW(dest), getRegR(rOp), lOp.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.CMPI, destReg, getRegR(rOp), lOp.value()));
 
                 // Need to invert sign because operands were flipped
-                currInstr.add(DLX.assemble(DLX.SUB, getRegW(dest), zeroReg, getRegR(dest)));
+                currInstr.add(DLX.assemble(DLX.SUB, destReg, zeroReg, destReg));
             } else {
                 Literal rOp = (Literal) instr.rightOperand();
 
                 // Load the left literal into the results register, since it is expected to be used
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lOp.value()));
-                currInstr.add(DLX.assemble(DLX.CMPI, getRegW(dest), getRegR(dest), rOp.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lOp.value()));
+                currInstr.add(DLX.assemble(DLX.CMPI, destReg, destReg, rOp.value()));
             }
         }
     }
@@ -570,8 +621,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.DIVI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.DIVI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -590,8 +642,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             Literal rOp = (Literal) instr.rightOperand();
 
             // Load the left literal into the results register, since it is expected to be used
-            currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lOp.value()));
-            currInstr.add(DLX.assemble(DLX.LSHI, getRegW(dest), getRegR(dest), rOp.value()));
+            int destReg = getRegW(dest);
+            currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lOp.value()));
+            currInstr.add(DLX.assemble(DLX.LSHI, destReg, destReg, rOp.value()));
         }
     }
 
@@ -620,8 +673,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.MODI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.MODI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -664,8 +718,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.MULI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.MULI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -695,8 +750,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.ORI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.ORI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -726,8 +782,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.POWI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.POWI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -751,16 +808,18 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
 
             if (instr.rightOperand() instanceof Variable) {
                 Variable rVar = (Variable) instr.rightOperand();
-                currInstr.add(DLX.assemble(DLX.SUBI, getRegW(dest), getRegR(rVar), lVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.SUBI, destReg, getRegR(rVar), lVal.value()));
 
                 // Negate the result
-                currInstr.add(DLX.assemble(DLX.SUB, getRegW(dest), zeroReg, getRegR(dest)));
+                currInstr.add(DLX.assemble(DLX.SUB, destReg, zeroReg, destReg));
             } else {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.SUBI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.SUBI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -790,8 +849,9 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 Literal rVal = (Literal) instr.rightOperand();
 
                 // Load left literal into destination register
-                currInstr.add(DLX.assemble(DLX.ADDI, getRegW(dest), zeroReg, lVal.value()));
-                currInstr.add(DLX.assemble(DLX.XORI, getRegW(dest), getRegR(dest), rVal.value()));
+                int destReg = getRegW(dest);
+                currInstr.add(DLX.assemble(DLX.ADDI, destReg, zeroReg, lVal.value()));
+                currInstr.add(DLX.assemble(DLX.XORI, destReg, destReg, rVal.value()));
             }
         }
     }
@@ -971,6 +1031,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             if (usedRegs.contains(i)) {
                 savedRegs.add(i);
                 currInstr.add(DLX.assemble(DLX.PSH, i, SP, -4));
+                pushedBytes += 4;
             }
         }
 
@@ -985,12 +1046,14 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             if (p instanceof Variable) {
                 Variable pVar = (Variable) p;
                 currInstr.add(DLX.assemble(DLX.PSH, getRegR(pVar), SP, -4));
+                pushedBytes += 4;
             }
             // If literal, need to load into register
             else {
                 Literal pVal = (Literal) p;
                 currInstr.add(DLX.assemble(DLX.ADDI, returnReg, zeroReg, pVal.value()));
                 currInstr.add(DLX.assemble(DLX.PSH, returnReg, SP, -4));
+                pushedBytes += 4;
             }
         }
 
@@ -1005,6 +1068,7 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
         for (int j = savedRegs.size() - 1; j >= 0; j--) {
             currInstr.add(DLX.assemble(DLX.POP, savedRegs.get(j), SP, 4));
         }
+        pushedBytes = 0;
 
         // Any globals changed in the function will need to be loaded back
         for (Symbol s : instr.functionCFG().reassignedVariables()) {
@@ -1050,7 +1114,15 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
             currInstr.add(DLX.assemble(DLX.LDX, getRegW(dest), getRegR(base), getRegR(offset)));
         } else {
             Literal offset = (Literal) addressOffset.second;
-            currInstr.add(DLX.assemble(DLX.LDW, getRegW(dest), getRegR(base), offset.value()));
+            if (fitsImmediate(offset.value())) {
+                currInstr.add(DLX.assemble(DLX.LDW, getRegW(dest), getRegR(base), offset.value()));
+            } else {
+                // Build the offset in the scratch return register
+                int destReg = getRegW(dest);
+                int baseReg = getRegR(base);
+                loadConstant(currInstr, returnReg, offset.value());
+                currInstr.add(DLX.assemble(DLX.LDX, destReg, baseReg, returnReg));
+            }
         }
     }
 
@@ -1063,10 +1135,25 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
 
             if (addressOffset.second instanceof Variable) {
                 Variable offset = (Variable) addressOffset.second;
-                currInstr.add(DLX.assemble(DLX.STX, getRegR(val), getRegR(base), getRegR(offset)));
+
+                // A spilled base and offset take both spill registers, so a spilled value moves out of the way
+                int valReg = getRegR(val);
+                if (valReg == spillReg1 || valReg == spillReg2) {
+                    currInstr.add(DLX.assemble(DLX.ADD, returnReg, zeroReg, valReg));
+                    valReg = returnReg;
+                }
+                currInstr.add(DLX.assemble(DLX.STX, valReg, getRegR(base), getRegR(offset)));
             } else {
-                Literal offset = (Literal) addressOffset.second; 
-                currInstr.add(DLX.assemble(DLX.STW, getRegR(val), getRegR(base), offset.value()));
+                Literal offset = (Literal) addressOffset.second;
+                if (fitsImmediate(offset.value())) {
+                    currInstr.add(DLX.assemble(DLX.STW, getRegR(val), getRegR(base), offset.value()));
+                } else {
+                    // Build the offset in the scratch return register
+                    int valReg = getRegR(val);
+                    int baseReg = getRegR(base);
+                    loadConstant(currInstr, returnReg, offset.value());
+                    currInstr.add(DLX.assemble(DLX.STX, valReg, baseReg, returnReg));
+                }
             }
         } else {
             Literal val = (Literal) instr.value();
@@ -1079,11 +1166,34 @@ public class CodeGenerator implements TACVisitor, CFGVisitor {
                 currInstr.add(DLX.assemble(DLX.STX, returnReg, getRegR(base), getRegR(offset)));
             } else {
                 Literal offset = (Literal) addressOffset.second; 
-                currInstr.add(DLX.assemble(DLX.STW, returnReg, getRegR(base), offset.value()));
+                if (fitsImmediate(offset.value())) {
+                    currInstr.add(DLX.assemble(DLX.STW, returnReg, getRegR(base), offset.value()));
+                } else {
+                    // The value is in the return register, so build the offset in a free spill register
+                    int baseReg = getRegR(base);
+                    int offsetReg = baseReg == spillReg1 ? spillReg2 : spillReg1;
+                    loadConstant(currInstr, offsetReg, offset.value());
+                    currInstr.add(DLX.assemble(DLX.STX, returnReg, baseReg, offsetReg));
+                }
             }
         }
     }
 
+    @Override
+    public void visit(ArrayCopy instr) {
+        // Both addresses are of the last word, ARRCPY copies down from there
+        int destReg = getRegR(instr.location());
+        int srcReg = getRegR((Variable) instr.value());
+
+        // Count goes in the scratch return register
+        if (fitsImmediate(instr.words())) {
+            currInstr.add(DLX.assemble(DLX.ADDI, returnReg, zeroReg, instr.words()));
+        } else {
+            loadConstant(currInstr, returnReg, instr.words());
+        }
+        currInstr.add(DLX.assemble(DLX.ARRCPY, destReg, srcReg, returnReg));
+    }
+
     @Override
     public void visit(Read instr) {
         currInstr.add(DLX.assemble(DLX.RDI, getRegW(instr.destination())));
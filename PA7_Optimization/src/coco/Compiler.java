@@ -2,6 +2,8 @@ package coco;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,14 +28,14 @@ public class Compiler {
 
     private String reportSyntaxError(NonTerminal nt) {
         String message = "SyntaxError(" + lineNumber() + "," + charPosition() + ")[Expected a token from " + nt.name()
-                + " but got " + currentToken.kind + ".]";
+                + " but got " + cursor.kind() + ".]";
         errorBuffer.append(message + "\n");
         return message;
     }
 
     private String reportSyntaxError(Token.Kind kind) {
         String message = "SyntaxError(" + lineNumber() + "," + charPosition() + ")[Expected " + kind + " but got "
-                + currentToken.kind + ".]";
+                + cursor.kind() + ".]";
         errorBuffer.append(message + "\n");
         return message;
     }
@@ -55,20 +57,36 @@ public class Compiler {
     }
 
     private int lineNumber() {
-        return currentToken.lineNumber();
+        return tokens.lineNumber(cursor.index());
     }
 
     private int charPosition() {
-        return currentToken.charPosition();
+        return tokens.charPosition(cursor.index());
+    }
+
+    private int lineNumber(int token) {
+        return tokens.lineNumber(token);
+    }
+
+    private int charPosition(int token) {
+        return tokens.charPosition(token);
+    }
+
+    private String lexeme(int token) {
+        return tokens.lexeme(token);
+    }
+
+    private Token.Kind kind(int token) {
+        return tokens.kind(token);
     }
 
     // Compiler ===================================================================
-    private Scanner scanner;
-    private Token currentToken;
+    private TokenBuffer tokens;
+    private TokenBuffer.Cursor cursor;
 
     private int numDataRegisters; // available registers are [1..numDataRegisters]
     private List<Integer> instructions;
-    private ArrayList<Pair<FunctionCall, Token>> promisedCalls;
+    private ArrayList<Pair<FunctionCall, Integer>> promisedCalls;
     private boolean isGlobal;
     private List<Symbol> globals;
 
@@ -81,11 +99,16 @@ public class Compiler {
     // Need to map from IDENT to memory offset
 
     public Compiler(Scanner scanner, int numRegs) {
-        this.scanner = scanner;
-        currentToken = this.scanner.next();
+        this(new TokenBuffer(scanner), numRegs);
+    }
+
+    // Parses tokens lexed up front, the same buffer can be given to several compilers
+    public Compiler(TokenBuffer tokens, int numRegs) {
+        this.tokens = tokens;
+        cursor = tokens.cursor();
         numDataRegisters = numRegs;
         instructions = new ArrayList<>();
-        promisedCalls = new ArrayList<Pair<FunctionCall, Token>>();
+        promisedCalls = new ArrayList<Pair<FunctionCall, Integer>>();
         globals = new ArrayList<Symbol>();
     }
 
@@ -102,17 +125,26 @@ public class Compiler {
     }
 
     public SSA genSSA(AST ast) {
-        IRGenerator irGen = new IRGenerator();
+        IRGenerator irGen = new IRGenerator(symbolTable);
         savedSSA = irGen.generateIR(ast);
         return savedSSA;
     }
 
-    public String optimization(List<String> optArgs, CommandLine cmd) {
-        savedSSA.resetVisited();
+    // The symbols of a set numbered by the CFG, so warnings come in the same order whatever the numbering
+    private static List<Symbol> inDeclarationOrder(CFG cfg, BitSet set) {
+        List<Symbol> symbols = new ArrayList<Symbol>();
+        for (int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1)) {
+            symbols.add(cfg.numbering().symbol(n));
+        }
+        symbols.sort(Comparator.comparingInt(Symbol::id));
+        return symbols;
+    }
 
+    public String optimization(List<String> optArgs, CommandLine cmd) {
         boolean noChanges;
         Propagation propOp;
         ConstantFolding cfOp;
+        CommonSubexpressionElimination cseOp;
         DeadCodeElimination dceOp;
 
         // Look for the use of uninitialized variables
@@ -126,7 +158,7 @@ public class Compiler {
         int currID = -1;
         BasicBlock start = mainCFG.start();
         int currBlockID = savedSSA.lastBlockNumber();
-        for (Symbol s : mainCFG.start().getEntryLiveSet()) {
+        for (Symbol s : inDeclarationOrder(mainCFG, mainCFG.start().getEntryLiveSet())) {
             // Array types can be uninitialized
             if (s.isGlobalVariable() && !(s.type() instanceof ArrayType)) {
                 // Issue warning
@@ -162,7 +194,7 @@ public class Compiler {
         for (int i = 0; i < savedSSA.CFGs().size() - 1; i++) {
             CFG cfg = savedSSA.CFGs().get(i);
             start = cfg.start();
-            for (Symbol s : cfg.start().getEntryLiveSet()) {
+            for (Symbol s : inDeclarationOrder(cfg, cfg.start().getEntryLiveSet())) {
                 if (s.isLocal() && !(s.type() instanceof ArrayType)) {
                     // Issue warning
                     System.out.println("[WARNING]: " + s + " is uninitialized");
@@ -217,7 +249,6 @@ public class Compiler {
                                 noChanges = false;
                             }
                         }
-                        savedSSA.resetVisited();
                         break;
                     // Constant Folding
                     case "cf":
@@ -227,7 +258,6 @@ public class Compiler {
                                 noChanges = false;
                             }
                         }
-                        savedSSA.resetVisited();
                         break;
                     // Copy Propagation
                     case "cpp":
@@ -237,10 +267,15 @@ public class Compiler {
                                 noChanges = false;
                             }
                         }
-                        savedSSA.resetVisited();
                         break;
                     // Common Subexpression Elimination
                     case "cse":
+                        cseOp = new CommonSubexpressionElimination(savedSSA);
+                        for (CFG cfg : savedSSA) {
+                            if (cseOp.optimize(cfg)) {
+                                noChanges = false;
+                            }
+                        }
                         break;
                     // Dead Code Elimination
                     case "dce":
@@ -250,7 +285,6 @@ public class Compiler {
                                 noChanges = false;
                             }
                         }
-                        savedSSA.resetVisited();
                         break;
                 }
             }
@@ -271,7 +305,7 @@ public class Compiler {
     public void regAlloc(int numRegs) {
         // Generate interference graph
         RegisterAllocator regAlloc = new RegisterAllocator();
-        regAllocs = regAlloc.allocateRegisters(savedSSA, numRegs);
+        regAllocs = regAlloc.allocateRegisters(savedSSA, numRegs, globals);
     }
 
     public int[] genCode() {
@@ -299,7 +333,7 @@ public class Compiler {
     private SymbolTable symbolTable;
 
     private void initSymbolTable() {
-        symbolTable = new SymbolTable();
+        symbolTable = new SymbolTable(tokens.names());
     }
 
     private void enterScope() {
@@ -310,32 +344,32 @@ public class Compiler {
         symbolTable.exit();
     }
 
-    private List<Symbol> tryResolveVariable(Token ident, boolean funcFirstPass) {
+    private List<Symbol> tryResolveVariable(int ident, boolean funcFirstPass) {
         // Search for an identifier with the given name
         try {
-            return symbolTable.lookup(ident.lexeme());
+            return symbolTable.lookup(tokens.nameId(ident));
         } catch (SymbolNotFoundError e) {
             if (!funcFirstPass) {
-                reportResolveSymbolError(ident.lexeme(), ident.lineNumber(), ident.charPosition());
+                reportResolveSymbolError(lexeme(ident), lineNumber(ident), charPosition(ident));
             }
             return null;
         }
     }
 
-    private Symbol tryDeclareVariable(Token ident, Type type) {
+    private Symbol tryDeclareVariable(int ident, Type type) {
         try {
-            return symbolTable.insert(ident.lexeme(), type);
+            return symbolTable.insert(tokens.nameId(ident), type);
         } catch (RedeclarationError e) {
-            reportDeclareSymbolError(ident.lexeme(), ident.lineNumber(), ident.charPosition());
+            reportDeclareSymbolError(lexeme(ident), lineNumber(ident), charPosition(ident));
             return null;
         }
     }
 
-    private Symbol tryDeclareVariable(Token ident, Type type, boolean isGlobal) {
+    private Symbol tryDeclareVariable(int ident, Type type, boolean isGlobal) {
         try {
-            return symbolTable.insert(ident.lexeme(), type, isGlobal);
+            return symbolTable.insert(tokens.nameId(ident), type, isGlobal);
         } catch (RedeclarationError e) {
-            reportDeclareSymbolError(ident.lexeme(), ident.lineNumber(), ident.charPosition());
+            reportDeclareSymbolError(lexeme(ident), lineNumber(ident), charPosition(ident));
             return null;
         }
     }
@@ -354,17 +388,17 @@ public class Compiler {
 
     // Helper Methods =============================================================
     private boolean have(Token.Kind kind) {
-        return currentToken.is(kind);
+        return cursor.is(kind);
     }
 
     private boolean have(NonTerminal nt) {
-        return nt.firstSet().contains(currentToken.kind);
+        return nt.firstSet().contains(cursor.kind());
     }
 
     private boolean accept(Token.Kind kind) {
         if (have(kind)) {
             try {
-                currentToken = scanner.next();
+                cursor.advance();
             } catch (NoSuchElementException e) {
                 if (!kind.equals(Token.Kind.EOF)) {
                     String errorMessage = reportSyntaxError(kind);
@@ -378,7 +412,7 @@ public class Compiler {
 
     private boolean accept(NonTerminal nt) {
         if (have(nt)) {
-            currentToken = scanner.next();
+            cursor.advance();
             return true;
         }
         return false;
@@ -400,8 +434,8 @@ public class Compiler {
         throw new QuitParseException(errorMessage);
     }
 
-    private Token expectRetrieve(Token.Kind kind) {
-        Token tok = currentToken;
+    private int expectRetrieve(Token.Kind kind) {
+        int tok = cursor.index();
         if (accept(kind)) {
             return tok;
         }
@@ -409,8 +443,8 @@ public class Compiler {
         throw new QuitParseException(errorMessage);
     }
 
-    private Token expectRetrieve(NonTerminal nt) {
-        Token tok = currentToken;
+    private int expectRetrieve(NonTerminal nt) {
+        int tok = cursor.index();
         if (accept(nt)) {
             return tok;
         }
@@ -421,15 +455,15 @@ public class Compiler {
     // Grammar Rules ==============================================================
 
     // function for matching rule that only expects nonterminal's FIRST set
-    private Token matchNonTerminal(NonTerminal nt) {
+    private int matchNonTerminal(NonTerminal nt) {
         return expectRetrieve(nt);
     }
 
     // type = "bool" | "int" | "float"
     private Type type() {
-        Token t = matchNonTerminal(NonTerminal.TYPE);
+        int t = matchNonTerminal(NonTerminal.TYPE);
 
-        switch (t.kind()) {
+        switch (kind(t)) {
             case BOOL:
                 return new BoolType();
             case INT:
@@ -443,16 +477,16 @@ public class Compiler {
 
     // literal = integerLit | floatLit
     private Expression literal() {
-        Token t = expectRetrieve(NonTerminal.LITERAL);
+        int t = expectRetrieve(NonTerminal.LITERAL);
 
-        switch (t.kind()) {
+        switch (kind(t)) {
             case INT_VAL:
-                return new IntegerLiteral(t.lineNumber(), t.charPosition(), Integer.parseInt(t.lexeme()));
+                return new IntegerLiteral(lineNumber(t), charPosition(t), Integer.parseInt(lexeme(t)));
             case TRUE:
             case FALSE:
-                return new BoolLiteral(t.lineNumber(), t.charPosition(), Boolean.parseBoolean(t.lexeme()));
+                return new BoolLiteral(lineNumber(t), charPosition(t), Boolean.parseBoolean(lexeme(t)));
             case FLOAT_VAL:
-                return new FloatLiteral(t.lineNumber(), t.charPosition(), Float.parseFloat(t.lexeme()));
+                return new FloatLiteral(lineNumber(t), charPosition(t), Float.parseFloat(lexeme(t)));
             default:
                 return null;
         }
@@ -460,7 +494,7 @@ public class Compiler {
 
     // designator = ident { "[" relExpr "]" }
     private Expression designator(boolean isAddress) {
-        Token ident = expectRetrieve(Token.Kind.IDENT);
+        int ident = expectRetrieve(Token.Kind.IDENT);
         List<Symbol> overloads = tryResolveVariable(ident, false);
 
         // Try to find the correct symbol
@@ -476,12 +510,12 @@ public class Compiler {
         ArrayIndex arrIdx = null;
 
         while (have(Token.Kind.OPEN_BRACKET)) {
-            Token start = expectRetrieve(Token.Kind.OPEN_BRACKET);
+            int start = expectRetrieve(Token.Kind.OPEN_BRACKET);
 
             if (arrIdx == null) {
-                arrIdx = new ArrayIndex(start.lineNumber(), start.charPosition(), sym, relExpr());
+                arrIdx = new ArrayIndex(lineNumber(start), charPosition(start), sym, relExpr());
             } else {
-                arrIdx = new ArrayIndex(start.lineNumber(), start.charPosition(), arrIdx, relExpr());
+                arrIdx = new ArrayIndex(lineNumber(start), charPosition(start), arrIdx, relExpr());
             }
 
             expect(Token.Kind.CLOSE_BRACKET);
@@ -491,15 +525,15 @@ public class Compiler {
 
         if (isAddress) {
             if (arrIdx == null) {
-                desig = new AddressOf(ident.lineNumber(), ident.charPosition(), (sym == null) ? null : sym);
+                desig = new AddressOf(lineNumber(ident), charPosition(ident), (sym == null) ? null : sym);
             } else {
-                desig = new AddressOf(ident.lineNumber(), ident.charPosition(), arrIdx);
+                desig = new AddressOf(lineNumber(ident), charPosition(ident), arrIdx);
             }
         } else {
             if (arrIdx == null) {
-                desig = new Dereference(ident.lineNumber(), ident.charPosition(), (sym == null) ? null : sym);
+                desig = new Dereference(lineNumber(ident), charPosition(ident), (sym == null) ? null : sym);
             } else {
-                desig = new Dereference(ident.lineNumber(), ident.charPosition(), arrIdx);
+                desig = new Dereference(lineNumber(ident), charPosition(ident), arrIdx);
             }
         }
 
@@ -508,7 +542,7 @@ public class Compiler {
 
     // computation = "main" {varDecl} {funcDecl} "{" statSeq "}" "."
     private Computation computation() {
-        Token first = expectRetrieve(Token.Kind.MAIN);
+        int first = expectRetrieve(Token.Kind.MAIN);
         // Create symbol for main
         Symbol main = SymbolTable.mainSymbol;
         ArrayList<Declaration> varDecls = new ArrayList<Declaration>();
@@ -534,14 +568,14 @@ public class Compiler {
         if (!varDecls.isEmpty()) {
             vars = new DeclarationList(varDecls.get(0).lineNumber(), varDecls.get(0).charPosition(), varDecls);
         } else {
-            vars = new DeclarationList(first.lineNumber(), first.charPosition(), varDecls);
+            vars = new DeclarationList(lineNumber(first), charPosition(first), varDecls);
         }
 
         DeclarationList funcs;
         if (!funcDecls.isEmpty()) {
             funcs = new DeclarationList(funcDecls.get(0).lineNumber(), funcDecls.get(0).charPosition(), funcDecls);
         } else {
-            funcs = new DeclarationList(first.lineNumber(), first.charPosition(), funcDecls);
+            funcs = new DeclarationList(lineNumber(first), charPosition(first), funcDecls);
         }
 
         expect(Token.Kind.OPEN_BRACE);
@@ -550,7 +584,7 @@ public class Compiler {
         expect(Token.Kind.PERIOD);
 
         // After end of program, check to see if any unresolved function calls
-        for (Pair<FunctionCall, Token> deferredCall : promisedCalls) {
+        for (Pair<FunctionCall, Integer> deferredCall : promisedCalls) {
             FunctionCall old = deferredCall.first;
             old.resolve(tryResolveVariable(deferredCall.second, false));
         }
@@ -559,7 +593,7 @@ public class Compiler {
             return null;
         }
 
-        return new Computation(first.lineNumber(), first.charPosition(), main, vars, funcs, stmts);
+        return new Computation(lineNumber(first), charPosition(first), main, vars, funcs, stmts);
     }
 
     // varDecl = typeDecl ident { "," ident } ";"
@@ -568,7 +602,7 @@ public class Compiler {
         ArrayList<VariableDeclaration> vars = new ArrayList<VariableDeclaration>();
 
         do {
-            Token identTok = expectRetrieve(Token.Kind.IDENT);
+            int identTok = expectRetrieve(Token.Kind.IDENT);
             // Add to the symbol table
             Symbol s = isGlobal ? tryDeclareVariable(identTok, t, isGlobal) : tryDeclareVariable(identTok, t);
 
@@ -578,8 +612,8 @@ public class Compiler {
             }
 
             if (s != null) {
-                vars.add(new VariableDeclaration(identTok.lineNumber(),
-                        identTok.charPosition() + identTok.lexeme().length(), s));
+                vars.add(new VariableDeclaration(lineNumber(identTok),
+                        charPosition(identTok) + tokens.length(identTok), s));
             }
         } while (accept(Token.Kind.COMMA));
 
@@ -589,8 +623,8 @@ public class Compiler {
 
     // funcDecl = "function" ident formalParam ":" ( "void" | type ) funcBody
     private FunctionDeclaration funcDecl() {
-        Token first = expectRetrieve(Token.Kind.FUNC);
-        Token ident = expectRetrieve(Token.Kind.IDENT);
+        int first = expectRetrieve(Token.Kind.FUNC);
+        int ident = expectRetrieve(Token.Kind.IDENT);
         // Get list of parameter types
         enterScope();
         List<Symbol> params = formalParam();
@@ -614,7 +648,7 @@ public class Compiler {
 
         Symbol s = tryDeclareVariable(ident, new FuncType(paramTypes, retType));
 
-        return new FunctionDeclaration(first.lineNumber(), first.charPosition(), s, funcBody, params);
+        return new FunctionDeclaration(lineNumber(first), charPosition(first), s, funcBody, params);
     }
 
     // statSeq = statement ";" { statement ";" }
@@ -637,8 +671,8 @@ public class Compiler {
         ArrayList<Integer> dims = new ArrayList<Integer>();
 
         while (accept(Token.Kind.OPEN_BRACKET)) {
-            Token val = expectRetrieve(Token.Kind.INT_VAL);
-            dims.add(Integer.parseInt(val.lexeme()));
+            int val = expectRetrieve(Token.Kind.INT_VAL);
+            dims.add(Integer.parseInt(lexeme(val)));
             expect(Token.Kind.CLOSE_BRACKET);
         }
 
@@ -668,7 +702,7 @@ public class Compiler {
 
     // funcBody = "{" { varDecl } statSeq "}" ";"
     private FunctionBody funcBody() {
-        Token start = expectRetrieve(Token.Kind.OPEN_BRACE);
+        int start = expectRetrieve(Token.Kind.OPEN_BRACE);
         ArrayList<Declaration> varDecls = new ArrayList<Declaration>();
         DeclarationList decs = null;
 
@@ -685,7 +719,7 @@ public class Compiler {
         StatementSequence stmts = statSeq();
         expect(Token.Kind.CLOSE_BRACE);
         expect(Token.Kind.SEMICOLON);
-        return new FunctionBody(start.lineNumber(), start.charPosition(), decs, stmts);
+        return new FunctionBody(lineNumber(start), charPosition(start), decs, stmts);
     }
 
     // statement = assign | funcCall | ifStat | whileStat | repeatStat | returnStat
@@ -713,7 +747,7 @@ public class Compiler {
     // paramDecl = paramType ident
     private Symbol paramDecl() {
         Type t = paramType();
-        Token ident = expectRetrieve(Token.Kind.IDENT);
+        int ident = expectRetrieve(Token.Kind.IDENT);
         return tryDeclareVariable(ident, t, false);
     }
 
@@ -728,34 +762,34 @@ public class Compiler {
         }
 
         if (have(NonTerminal.ASSIGN_OP)) {
-            Token assignOp = expectRetrieve(NonTerminal.ASSIGN_OP);
+            int assignOp = expectRetrieve(NonTerminal.ASSIGN_OP);
             Expression source = relExpr();
 
-            switch (assignOp.kind()) {
+            switch (kind(assignOp)) {
                 case ADD_ASSIGN:
-                    source = new Addition(assignOp.lineNumber(), assignOp.charPosition(), copy, source);
+                    source = new Addition(lineNumber(assignOp), charPosition(assignOp), copy, source);
                     break;
                 case SUB_ASSIGN:
-                    source = new Subtraction(assignOp.lineNumber(), assignOp.charPosition(), copy, source);
+                    source = new Subtraction(lineNumber(assignOp), charPosition(assignOp), copy, source);
                     break;
                 case MUL_ASSIGN:
-                    source = new Multiplication(assignOp.lineNumber(), assignOp.charPosition(), copy, source);
+                    source = new Multiplication(lineNumber(assignOp), charPosition(assignOp), copy, source);
                     break;
                 case DIV_ASSIGN:
-                    source = new Division(assignOp.lineNumber(), assignOp.charPosition(), copy, source);
+                    source = new Division(lineNumber(assignOp), charPosition(assignOp), copy, source);
                     break;
                 case MOD_ASSIGN:
-                    source = new Modulo(assignOp.lineNumber(), assignOp.charPosition(), copy, source);
+                    source = new Modulo(lineNumber(assignOp), charPosition(assignOp), copy, source);
                     break;
                 case POW_ASSIGN:
-                    source = new Power(assignOp.lineNumber(), assignOp.charPosition(), copy, source);
+                    source = new Power(lineNumber(assignOp), charPosition(assignOp), copy, source);
                     break;
                 default:
             }
 
-            return new Assignment(assignOp.lineNumber(), assignOp.charPosition(), ident, source);
+            return new Assignment(lineNumber(assignOp), charPosition(assignOp), ident, source);
         } else if (have(NonTerminal.UNARY_OP)) {
-            Token unaryOp = expectRetrieve(NonTerminal.UNARY_OP);
+            int unaryOp = expectRetrieve(NonTerminal.UNARY_OP);
             Type identType;
 
             // Extract type
@@ -769,56 +803,56 @@ public class Compiler {
                 identType = ident.identifier().type();
             }
 
-            switch (unaryOp.kind()) {
+            switch (kind(unaryOp)) {
                 case UNI_INC:
                     if (identType instanceof ArrayType) {
                         ArrayType arrType = (ArrayType) identType;
                         if (arrType.elementType() instanceof IntType) {
                             return new Assignment(
-                                    unaryOp.lineNumber(),
-                                    unaryOp.charPosition(),
+                                    lineNumber(unaryOp),
+                                    charPosition(unaryOp),
                                     ident,
                                     new Addition(
-                                            unaryOp.lineNumber(),
-                                            unaryOp.charPosition(),
+                                            lineNumber(unaryOp),
+                                            charPosition(unaryOp),
                                             copy,
-                                            new IntegerLiteral(unaryOp.lineNumber(), unaryOp.charPosition(), 1)));
+                                            new IntegerLiteral(lineNumber(unaryOp), charPosition(unaryOp), 1)));
                         }
                     } else {
                         return new Assignment(
-                                unaryOp.lineNumber(),
-                                unaryOp.charPosition(),
+                                lineNumber(unaryOp),
+                                charPosition(unaryOp),
                                 ident,
                                 new Addition(
-                                        unaryOp.lineNumber(),
-                                        unaryOp.charPosition(),
+                                        lineNumber(unaryOp),
+                                        charPosition(unaryOp),
                                         copy,
-                                        new IntegerLiteral(unaryOp.lineNumber(), unaryOp.charPosition(), 1)));
+                                        new IntegerLiteral(lineNumber(unaryOp), charPosition(unaryOp), 1)));
                     }
                 case UNI_DEC:
                     if (identType instanceof ArrayType) {
                         ArrayType arrType = (ArrayType) identType;
                         if (arrType.elementType() instanceof IntType) {
                             return new Assignment(
-                                    unaryOp.lineNumber(),
-                                    unaryOp.charPosition(),
+                                    lineNumber(unaryOp),
+                                    charPosition(unaryOp),
                                     ident,
                                     new Subtraction(
-                                            unaryOp.lineNumber(),
-                                            unaryOp.charPosition(),
+                                            lineNumber(unaryOp),
+                                            charPosition(unaryOp),
                                             copy,
-                                            new IntegerLiteral(unaryOp.lineNumber(), unaryOp.charPosition(), 1)));
+                                            new IntegerLiteral(lineNumber(unaryOp), charPosition(unaryOp), 1)));
                         }
                     } else {
                         return new Assignment(
-                                unaryOp.lineNumber(),
-                                unaryOp.charPosition(),
+                                lineNumber(unaryOp),
+                                charPosition(unaryOp),
                                 ident,
                                 new Subtraction(
-                                        unaryOp.lineNumber(),
-                                        unaryOp.charPosition(),
+                                        lineNumber(unaryOp),
+                                        charPosition(unaryOp),
                                         copy,
-                                        new IntegerLiteral(unaryOp.lineNumber(), unaryOp.charPosition(), 1)));
+                                        new IntegerLiteral(lineNumber(unaryOp), charPosition(unaryOp), 1)));
                     }
                 default:
             }
@@ -832,11 +866,11 @@ public class Compiler {
 
     // funcCall = "call" ident "(" [ relExpr { "," relExpr } ] ")"
     private FunctionCall funcCall() {
-        Token start = expectRetrieve(Token.Kind.CALL);
-        Token ident = expectRetrieve(Token.Kind.IDENT);
+        int start = expectRetrieve(Token.Kind.CALL);
+        int ident = expectRetrieve(Token.Kind.IDENT);
         List<Symbol> overloads = tryResolveVariable(ident, true);
 
-        Token paramStart = expectRetrieve(Token.Kind.OPEN_PAREN);
+        int paramStart = expectRetrieve(Token.Kind.OPEN_PAREN);
 
         ArrayList<Expression> params = new ArrayList<Expression>();
 
@@ -851,11 +885,11 @@ public class Compiler {
         expect(Token.Kind.CLOSE_PAREN);
 
         // If no symbol exists, defer the resolution for later
-        FunctionCall ret = new FunctionCall(start.lineNumber(), start.charPosition(), overloads,
-                new ArgumentList(paramStart.lineNumber(), paramStart.charPosition(), params));
+        FunctionCall ret = new FunctionCall(lineNumber(start), charPosition(start), overloads,
+                new ArgumentList(lineNumber(paramStart), charPosition(paramStart), params));
 
         if (overloads == null) {
-            promisedCalls.add(new Pair<FunctionCall, Token>(ret, ident));
+            promisedCalls.add(new Pair<FunctionCall, Integer>(ret, ident));
         }
 
         return ret;
@@ -863,7 +897,7 @@ public class Compiler {
 
     // ifStat = "if" relation "then" statSeq [ "else" statSeq ] "fi"
     private IfStatement ifStat() {
-        Token start = expectRetrieve(Token.Kind.IF);
+        int start = expectRetrieve(Token.Kind.IF);
         Expression cond = relation();
         expect(Token.Kind.THEN);
         StatementSequence thenStmts = statSeq();
@@ -873,10 +907,10 @@ public class Compiler {
             enterScope();
             StatementSequence elseStmts = statSeq();
             exitScope();
-            ret = new IfStatement(start.lineNumber(), start.charPosition(), cond, thenStmts, elseStmts);
+            ret = new IfStatement(lineNumber(start), charPosition(start), cond, thenStmts, elseStmts);
         } else {
             enterScope();
-            ret = new IfStatement(start.lineNumber(), start.charPosition(), cond, thenStmts);
+            ret = new IfStatement(lineNumber(start), charPosition(start), cond, thenStmts);
             exitScope();
         }
 
@@ -886,36 +920,36 @@ public class Compiler {
 
     // whileStat = "while" relation "do" statSeq "od"
     private WhileStatement whileStat() {
-        Token start = expectRetrieve(Token.Kind.WHILE);
+        int start = expectRetrieve(Token.Kind.WHILE);
         Expression cond = relation();
         expect(Token.Kind.DO);
         enterScope();
         StatementSequence stmts = statSeq();
         exitScope();
         expect(Token.Kind.OD);
-        return new WhileStatement(start.lineNumber(), start.charPosition(), cond, stmts);
+        return new WhileStatement(lineNumber(start), charPosition(start), cond, stmts);
     }
 
     // repeatStat = "repeat" statSeq "until" relation
     private RepeatStatement repeatStat() {
-        Token start = expectRetrieve(Token.Kind.REPEAT);
+        int start = expectRetrieve(Token.Kind.REPEAT);
         enterScope();
         StatementSequence stmts = statSeq();
         exitScope();
         expect(Token.Kind.UNTIL);
         Expression cond = relation();
-        return new RepeatStatement(start.lineNumber(), start.charPosition(), stmts, cond);
+        return new RepeatStatement(lineNumber(start), charPosition(start), stmts, cond);
     }
 
     // returnStat = "return" [ relExpr ]
     private ReturnStatement returnStat() {
-        Token start = expectRetrieve(Token.Kind.RETURN);
+        int start = expectRetrieve(Token.Kind.RETURN);
 
         if (have(NonTerminal.REL_EXPR)) {
-            return new ReturnStatement(start.lineNumber(), start.charPosition(), relExpr());
+            return new ReturnStatement(lineNumber(start), charPosition(start), relExpr());
         }
 
-        return new ReturnStatement(start.lineNumber(), start.charPosition());
+        return new ReturnStatement(lineNumber(start), charPosition(start));
     }
 
     // paramType = type { "[" "]" }
@@ -942,9 +976,9 @@ public class Compiler {
         Expression ret = first;
 
         while (have(NonTerminal.REL_OP)) {
-            Token op = expectRetrieve(NonTerminal.REL_OP);
+            int op = expectRetrieve(NonTerminal.REL_OP);
             Expression second = addExpr();
-            ret = new Relation(op.lineNumber(), op.charPosition(), ret, op.lexeme(), second);
+            ret = new Relation(lineNumber(op), charPosition(op), ret, lexeme(op), second);
         }
 
         return ret;
@@ -964,18 +998,18 @@ public class Compiler {
         Expression ret = first;
 
         while (have(NonTerminal.ADD_OP)) {
-            Token op = expectRetrieve(NonTerminal.ADD_OP);
+            int op = expectRetrieve(NonTerminal.ADD_OP);
             Expression second = multExpr();
 
-            switch (op.kind()) {
+            switch (kind(op)) {
                 case ADD:
-                    ret = new Addition(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new Addition(lineNumber(op), charPosition(op), ret, second);
                     break;
                 case SUB:
-                    ret = new Subtraction(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new Subtraction(lineNumber(op), charPosition(op), ret, second);
                     break;
                 case OR:
-                    ret = new LogicalOr(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new LogicalOr(lineNumber(op), charPosition(op), ret, second);
                     break;
                 default:
             }
@@ -990,21 +1024,21 @@ public class Compiler {
         Expression ret = first;
 
         while (have(NonTerminal.MUL_OP)) {
-            Token op = expectRetrieve(NonTerminal.MUL_OP);
+            int op = expectRetrieve(NonTerminal.MUL_OP);
             Expression second = powExpr();
 
-            switch (op.kind()) {
+            switch (kind(op)) {
                 case MUL:
-                    ret = new Multiplication(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new Multiplication(lineNumber(op), charPosition(op), ret, second);
                     break;
                 case DIV:
-                    ret = new Division(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new Division(lineNumber(op), charPosition(op), ret, second);
                     break;
                 case MOD:
-                    ret = new Modulo(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new Modulo(lineNumber(op), charPosition(op), ret, second);
                     break;
                 case AND:
-                    ret = new LogicalAnd(op.lineNumber(), op.charPosition(), ret, second);
+                    ret = new LogicalAnd(lineNumber(op), charPosition(op), ret, second);
                     break;
                 default:
             }
@@ -1019,9 +1053,9 @@ public class Compiler {
         Expression ret = first;
 
         while (have(Token.Kind.POW)) {
-            Token op = expectRetrieve(Token.Kind.POW);
+            int op = expectRetrieve(Token.Kind.POW);
             Expression second = groupExpr();
-            ret = new Power(op.lineNumber(), op.charPosition(), ret, second);
+            ret = new Power(lineNumber(op), charPosition(op), ret, second);
         }
 
         return ret;
@@ -1034,9 +1068,9 @@ public class Compiler {
         } else if (have(NonTerminal.DESIGNATOR)) {
             return designator(false);
         } else if (have(Token.Kind.NOT)) {
-            Token op = expectRetrieve(Token.Kind.NOT);
+            int op = expectRetrieve(Token.Kind.NOT);
             Expression expr = relExpr();
-            return new LogicalNot(op.lineNumber(), op.charPosition(), expr);
+            return new LogicalNot(lineNumber(op), charPosition(op), expr);
         } else if (have(NonTerminal.RELATION)) {
             return relation();
         } else if (have(NonTerminal.FUNC_CALL)) {
@@ -1,6 +1,7 @@
 package coco;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
 
 
@@ -16,6 +17,20 @@ public class CompilerTester {
         options.addOption("nr", "reg", true, "Num Regs");
         options.addOption("b", "asm", false, "Print DLX instructions");
         options.addOption("a", "astOut", false, "Print AST");
+        options.addOption("jit", "translate", false, "Run DLX code as translated JVM bytecode");
+        options.addOption("mem", "memory", true, "DLX memory size in bytes, default 10000");
+        options.addOption("sparse", "sparse", false, "Allocate DLX memory in pages as it is used");
+        options.addOption("q", "quiet", false, "Do not prompt before reading input");
+        options.addOption("prof", "profile", false, "Print an execution profile of the DLX program to stderr");
+        options.addOption(Option.builder("cyc").longOpt("cycles").hasArg().optionalArg(true)
+                .desc("Print estimated cycles and CPI to stderr, latencies e.g. alu=1,mul=4,div=12,mem=2,branch=2,loaduse=1,branchdep=1")
+                .build());
+        options.addOption(Option.builder("cache").longOpt("cache").hasArg().optionalArg(true)
+                .desc("Print data cache hit/miss rates to stderr, cache e.g. size=1024,line=16,ways=2,policy=lru")
+                .build());
+        options.addOption("steps", "maxSteps", true, "Stop the DLX program after this many instructions");
+        options.addOption("timeout", "timeout", true, "Stop the DLX program after this many milliseconds");
+        options.addOption("trace", "trace", true, "Write a binary DLX execution trace to the file, read it with coco.DLXTraceReader");
 
         options.addOption("gDir", "graphDir", false, "Graph dir, default will be current dir");
         options.addOption("ast", "ast", false, "Print AST.dot - requires graphs/");
@@ -41,7 +56,7 @@ public class CompilerTester {
         Scanner s = null;
         String sourceFile = cmd.getOptionValue("src");
         try {
-            s = new Scanner(new FileReader(sourceFile));
+            s = new Scanner(Paths.get(sourceFile));
         } catch (IOException e) {
             e.printStackTrace();
             System.err.println("Error accessing the code file: \"" + sourceFile + "\"");
@@ -78,6 +93,16 @@ public class CompilerTester {
         }
 
 
+        if (cmd.hasOption("memory") || cmd.hasOption("sparse")) {
+            String strMemSize = cmd.getOptionValue("memory", String.valueOf(DLX.MEM_SIZE));
+            try {
+                DLX.setMemory(Integer.parseInt(strMemSize), cmd.hasOption("sparse"));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error in option memory -- reseting to " + DLX.MEM_SIZE + " (default)");
+                DLX.setMemory(DLX.MEM_SIZE, cmd.hasOption("sparse"));
+            }
+        }
+
         Compiler c = new Compiler(s, numRegs);
         ast.AST ast = c.genAST();
         
@@ -181,7 +206,42 @@ public class CompilerTester {
             }
         }
 
-        DLX.load(program);
+        DLX.setTranslate(cmd.hasOption("translate"));
+        DLX.setQuiet(cmd.hasOption("quiet"));
+        DLX.setProfile(cmd.hasOption("profile"));
+        if (cmd.hasOption("cycles")) {
+            try {
+                DLX.setTimingModel(new DLXPipeline(cmd.getOptionValue("cycles")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error in option cycles: " + e.getMessage() + " -- using default latencies");
+                DLX.setTimingModel(new DLXPipeline());
+            }
+        }
+        if (cmd.hasOption("cache")) {
+            try {
+                DLX.setCache(new DLXCache(cmd.getOptionValue("cache")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error in option cache: " + e.getMessage() + " -- using the default cache");
+                DLX.setCache(new DLXCache());
+            }
+        }
+        if (cmd.hasOption("maxSteps") || cmd.hasOption("timeout")) {
+            try {
+                DLX.setLimits(Long.parseLong(cmd.getOptionValue("maxSteps", "0")),
+                              Long.parseLong(cmd.getOptionValue("timeout", "0")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error in option maxSteps or timeout -- running without limits");
+            }
+        }
+        if (cmd.hasOption("trace")) {
+            DLX.setTrace(Paths.get(cmd.getOptionValue("trace")));
+        }
+        try {
+            DLX.load(program);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error in option memory: " + e.getMessage() + " -- use -mem for a larger memory size");
+            System.exit(-6);
+        }
         try {
             DLX.execute(in);
         } catch (IOException e) {
@@ -1,11 +1,9 @@
 package coco;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.StringTokenizer;
+import java.io.OutputStream;
+import java.nio.file.Path;
 
 public class DLX {
 
@@ -14,381 +12,90 @@ public class DLX {
     }
 
 // Processor Emulation ========================================================
-    private static int[] R = new int[32];
-    private static int PC, op, a, b, c, format;
+    static final int MEM_SIZE = 10000;
 
-    private static final int MEM_SIZE = 10000;
-    private static int[] M = new int[MEM_SIZE/4];
+    // memory size of the default machine, which bounds JSR targets
+    private static int memSize = MEM_SIZE;
 
-    public static void load (int[] program) {
-        M = Arrays.copyOf(program, M.length);
-        M[program.length] = -1;
+    // default machine behind the static load/execute entry points
+    private static final DLXMachine machine = new DLXMachine();
+
+    // memory of memSize bytes, kept sparse in pages if requested; set before load
+    public static void setMemory (int memSize, boolean sparse) {
+        machine.setMemory(memSize, sparse);
+        DLX.memSize = memSize;
     }
 
-    // epsilon for precision of float comparisons
-    public static final float EPS = 0.01f;
+    public static void setOutput (OutputStream out) {
+        machine.setOutput(out);
+    }
 
-    // for processing input in execute
-    private static int currentLine = -1;
-    private static StringTokenizer st = null;
+    public static void setQuiet (boolean quiet) {
+        machine.setQuiet(quiet);
+    }
 
-    public static void execute (InputStream in) throws IOException {
-        int origC = 0;  // used for F2 instruction RET
-        float fC = 0f;  // used for F1/F2 instructions fOP
-        for (int i = 0; i < 32; i++) {
-            R[i] = 0;
-        }
-        R[30] = MEM_SIZE - 1;
-        PC = 0;
-
-        String line;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-            boolean returned = false;
-            while (!returned) {
-                // // uncomment to iteratively step through program
-                // System.err.print(instrString(M[PC]));
-                // for (int i = 31; i > 27; i--) {
-                // 	System.err.println("R[" + i + "] :: " + R[i]);
-                // }
-                // for (int i = 8; i > 0; i--) {
-                // 	System.err.println("R[" + i + "] :: " + R[i]);
-                // }
-                // for (int i = 0; i < 40; i += 4) {
-                // 	System.err.println("--M[" + (R[30]-i)/4 + "] :: " + M[(R[30]-i)/4]);
-                // }
-                // try {
-                //     System.in.read();
-                // }
-                // catch (Exception e) {
-                //     e.printStackTrace();
-                // }
-
-                R[0] = 0;
-                disassemble(M[PC]); // init op, a, b, c
-
-                int nextPC = PC + 1;
-                if (format == 1) {
-                    fC = toFP32FromFP16(c);
-                }
-                if (format == 2) {
-                    origC = c;
-                    c = R[origC];
-                    fC = fR(origC);
-                }
-                switch (op) {
-                    case ADD:
-                    case ADDI:
-                        R[a] = R[b] + c;
-                        break;
-                    case fADD:
-                    case fADDI:
-                        fR(a, fR(b) + fC);
-                        break;
-                    case SUB:
-                    case SUBI:
-                        R[a] = R[b] - c;
-                        break;
-                    case fSUB:
-                    case fSUBI:
-                        fR(a, fR(b) - fC);
-                        break;
-                    case MUL:
-                    case MULI:
-                        R[a] = R[b] * c;
-                        break;
-                    case fMUL:
-                    case fMULI:
-                        fR(a, fR(b) * fC);
-                        break;
-                    case DIV:
-                    case DIVI:
-                        R[a] = R[b] / c;
-                        break;
-                    case fDIV:
-                    case fDIVI:
-                        fR(a, fR(b) / fC);
-                        break;
-                    case MOD:
-                    case MODI:
-                        R[a] = R[b] % c;
-                        break;
-                    case fMOD:
-                    case fMODI:
-                        fR(a, fR(b) % fC);
-                        break;
-                    case POW:
-                    case POWI:
-                        if (R[b] < 0 || c < 0) {
-                            System.err.println("DLX.execute: Illegal value (" + R[b] + ")^("
-                                                + c + ") in POW!");
-                            bug(1);
-                        }
-                        R[a] = (int) Math.round(Math.pow(R[b], c));
-                        break;
-                    case CMP:
-                    case CMPI:
-                        R[a] = R[b] - c;
-                        if (R[a] < 0) {
-                            R[a] = -1;
-                        }
-                        else if (R[a] > 1) {
-                            R[a] = 1;
-                        }
-                        break;
-                    case fCMP:
-                    case fCMPI:
-                        float result = fR(b) - fC;
-
-                        R[a] = 0;
-                        if (result <= -EPS) {
-                            R[a] = -1;
-                        }
-                        else if (result >= EPS) {
-                            R[a] = 1;
-                        }
-                        break;
-                    case OR:
-                    case ORI:
-                        R[a] = R[b] | c;
-                        break;
-                    case AND:
-                    case ANDI:
-                        R[a] = R[b] & c;
-                        break;
-                    case BIC:
-                    case BICI:
-                        R[a] = R[b] & ~c;
-                        break;
-                    case XOR:
-                    case XORI:
-                        R[a] = R[b] ^ c;
-                        break;
-                    case LSH:
-                    case LSHI:
-                        if (c < -31 || c > 31) {
-                            System.err.println("DLX.execute: Illegal value " + c + " in LSH!");
-                            bug(1);
-                        }
-
-                        if (c < 0) {
-                            R[a] = R[b] >>> -c;
-                        }
-                        else {
-                            R[a] = R[b] << c;
-                        }
-                        break;
-                    case ASH:
-                    case ASHI:
-                        if (c < -31 || c > 31) {
-                            System.err.println("DLX.execute: Illegal value " + c + " in ASH!");
-                            bug(1);
-                        }
-
-                        if (c < 0) {
-                            R[a] = R[b] >> -c;
-                        }
-                        else {
-                            R[a] = R[b] << c;
-                        }
-                        break;
-                    case CHK:
-                    case CHKI:
-                        if (R[a] < 0) {
-                            System.err.println("DLX.execute: " + (4*PC) + " :: R[" + a + "] == "
-                                                + R[a] + " < 0");
-                            bug(39);
-                        }
-                        else if (R[a] >= c) {
-                            System.err.println("DLX.execute: " + (4*PC) + " :: R[" + a + "] == "
-                                                + R[a] + " >= " + c);
-                            bug(39);
-                        }
-                        break;
-                    case LDW:
-                    case LDX:
-                        R[a] = M[(R[b] + c) / 4];
-                        break;
-                    case POP:
-                        R[a] = M[R[b] / 4];
-                        R[b] = R[b] + c;
-                        break;
-                    case STW:
-                    case STX:
-                        M[(R[b] + c) / 4] = R[a];
-                        break;
-                    case PSH:
-                        R[b] = R[b] + c;
-                        M[R[b] / 4] = R[a];
-                        break;
-                    case ARRCPY:
-                        for (int i = 0; i < c; i++) {
-                            M[(R[a] - 4*i) / 4] = M[(R[b] - 4*i) / 4];
-                        }
-                        break;
-                    case BEQ:
-                        if (R[a] == 0) {
-                            nextPC = PC + c;
-                        }
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(47);
-                        }
-                        break;
-                    case BNE:
-                        if (R[a] != 0) {
-                            nextPC = PC + c;
-                        }
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(48);
-                        }
-                        break;
-                    case BLT:
-                        if (R[a] < 0) {
-                            nextPC = PC + c;
-                        }
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(49);
-                        }
-                        break;
-                    case BGE:
-                        if (R[a] >= 0) {
-                            nextPC = PC + c;
-                        }
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(50);
-                        }
-                        break;
-                    case BLE:
-                        if (R[a] <= 0) {
-                            nextPC = PC + c;
-                        }
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(51);
-                        }
-                        break;
-                    case BGT:
-                        if (R[a] > 0) {
-                            nextPC = PC + c;
-                        }
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(52);
-                        }
-                        break;
-                    case BSR:
-                        R[31] = 4 * (PC + 1);
-                        nextPC = PC + c;
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(53);
-                        }
-                        break;
-                    case JSR:
-                        R[31] = 4 * (PC + 1);
-                        nextPC = c / 4;
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(54);
-                        }
-                        break;
-                    case RET:
-                        if (origC == 0) {
-                            returned = true;
-                            break;
-                        }
-                        nextPC = c / 4;
-                        if (nextPC < 0 || nextPC > MEM_SIZE/4) {
-                            System.err.println("DLX.execute: " + (4*nextPC) + " is no address "
-                                                + "in memory [0, " + MEM_SIZE + "].");
-                            bug(55);
-                        }
-                        break;
-                    case RDI:
-                        System.out.print("int? ");
-                        line = nextInput(reader);
-                        R[a] = Integer.parseInt(line);
-                        break;
-                    case RDF:
-                        System.out.print("float? ");
-                        line = nextInput(reader);
-                        fR(a, Float.parseFloat(line));
-                        break;
-                    case RDB:
-                        System.out.print("true or false? ");
-                        line = nextInput(reader);
-                        R[a] = (Boolean.parseBoolean(line) ? 1 : 0);
-                        break;
-                    case WRI:
-                        System.out.print(R[b] + " ");
-                        break;
-                    case WRF:
-                        System.out.printf("%.2f ", fR(b));
-                        break;
-                    case WRB:
-                        System.out.print((R[b] == 1) + " ");
-                        break;
-                    case WRL:
-                        System.out.println();
-                        break;
-                    case ERR:
-                        System.err.println("Program dropped off the end!");
-                        break;
-                    default:
-                        System.err.println("DLX.execute: Unknown opcode encountered!");
-                        bug(2);
-                        break;
-                }
-                PC = nextPC;
-            }
-        }
-        catch (NumberFormatException e) {
-            throw new NumberFormatException("Failed at line " + currentLine + " of input: " + e.getMessage());
-        }
-        catch (ArrayIndexOutOfBoundsException e) {
-            System.err.println("Failed at " + (4*PC));
-            System.err.println("Instruction :: " + instrString(M[PC]));
-            bug(63);
-        }
+    // print the profile of each run to System.err
+    public static void setProfile (boolean profile) {
+        machine.setProfile(profile);
+    }
+
+    // print the cycle estimate of each run to System.err
+    public static void setTimingModel (DLXTimingModel timing) {
+        machine.setTimingModel(timing);
     }
 
+    // print the cache statistics of each run to System.err
+    public static void setCache (DLXCache cache) {
+        machine.setCache(cache);
+    }
 
+    // write a binary trace of each run to file, see DLXTraceReader
+    public static void setTrace (Path file) {
+        machine.setTrace(file);
+    }
 
-    // form input strings from line of input
-    private static String nextInput (BufferedReader reader) throws IOException {
-		while (st == null || !st.hasMoreElements()) {
-			try {
-				st = new StringTokenizer(reader.readLine());
-                currentLine++;
-			}
-			catch (IOException e) {
-				System.out.println("error");
-				System.err.println("Interepter: Couldn't read data file");
-				throw e;
-			}
-		}
-		return st.nextToken();
+    // stop runs after maxSteps instructions or timeoutMillis ms, 0 for no limit
+    public static void setLimits (long maxSteps, long timeoutMillis) {
+        machine.setLimits(maxSteps, timeoutMillis);
     }
 
-    // put val in R[idx]
-    private static void fR (int idx, float val) {
-        R[idx] = Float.floatToIntBits(val);
+    public static void setTranslate (boolean translate) {
+        machine.setTranslate(translate);
+    }
+
+    public static void load (int[] program) {
+        machine.load(program);
+    }
+
+    // epsilon for precision of float comparisons
+    public static final float EPS = 0.01f;
+
+    public static void execute (InputStream in) throws IOException {
+        try {
+            machine.execute(in);
+        }
+        catch (DLXMachine.LimitExceeded e) {
+            // batch runs stop here, there is no user to wait for
+            printReports();
+            System.exit(e.code());
+        }
+        catch (DLXMachine.MachineError e) {
+            printReports();
+            halt(e.code());
+        }
+        printReports();
     }
 
-    // get float value from R[idx]
-    private static float fR (int idx) {
-        return Float.intBitsToFloat(R[idx]);
+    private static void printReports () {
+        if (machine.profiler() != null) {
+            machine.profiler().report(System.err);
+        }
+        if (machine.timingModel() != null) {
+            machine.timingModel().report(System.err);
+        }
+        if (machine.cache() != null) {
+            machine.cache().report(System.err);
+        }
     }
 
 // Half-Precision Floating-Point (FP16) Support ===============================
@@ -429,7 +136,7 @@ public class DLX {
     private static final int FP16_BIAS = 15;
 
     // convert half-precision floating-point to half-precision floating-point
-    private static float toFP32FromFP16 (int hbits) {
+    static float toFP32FromFP16 (int hbits) {
         int sign = (hbits & 0x8000) << 16;  // bitmask to collect sign for FP32
         int exp = (hbits & 0x7c00); // bitmask to collect FP16 exp w/o sign or mant
         int mant = hbits & 0x03ff;  // bitmask to collect FP16 mant w/o sign or exp
@@ -605,10 +312,8 @@ public class DLX {
     // error
     static final int ERR = 63;
 
-    private static void disassemble (int instrWord) {
-        op = instrWord >>> 26;
-        a = (instrWord >>> 21) & 0x1F;
-        b = (instrWord >>> 16) & 0x1F;
+    // instruction format of an opcode, 0 if the opcode is illegal
+    static int format (int op) {
         switch (op) {
             // F1 format
             case ADDI:
@@ -643,9 +348,7 @@ public class DLX {
             case BGT:
             case BSR:
             case WRL:
-                format = 1;
-                c = (short) instrWord;
-                break;
+                return 1;
 
             // F2 format
             case ADD:
@@ -678,28 +381,37 @@ public class DLX {
             case WRI:
             case WRF:
             case WRB:
-                format = 2;
-                c = instrWord & 0x1F;
-                break;
+                return 2;
 
             // F3 format
             case JSR:
-                format = 3;
-                a = -1;
-                b = -1;
-                c = instrWord & 0x3FFFFFF;
-                break;
+                return 3;
 
             // error or unknown
             case ERR:
             default:
-                System.err.println("Illegal instruction: (" + PC + ")!");
-                break;
+                return 0;
         }
     }
 
     public static String instrString (int instrWord) {
-        disassemble(instrWord);
+        int op = instrWord >>> 26;
+        int a = (instrWord >>> 21) & 0x1F;
+        int b = (instrWord >>> 16) & 0x1F;
+        int c;
+        switch (format(op)) {
+            case 1:
+                c = (short) instrWord;
+                break;
+            case 2:
+                c = instrWord & 0x1F;
+                break;
+            case 3:
+                c = instrWord & 0x3FFFFFF;
+                break;
+            default:
+                return mnemo[op];
+        }
         String line = mnemo[op];
 
         switch (op) {
@@ -781,18 +493,12 @@ public class DLX {
     }
 
     private static void bug(int n) {
-        if (R[30] != 0) {
-            for (int i = 31; i > 27; i--) {
-                System.err.println("R[" + i + "] :: " + R[i]);
-            }
-            for (int i = 8; i > 0; i--) {
-                System.err.println("R[" + i + "] :: " + R[i]);
-            }
-            for (int i = 0; i < 40; i += 4) {
-                System.err.println("--M[" + (R[30]-i)/4 + "] :: " + M[(R[30]-i)/4]);
-            }
-        }
+        machine.dumpState();
+        halt(n);
+    }
 
+    // wait for the user before exiting with the error code
+    private static void halt(int n) {
         try {
             System.in.read();
         }
@@ -832,7 +538,7 @@ public class DLX {
     }
 
     private static int F3 (int op, int c) {
-        if (c < 0 || c > MEM_SIZE) {
+        if (c < 0 || c > memSize) {
             System.out.println(c);
             System.err.println("Operand for F3 format is referencing non-existent memory location.");
             bug(1);
@@ -0,0 +1,170 @@
+package coco;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Set-associative data cache model for the memory accesses of a DLX run
+// Write-allocate: stores fill lines like loads, and hits and misses are counted per PC
+public class DLXCache implements DLXMemoryObserver {
+
+    public enum Policy { LRU, FIFO }
+
+    private static final int HOT_INSTRUCTIONS = 20;
+
+    private int size = 1024;        // bytes
+    private int lineSize = 16;      // bytes
+    private int ways = 2;
+    private Policy policy = Policy.LRU;
+
+    private int sets;
+    private int[] tags;             // sets * ways, -1 when invalid
+    private long[] stamps;          // last use for LRU, fill time for FIFO
+    private long clock;
+
+    // per PC in [0, codeSize), the rest is counted at index codeSize
+    private int[] M;
+    private int codeSize;
+    private long[] hits;
+    private long[] misses;
+    private long loads, stores, loadMisses, storeMisses;
+
+    public DLXCache () {
+        configure();
+    }
+
+    // geometry given as e.g. "size=4096,line=32,ways=4,policy=fifo", the rest keep their defaults
+    public DLXCache (String spec) {
+        if (spec != null && !spec.isEmpty() && !spec.equals("default")) {
+            for (String setting : spec.split(",")) {
+                int eq = setting.indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("expected name=value but got \"" + setting + "\"");
+                }
+                String name = setting.substring(0, eq).trim();
+                String value = setting.substring(eq + 1).trim();
+                switch (name) {
+                    case "size":
+                        size = Integer.parseInt(value);
+                        break;
+                    case "line":
+                        lineSize = Integer.parseInt(value);
+                        break;
+                    case "ways":
+                        ways = Integer.parseInt(value);
+                        break;
+                    case "policy":
+                        policy = Policy.valueOf(value.toUpperCase());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown cache parameter \"" + name + "\"");
+                }
+            }
+        }
+        configure();
+    }
+
+    private void configure () {
+        if (lineSize < 4 || lineSize % 4 != 0) {
+            throw new IllegalArgumentException("line size " + lineSize + " is not a positive multiple of 4");
+        }
+        if (ways < 1 || size < lineSize * ways || size % (lineSize * ways) != 0) {
+            throw new IllegalArgumentException("size " + size + " is not a multiple of line * ways");
+        }
+        sets = size / (lineSize * ways);
+        tags = new int[sets * ways];
+        stamps = new long[sets * ways];
+    }
+
+    // start a run of the program in M[0, codeSize)
+    void reset (int[] M, int codeSize) {
+        this.M = M;
+        this.codeSize = codeSize;
+        hits = new long[codeSize + 1];
+        misses = new long[codeSize + 1];
+        loads = stores = loadMisses = storeMisses = 0;
+        Arrays.fill(tags, -1);
+        clock = 0;
+    }
+
+    @Override
+    public void load (int pc, int idx) {
+        loads++;
+        if (!access(pc, idx)) {
+            loadMisses++;
+        }
+    }
+
+    @Override
+    public void store (int pc, int idx) {
+        stores++;
+        if (!access(pc, idx)) {
+            storeMisses++;
+        }
+    }
+
+    // true on a hit
+    private boolean access (int pc, int idx) {
+        int counter = pc >= 0 && pc < codeSize ? pc : codeSize;
+        int line = Math.floorDiv(idx * 4, lineSize);
+        int set = Math.floorMod(line, sets);
+        int tag = Math.floorDiv(line, sets);
+        int base = set * ways;
+        clock++;
+
+        int victim = base;
+        for (int way = base; way < base + ways; way++) {
+            if (tags[way] == tag) {
+                if (policy == Policy.LRU) {
+                    stamps[way] = clock;
+                }
+                hits[counter]++;
+                return true;
+            }
+            if (tags[victim] != -1 && (tags[way] == -1 || stamps[way] < stamps[victim])) {
+                victim = way;
+            }
+        }
+        tags[victim] = tag;
+        stamps[victim] = clock;
+        misses[counter]++;
+        return false;
+    }
+
+    public long accesses () {
+        return loads + stores;
+    }
+
+    public long misses () {
+        return loadMisses + storeMisses;
+    }
+
+    public void report (PrintStream out) {
+        out.println(String.format("Cache: %d bytes, %d-byte lines, %d-way, %s", size, lineSize, ways, policy));
+        out.println(String.format("    loads  %12d, misses %12d (%.2f%%)", loads, loadMisses, percent(loadMisses, loads)));
+        out.println(String.format("    stores %12d, misses %12d (%.2f%%)", stores, storeMisses, percent(storeMisses, stores)));
+
+        List<Integer> pcs = new ArrayList<>();
+        for (int pc = 0; pc <= codeSize; pc++) {
+            if (hits[pc] + misses[pc] > 0) {
+                pcs.add(pc);
+            }
+        }
+        pcs.sort((x, y) -> Long.compare(misses[y], misses[x]));
+
+        out.println();
+        out.println("Cache misses by instruction:");
+        out.println(String.format("  %6s %12s %12s %8s    %s", "pc", "accesses", "misses", "miss %", "instruction"));
+        for (int i = 0; i < Math.min(HOT_INSTRUCTIONS, pcs.size()); i++) {
+            int pc = pcs.get(i);
+            long total = hits[pc] + misses[pc];
+            String instr = pc < codeSize ? DLX.instrString(M[pc]) : "(outside the program)\n";
+            out.print(String.format("  %6d %12d %12d %7.2f%%    %s", pc, total, misses[pc], percent(misses[pc], total), instr));
+        }
+    }
+
+    private static double percent (long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+}
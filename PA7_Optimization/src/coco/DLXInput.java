@@ -0,0 +1,219 @@
+package coco;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Input of a DLX program, tokenized and parsed straight from a byte buffer
+// Tokens are separated by " \t\n\r\f" like the StringTokenizer over input lines it replaces,
+// and currentLine() is the 0-based line of the last token returned
+public class DLXInput implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // exactly representable powers of ten for the float fast path
+    private static final float[] POW10 = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private final InputStream in;
+    private final Flushable beforeRead;     // called before blocking on the stream
+
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long shifted = 0;           // stream bytes dropped from the front of buf
+
+    // current token is buf[tokStart, tokEnd)
+    private int tokStart = 0;
+    private int tokEnd = 0;
+
+    private int lines = 0;              // line terminators consumed
+    private boolean afterCR = false;    // \r\n ends a single line
+    private int currentLine = -1;
+
+    public DLXInput (InputStream in, Flushable beforeRead) {
+        this.in = in;
+        this.beforeRead = beforeRead;
+    }
+
+    public int currentLine () {
+        return currentLine;
+    }
+
+    // stream offset just past the last token returned
+    public long position () {
+        return shifted + pos;
+    }
+
+    public int lines () {
+        return lines;
+    }
+
+    // continue at a position(), lines() and currentLine() saved from an earlier reader of
+    // the same input, skipping the bytes before it; call before the first token
+    public void skipTo (long position, int lines, int currentLine) throws IOException {
+        in.skipNBytes(position);
+        shifted = position;
+        this.lines = lines;
+        this.currentLine = currentLine;
+    }
+
+    public int nextInt () throws IOException {
+        nextToken();
+        int i = tokStart;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+        // up to 18 digits cannot overflow a long
+        if (i == tokEnd || tokEnd - i > 18) {
+            return Integer.parseInt(token());
+        }
+        long val = 0;
+        for (; i < tokEnd; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(token());
+            }
+            val = val * 10 + digit;
+        }
+        if (negative) {
+            val = -val;
+        }
+        if (val < Integer.MIN_VALUE || val > Integer.MAX_VALUE) {
+            return Integer.parseInt(token());   // throws the usual NumberFormatException
+        }
+        return (int) val;
+    }
+
+    // returns the bits of the float read
+    public int nextFloat () throws IOException {
+        nextToken();
+        int i = tokStart;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        // [digits][.digits] with at most 7 digits is m / 10^k with m and 10^k exact floats,
+        // so a single division rounds correctly like Float.parseFloat
+        int mant = 0;
+        int digits = 0;
+        int fracDigits = -1;
+        for (; i < tokEnd; i++) {
+            byte ch = buf[i];
+            if (ch == '.' && fracDigits < 0) {
+                fracDigits = 0;
+            }
+            else if (ch >= '0' && ch <= '9' && digits < 7) {
+                mant = mant * 10 + (ch - '0');
+                digits++;
+                if (fracDigits >= 0) {
+                    fracDigits++;
+                }
+            }
+            else {
+                return Float.floatToIntBits(Float.parseFloat(token()));
+            }
+        }
+        if (digits == 0) {
+            return Float.floatToIntBits(Float.parseFloat(token()));
+        }
+        float val = (float) mant / POW10[Math.max(fracDigits, 0)];
+        return Float.floatToIntBits(negative ? -val : val);
+    }
+
+    // true when the token is "true" in any case, like Boolean.parseBoolean
+    public boolean nextBool () throws IOException {
+        nextToken();
+        return tokEnd - tokStart == 4
+            && (buf[tokStart] | 0x20) == 't'
+            && (buf[tokStart + 1] | 0x20) == 'r'
+            && (buf[tokStart + 2] | 0x20) == 'u'
+            && (buf[tokStart + 3] | 0x20) == 'e';
+    }
+
+    // token as a String, only needed for the slow parsing paths and errors
+    private String token () {
+        return new String(buf, tokStart, tokEnd - tokStart);
+    }
+
+    private static boolean isDelimiter (byte ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r' || ch == '\f';
+    }
+
+    private void nextToken () throws IOException {
+        // skip delimiters, counting lines
+        while (true) {
+            if (pos == limit && !fill(pos)) {
+                throw new EOFException("No input left after line " + currentLine);
+            }
+            byte ch = buf[pos];
+            if (!isDelimiter(ch)) {
+                break;
+            }
+            if (ch == '\n') {
+                if (!afterCR) {
+                    lines++;
+                }
+                afterCR = false;
+            }
+            else if (ch == '\r') {
+                lines++;
+                afterCR = true;
+            }
+            else {
+                afterCR = false;
+            }
+            pos++;
+        }
+        afterCR = false;
+        currentLine = lines;
+
+        tokStart = pos;
+        while (true) {
+            if (pos == limit && !fill(tokStart)) {
+                break;
+            }
+            if (isDelimiter(buf[pos])) {
+                break;
+            }
+            pos++;
+        }
+        tokEnd = pos;
+    }
+
+    // read more bytes, keeping buf[keep, limit); false at end of stream
+    private boolean fill (int keep) throws IOException {
+        int kept = limit - keep;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, kept);
+            shifted += keep;
+        }
+        else if (kept == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        tokStart -= keep;
+        pos -= keep;
+        limit = kept;
+
+        beforeRead.flush();
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n <= 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Override
+    public void close () throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,1146 @@
+package coco;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// A single DLX processor with its own registers, memory and I/O streams
+// Separate machines share no state, so they can execute on different threads
+public class DLXMachine {
+
+// Processor Emulation ========================================================
+    private final int[] R = new int[32];
+    private int PC, op, a, b, c, format;
+
+    // largest memory whose size still fits the constants the code generator builds
+    public static final int MAX_MEM_SIZE = 1 << 30;
+
+    private int memSize;
+    private int memWords;
+    private int[] M;            // all of memory, or only the code region when sparse
+
+    // sparse memory of pages allocated on their first store, reading as 0 before that
+    private static final int PAGE_SHIFT = 10;   // 4 KiB pages
+    private int[][] pages;
+
+    // pre-decoded instructions for the code region [0, codeSize)
+    // entries with format 0 are illegal and are decoded on every fetch
+    private int codeSize;
+    private int[] dOp, dA, dB, dC;
+    private byte[] dFormat;
+    private float[] dFC;
+
+    // optional translation of the program to JVM bytecode
+    private boolean translate = false;
+    private int[] program;
+    private DLXTranslator.Program translated;
+
+    // optional per-PC profile of each run, which always runs in the interpreter
+    private boolean profile = false;
+    private DLXProfiler profiler;
+
+    // optional cycle estimate of each run, which also always runs in the interpreter
+    private DLXTimingModel timing;
+
+    // optional data cache model, also interpreter only
+    private DLXCache cache;
+
+    // optional binary trace of each run, interpreter only as well
+    private Path traceFile;
+
+    // optional instruction budget and wall-clock limit of each run, 0 for none
+    // steps counts instructions started; limits are looked at every POLL_INTERVAL of them
+    private static final int POLL_INTERVAL = 1 << 16;
+    private long budget = 0;
+    private long timeout = 0;       // ms
+    private long deadline;          // System.nanoTime() value
+    private long steps;
+    private long nextCheck;
+    private boolean translatedLimits;
+
+    // for processing input in execute
+    private DLXInput input;
+    private boolean quiet = false;  // no prompts before reads
+
+    // where the next run continues reading its input, see resume
+    private long inputPosition;
+    private int inputLines;
+    private int inputLine = -1;
+
+    // program output is collected in outBuf and written to out in large chunks
+    private static final int OUT_BUFFER_SIZE = 8192;
+    private static final int OUT_FLUSH_THRESHOLD = 4096;
+    private static final byte[] INT_PROMPT = "int? ".getBytes();
+    private static final byte[] FLOAT_PROMPT = "float? ".getBytes();
+    private static final byte[] BOOL_PROMPT = "true or false? ".getBytes();
+    private static final byte[] TRUE = "true ".getBytes();
+    private static final byte[] FALSE = "false ".getBytes();
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes();
+    private static final int FP32_BIAS = 127;
+
+    private OutputStream out;
+    private final byte[] outBuf = new byte[OUT_BUFFER_SIZE];
+    private int outLen = 0;
+
+    // diagnostics are not buffered
+    private final PrintStream err;
+
+    // Raised instead of exiting the JVM when the program hits a fatal error
+    public static class MachineError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int code;
+
+        public MachineError(int code) {
+            this(code, "DLX stopped with error code " + code);
+        }
+
+        protected MachineError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public int code() {
+            return code;
+        }
+    }
+
+    // Raised when a run uses up its instruction budget (code 64) or time (code 65)
+    // PC and the rest of the state are those before the next instruction, so snapshot()
+    // and resume(in) can carry on with the run
+    public static class LimitExceeded extends MachineError {
+        private static final long serialVersionUID = 1L;
+
+        public LimitExceeded(int code, String message) {
+            super(code, message);
+        }
+    }
+
+    public DLXMachine () {
+        this(System.out, System.err);
+    }
+
+    public DLXMachine (OutputStream out, PrintStream err) {
+        this(DLX.MEM_SIZE, false, out, err);
+    }
+
+    public DLXMachine (int memSize, boolean sparse, OutputStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+        setMemory(memSize, sparse);
+    }
+
+    // memory of memSize bytes, dense or paged; takes effect for the next program loaded
+    public void setMemory (int memSize, boolean sparse) {
+        if (memSize < 8 || memSize > MAX_MEM_SIZE) {
+            throw new IllegalArgumentException("Memory size " + memSize + " is not in [8, " + MAX_MEM_SIZE + "]");
+        }
+        this.memSize = memSize;
+        this.memWords = memSize / 4;
+        if (sparse) {
+            pages = new int[(memWords + (1 << PAGE_SHIFT) - 1) >> PAGE_SHIFT][];
+            M = new int[0];
+        }
+        else {
+            pages = null;
+            M = new int[memWords];
+        }
+        program = null;
+        codeSize = 0;
+    }
+
+    public int memSize () {
+        return memSize;
+    }
+
+    // send program output somewhere else, e.g. OutputStream.nullOutputStream() for benchmarks
+    public void setOutput (OutputStream out) {
+        this.out = out;
+    }
+
+    // leave out the "int? " style prompts, e.g. when input comes from a file
+    public void setQuiet (boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    // run programs as translated JVM bytecode where possible
+    public void setTranslate (boolean translate) {
+        this.translate = translate;
+    }
+
+    // count executions, branches, calls and memory accesses while running
+    public void setProfile (boolean profile) {
+        this.profile = profile;
+    }
+
+    // profile of the last run, or null when profiling was off
+    public DLXProfiler profiler () {
+        return profiler;
+    }
+
+    // estimate cycles with the given model, or not at all with null
+    public void setTimingModel (DLXTimingModel timing) {
+        this.timing = timing;
+    }
+
+    public DLXTimingModel timingModel () {
+        return timing;
+    }
+
+    // simulate the given data cache, or none with null
+    public void setCache (DLXCache cache) {
+        this.cache = cache;
+    }
+
+    public DLXCache cache () {
+        return cache;
+    }
+
+    // write a DLXTracer trace of each run to file, or none with null
+    public void setTrace (Path file) {
+        this.traceFile = file;
+    }
+
+    // stop each run after maxSteps instructions or timeoutMillis ms, 0 for no limit
+    // Translated code counts a backward branch as the instructions it loops over and calls
+    // and returns as one, and stops at the branch target once the budget is used up
+    public void setLimits (long maxSteps, long timeoutMillis) {
+        if (maxSteps < 0 || timeoutMillis < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        }
+        this.budget = maxSteps;
+        this.timeout = timeoutMillis;
+    }
+
+    // instructions executed by the last run, when it had limits
+    public long steps () {
+        return steps;
+    }
+
+    public void load (int[] program) {
+        if (program.length + 1 > memWords) {
+            throw new IllegalArgumentException("Program of " + program.length + " instructions does not fit in "
+                                + memSize + " bytes of memory");
+        }
+        // loading the same program again, e.g. for another run, keeps its translation
+        if (this.program == null || !Arrays.equals(this.program, program)) {
+            translated = null;
+        }
+        this.program = program.clone();
+        codeSize = program.length + 1;
+        if (pages == null) {
+            M = Arrays.copyOf(program, memWords);
+        }
+        else {
+            Arrays.fill(pages, null);
+            M = Arrays.copyOf(program, codeSize);
+        }
+        M[program.length] = -1;
+        if (pages != null) {
+            for (int i = 0; i < codeSize; i++) {
+                storeSparse(i, M[i]);
+            }
+        }
+
+        dOp = new int[codeSize];
+        dA = new int[codeSize];
+        dB = new int[codeSize];
+        dC = new int[codeSize];
+        dFormat = new byte[codeSize];
+        dFC = new float[codeSize];
+        for (int i = 0; i < codeSize; i++) {
+            predecode(i);
+        }
+    }
+
+    // fill the decode table entry for M[idx]
+    private void predecode (int idx) {
+        int instrWord = M[idx];
+        int iOp = instrWord >>> 26;
+        int iFormat = DLX.format(iOp);
+        dOp[idx] = iOp;
+        dA[idx] = (instrWord >>> 21) & 0x1F;
+        dB[idx] = (instrWord >>> 16) & 0x1F;
+        dFormat[idx] = (byte) iFormat;
+        switch (iFormat) {
+            case 1:
+                dC[idx] = (short) instrWord;
+                dFC[idx] = DLX.toFP32FromFP16(dC[idx]);
+                break;
+            case 2:
+                dC[idx] = instrWord & 0x1F;
+                break;
+            case 3:
+                dA[idx] = -1;
+                dB[idx] = -1;
+                dC[idx] = instrWord & 0x3FFFFFF;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int loadWord (int idx) {
+        if (pages == null) {
+            return M[idx];
+        }
+        checkSparse(idx);
+        int[] page = pages[idx >> PAGE_SHIFT];
+        return page == null ? 0 : page[idx & ((1 << PAGE_SHIFT) - 1)];
+    }
+
+    // keep the decode table in sync when the program writes to its own code
+    private void storeWord (int idx, int val) {
+        if (pages == null) {
+            M[idx] = val;
+        }
+        else {
+            storeSparse(idx, val);
+            if (idx < codeSize) {
+                M[idx] = val;
+            }
+        }
+        if (idx < codeSize) {
+            predecode(idx);
+        }
+    }
+
+    // ARRCPY of count words down from srcAddr to down from dstAddr as one System.arraycopy
+    // Returns false, copying nothing, when only the word by word loop gives the right result:
+    // sparse memory, unaligned or out of range addresses, a source just above the destination
+    // (the loop then reads words it has already overwritten), or a write into the program
+    // when codeWritable is false
+    boolean copyWords (int dstAddr, int srcAddr, int count, boolean codeWritable) {
+        if (count <= 0) {
+            return true;
+        }
+        if (pages != null || (dstAddr & 3) != 0 || (srcAddr & 3) != 0) {
+            return false;
+        }
+        int dstHigh = dstAddr / 4;
+        int srcHigh = srcAddr / 4;
+        int dstLow = dstHigh - count + 1;
+        int srcLow = srcHigh - count + 1;
+        if (dstLow < 0 || srcLow < 0 || dstHigh >= memWords || srcHigh >= memWords) {
+            return false;
+        }
+        if (srcHigh > dstHigh && srcLow <= dstHigh) {
+            return false;
+        }
+        if (dstLow < codeSize && !codeWritable) {
+            return false;
+        }
+        System.arraycopy(M, srcLow, M, dstLow, count);
+        for (int idx = dstLow; idx < codeSize && idx <= dstHigh; idx++) {
+            predecode(idx);
+        }
+        return true;
+    }
+
+    private void storeSparse (int idx, int val) {
+        checkSparse(idx);
+        int[] page = pages[idx >> PAGE_SHIFT];
+        if (page == null) {
+            page = new int[1 << PAGE_SHIFT];
+            pages[idx >> PAGE_SHIFT] = page;
+        }
+        page[idx & ((1 << PAGE_SHIFT) - 1)] = val;
+    }
+
+    // fail like an access outside the dense array would
+    private void checkSparse (int idx) {
+        if (idx < 0 || idx >= memWords) {
+            throw new ArrayIndexOutOfBoundsException("Index " + idx + " out of bounds for length " + memWords);
+        }
+    }
+
+    public void execute (InputStream in) throws IOException {
+        for (int i = 0; i < 32; i++) {
+            R[i] = 0;
+        }
+        R[30] = memSize - 1;
+        PC = 0;
+        inputPosition = 0;
+        inputLines = 0;
+        inputLine = -1;
+        run(in);
+    }
+
+    // continue the stopped or restored run from PC; in has to be the input of the run
+    // from its start, and is read on from where the run left it
+    public void resume (InputStream in) throws IOException {
+        if (program == null) {
+            throw new IllegalStateException("No program loaded");
+        }
+        run(in);
+    }
+
+    private void run (InputStream in) throws IOException {
+        int origC = 0;  // used for F2 instruction RET
+        float fC = 0f;  // used for F1/F2 instructions fOP
+        boolean limited = budget > 0 || timeout > 0;
+        startLimits();
+        profiler = profile ? new DLXProfiler(M, codeSize, memWords) : null;
+        DLXProfiler prof = profiler;
+        DLXTimingModel time = timing;
+        if (time != null) {
+            time.reset();
+        }
+        DLXCache dcache = cache;
+        if (dcache != null) {
+            dcache.reset(M, codeSize);
+        }
+
+        input = null;
+        try (DLXInput reader = new DLXInput(in, this::flushOutput);
+             DLXTracer trace = traceFile == null ? null : new DLXTracer(traceFile, memSize)) {
+            input = reader;
+            if (inputPosition > 0) {
+                reader.skipTo(inputPosition, inputLines, inputLine);
+            }
+            boolean returned = false;
+            if (translate && pages == null && prof == null && time == null && dcache == null && trace == null) {
+                if (translated == null || translatedLimits != limited) {
+                    translated = DLXTranslator.translate(program, memSize, limited);
+                    translatedLimits = limited;
+                }
+                // the interpreter finishes the run if the translated code hands back a PC
+                if (translated != null) {
+                    PC = translated.run(R, M, this, PC);
+                    returned = PC < 0;
+                }
+            }
+            while (!returned) {
+                if (limited && ++steps > nextCheck && limitReached()) {
+                    limitExceeded();
+                }
+                R[0] = 0;
+                if (PC < codeSize && dFormat[PC] != 0) {
+                    op = dOp[PC];
+                    a = dA[PC];
+                    b = dB[PC];
+                    c = dC[PC];
+                    format = dFormat[PC];
+                    if (format == 1) {
+                        fC = dFC[PC];
+                    }
+                }
+                else {
+                    disassemble(loadWord(PC)); // init op, a, b, c
+                    if (format == 1) {
+                        fC = DLX.toFP32FromFP16(c);
+                    }
+                }
+
+                if (trace != null) {
+                    trace.step(PC, PC < codeSize ? M[PC] : loadWord(PC));
+                }
+                if (time != null) {
+                    time.instruction(PC, op, a, b, c, R);
+                }
+
+                int nextPC = PC + 1;
+                if (format == 2) {
+                    origC = c;
+                    c = R[origC];
+                    fC = fR(origC);
+                }
+                if (prof != null) {
+                    prof.instruction(PC, op, a, b, c, R);
+                }
+                if (dcache != null) {
+                    DLXMemoryObserver.observe(dcache, PC, op, a, b, c, R);
+                }
+                switch (op) {
+                    case DLX.ADD:
+                    case DLX.ADDI:
+                        R[a] = R[b] + c;
+                        break;
+                    case DLX.fADD:
+                    case DLX.fADDI:
+                        fR(a, fR(b) + fC);
+                        break;
+                    case DLX.SUB:
+                    case DLX.SUBI:
+                        R[a] = R[b] - c;
+                        break;
+                    case DLX.fSUB:
+                    case DLX.fSUBI:
+                        fR(a, fR(b) - fC);
+                        break;
+                    case DLX.MUL:
+                    case DLX.MULI:
+                        R[a] = R[b] * c;
+                        break;
+                    case DLX.fMUL:
+                    case DLX.fMULI:
+                        fR(a, fR(b) * fC);
+                        break;
+                    case DLX.DIV:
+                    case DLX.DIVI:
+                        R[a] = R[b] / c;
+                        break;
+                    case DLX.fDIV:
+                    case DLX.fDIVI:
+                        fR(a, fR(b) / fC);
+                        break;
+                    case DLX.MOD:
+                    case DLX.MODI:
+                        R[a] = R[b] % c;
+                        break;
+                    case DLX.fMOD:
+                    case DLX.fMODI:
+                        fR(a, fR(b) % fC);
+                        break;
+                    case DLX.POW:
+                    case DLX.POWI:
+                        if (R[b] < 0 || c < 0) {
+                            err.println("DLX.execute: Illegal value (" + R[b] + ")^("
+                                                + c + ") in POW!");
+                            bug(1);
+                        }
+                        R[a] = (int) Math.round(Math.pow(R[b], c));
+                        break;
+                    case DLX.CMP:
+                    case DLX.CMPI:
+                        R[a] = R[b] - c;
+                        if (R[a] < 0) {
+                            R[a] = -1;
+                        }
+                        else if (R[a] > 1) {
+                            R[a] = 1;
+                        }
+                        break;
+                    case DLX.fCMP:
+                    case DLX.fCMPI:
+                        float result = fR(b) - fC;
+
+                        R[a] = 0;
+                        if (result <= -DLX.EPS) {
+                            R[a] = -1;
+                        }
+                        else if (result >= DLX.EPS) {
+                            R[a] = 1;
+                        }
+                        break;
+                    case DLX.OR:
+                    case DLX.ORI:
+                        R[a] = R[b] | c;
+                        break;
+                    case DLX.AND:
+                    case DLX.ANDI:
+                        R[a] = R[b] & c;
+                        break;
+                    case DLX.BIC:
+                    case DLX.BICI:
+                        R[a] = R[b] & ~c;
+                        break;
+                    case DLX.XOR:
+                    case DLX.XORI:
+                        R[a] = R[b] ^ c;
+                        break;
+                    case DLX.LSH:
+                    case DLX.LSHI:
+                        if (c < -31 || c > 31) {
+                            err.println("DLX.execute: Illegal value " + c + " in LSH!");
+                            bug(1);
+                        }
+
+                        if (c < 0) {
+                            R[a] = R[b] >>> -c;
+                        }
+                        else {
+                            R[a] = R[b] << c;
+                        }
+                        break;
+                    case DLX.ASH:
+                    case DLX.ASHI:
+                        if (c < -31 || c > 31) {
+                            err.println("DLX.execute: Illegal value " + c + " in ASH!");
+                            bug(1);
+                        }
+
+                        if (c < 0) {
+                            R[a] = R[b] >> -c;
+                        }
+                        else {
+                            R[a] = R[b] << c;
+                        }
+                        break;
+                    case DLX.CHK:
+                    case DLX.CHKI:
+                        if (R[a] < 0) {
+                            err.println("DLX.execute: " + (4*PC) + " :: R[" + a + "] == "
+                                                + R[a] + " < 0");
+                            bug(39);
+                        }
+                        else if (R[a] >= c) {
+                            err.println("DLX.execute: " + (4*PC) + " :: R[" + a + "] == "
+                                                + R[a] + " >= " + c);
+                            bug(39);
+                        }
+                        break;
+                    case DLX.LDW:
+                    case DLX.LDX:
+                        R[a] = loadWord((R[b] + c) / 4);
+                        break;
+                    case DLX.POP:
+                        R[a] = loadWord(R[b] / 4);
+                        R[b] = R[b] + c;
+                        break;
+                    case DLX.STW:
+                    case DLX.STX:
+                        storeWord((R[b] + c) / 4, R[a]);
+                        break;
+                    case DLX.PSH:
+                        R[b] = R[b] + c;
+                        storeWord(R[b] / 4, R[a]);
+                        break;
+                    case DLX.ARRCPY:
+                        if (!copyWords(R[a], R[b], c, true)) {
+                            for (int i = 0; i < c; i++) {
+                                storeWord((R[a] - 4*i) / 4, loadWord((R[b] - 4*i) / 4));
+                            }
+                        }
+                        break;
+                    case DLX.BEQ:
+                        if (R[a] == 0) {
+                            nextPC = PC + c;
+                        }
+                        checkTarget(nextPC, 47);
+                        break;
+                    case DLX.BNE:
+                        if (R[a] != 0) {
+                            nextPC = PC + c;
+                        }
+                        checkTarget(nextPC, 48);
+                        break;
+                    case DLX.BLT:
+                        if (R[a] < 0) {
+                            nextPC = PC + c;
+                        }
+                        checkTarget(nextPC, 49);
+                        break;
+                    case DLX.BGE:
+                        if (R[a] >= 0) {
+                            nextPC = PC + c;
+                        }
+                        checkTarget(nextPC, 50);
+                        break;
+                    case DLX.BLE:
+                        if (R[a] <= 0) {
+                            nextPC = PC + c;
+                        }
+                        checkTarget(nextPC, 51);
+                        break;
+                    case DLX.BGT:
+                        if (R[a] > 0) {
+                            nextPC = PC + c;
+                        }
+                        checkTarget(nextPC, 52);
+                        break;
+                    case DLX.BSR:
+                        R[31] = 4 * (PC + 1);
+                        nextPC = PC + c;
+                        checkTarget(nextPC, 53);
+                        break;
+                    case DLX.JSR:
+                        R[31] = 4 * (PC + 1);
+                        nextPC = c / 4;
+                        checkTarget(nextPC, 54);
+                        break;
+                    case DLX.RET:
+                        if (origC == 0) {
+                            returned = true;
+                            break;
+                        }
+                        nextPC = c / 4;
+                        checkTarget(nextPC, 55);
+                        break;
+                    case DLX.RDI:
+                        R[a] = readInt();
+                        break;
+                    case DLX.RDF:
+                        R[a] = readFloat();
+                        break;
+                    case DLX.RDB:
+                        R[a] = readBool();
+                        break;
+                    case DLX.WRI:
+                        writeInt(R[b]);
+                        break;
+                    case DLX.WRF:
+                        writeFloat(R[b]);
+                        break;
+                    case DLX.WRB:
+                        writeBool(R[b]);
+                        break;
+                    case DLX.WRL:
+                        writeLine();
+                        break;
+                    case DLX.ERR:
+                        err.println("Program dropped off the end!");
+                        break;
+                    default:
+                        err.println("DLX.execute: Unknown opcode encountered!");
+                        bug(2);
+                        break;
+                }
+                if (trace != null) {
+                    traceChanges(trace);
+                }
+                PC = nextPC;
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new NumberFormatException("Failed at line " + input.currentLine() + " of input: " + e.getMessage());
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            flushOutput();  // keep program output ahead of the diagnostics
+            err.println("Failed at " + (4*PC));
+            if (PC >= 0 && PC < memWords) {
+                err.println("Instruction :: " + DLX.instrString(loadWord(PC)));
+            }
+            bug(63);
+        }
+        finally {
+            if (input != null) {
+                inputPosition = input.position();
+                inputLines = input.lines();
+                inputLine = input.currentLine();
+            }
+            flushOutput();
+        }
+    }
+
+// Snapshots ==================================================================
+
+    private static final int SNAPSHOT_MAGIC = 0x444C5853;   // "DLXS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int PAGE_WORDS = 1 << PAGE_SHIFT;
+
+    // R, PC, memory, the loaded program and the input position as a byte array for restore
+    // Memory is saved in pages of PAGE_WORDS words, leaving out the pages that are all 0
+    public byte[] snapshot () {
+        if (program == null) {
+            throw new IllegalStateException("No program loaded");
+        }
+        int pageCount = (memWords + PAGE_WORDS - 1) / PAGE_WORDS;
+        int[] page = new int[PAGE_WORDS];
+        long size = 4L * (10 + R.length + program.length + 1);
+        for (int p = 0; p < pageCount; p++) {
+            if (readPage(p, page) > 0) {
+                size += 4L * (1 + PAGE_WORDS);
+            }
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Memory in use is too large for a snapshot");
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        IntBuffer ints = bytes.asIntBuffer();
+        ints.put(SNAPSHOT_MAGIC).put(SNAPSHOT_VERSION).put(memSize).put(pages != null ? 1 : 0);
+        ints.put(PC).put(R);
+        ints.put((int) (inputPosition >>> 32)).put((int) inputPosition).put(inputLines).put(inputLine);
+        ints.put(program.length).put(program);
+        int saved = 0;
+        int countAt = ints.position();
+        ints.put(0);
+        for (int p = 0; p < pageCount; p++) {
+            if (readPage(p, page) > 0) {
+                ints.put(p).put(page);
+                saved++;
+            }
+        }
+        ints.put(countAt, saved);
+        return bytes.array();
+    }
+
+    // copy page p of memory into words, zero filled past the end; returns its nonzero words
+    private int readPage (int p, int[] words) {
+        int base = p * PAGE_WORDS;
+        int n = Math.min(PAGE_WORDS, memWords - base);
+        if (pages != null) {
+            if (pages[p] == null) {
+                Arrays.fill(words, 0);
+                return 0;
+            }
+            System.arraycopy(pages[p], 0, words, 0, PAGE_WORDS);
+        }
+        else {
+            System.arraycopy(M, base, words, 0, n);
+            Arrays.fill(words, n, PAGE_WORDS, 0);
+        }
+        int nonzero = 0;
+        for (int i = 0; i < n; i++) {
+            if (words[i] != 0) {
+                nonzero++;
+            }
+        }
+        return nonzero;
+    }
+
+    // put the machine back into the state of a snapshot, ready to resume
+    // The translation of the program, if any, is made again on the next run
+    public void restore (byte[] snapshot) {
+        IntBuffer ints = ByteBuffer.wrap(snapshot).asIntBuffer();
+        if (ints.remaining() < 10 + R.length || ints.get() != SNAPSHOT_MAGIC || ints.get() != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Not a version " + SNAPSHOT_VERSION + " DLX snapshot");
+        }
+        int savedMemSize = ints.get();
+        boolean sparse = ints.get() != 0;
+        int savedPC = ints.get();
+        int[] savedR = new int[R.length];
+        ints.get(savedR);
+        long position = ((long) ints.get() << 32) | (ints.get() & 0xFFFFFFFFL);
+        int lines = ints.get();
+        int line = ints.get();
+        int[] savedProgram = new int[ints.get()];
+        ints.get(savedProgram);
+
+        setMemory(savedMemSize, sparse);
+        load(savedProgram);
+        // the code region may have been overwritten since, down to pages that are all 0
+        for (int idx = 0; idx < codeSize; idx++) {
+            storeWord(idx, 0);
+        }
+        int saved = ints.get();
+        int[] page = new int[PAGE_WORDS];
+        for (int i = 0; i < saved; i++) {
+            int base = ints.get() * PAGE_WORDS;
+            ints.get(page);
+            int n = Math.min(PAGE_WORDS, memWords - base);
+            if (pages == null) {
+                System.arraycopy(page, 0, M, base, n);
+            }
+            else {
+                pages[base >> PAGE_SHIFT] = page.clone();
+            }
+            for (int idx = base; idx < codeSize && idx < base + n; idx++) {
+                M[idx] = page[idx - base];
+                predecode(idx);
+            }
+        }
+        System.arraycopy(savedR, 0, R, 0, R.length);
+        PC = savedPC;
+        inputPosition = position;
+        inputLines = lines;
+        inputLine = line;
+    }
+
+// Limits =====================================================================
+
+    private void startLimits () {
+        steps = 0;
+        deadline = System.nanoTime() + timeout * 1_000_000;
+        nextCheck = budget > 0 ? Math.min(budget, POLL_INTERVAL) : POLL_INTERVAL;
+    }
+
+    // called by translated code at backward branches, calls and returns with the number of
+    // instructions to count; true when the run has to stop
+    boolean poll (int n) {
+        steps += n;
+        return steps > nextCheck && limitReached();
+    }
+
+    private boolean limitReached () {
+        if (budget > 0 && steps > budget) {
+            return true;
+        }
+        if (timeout > 0 && System.nanoTime() - deadline > 0) {
+            return true;
+        }
+        nextCheck = budget > 0 ? Math.min(budget, steps + POLL_INTERVAL) : steps + POLL_INTERVAL;
+        return false;
+    }
+
+    private void limitExceeded () throws IOException {
+        steps--;    // the instruction at PC has not run
+        flushOutput();
+        String message;
+        int code;
+        if (budget > 0 && steps >= budget) {
+            message = "DLX.execute: instruction budget of " + budget + " used up at " + (4*PC);
+            code = 64;
+        }
+        else {
+            message = "DLX.execute: time limit of " + timeout + " ms passed at " + (4*PC);
+            code = 65;
+        }
+        err.println(message);
+        throw new LimitExceeded(code, message);
+    }
+
+    // record what the instruction just executed changed, c resolved as in execute
+    private void traceChanges (DLXTracer trace) throws IOException {
+        switch (op) {
+            case DLX.STW:
+            case DLX.STX:
+                trace.memory((R[b] + c) / 4, loadWord((R[b] + c) / 4));
+                break;
+            case DLX.PSH:
+                trace.register(b, R[b]);
+                trace.memory(R[b] / 4, loadWord(R[b] / 4));
+                break;
+            case DLX.POP:
+                trace.register(a, R[a]);
+                trace.register(b, R[b]);
+                break;
+            case DLX.ARRCPY:
+                for (int i = 0; i < c; i++) {
+                    trace.memory((R[a] - 4*i) / 4, loadWord((R[a] - 4*i) / 4));
+                }
+                break;
+            case DLX.BSR:
+            case DLX.JSR:
+                trace.register(31, R[31]);
+                break;
+            case DLX.CHK:
+            case DLX.CHKI:
+            case DLX.BEQ:
+            case DLX.BNE:
+            case DLX.BLT:
+            case DLX.BGE:
+            case DLX.BLE:
+            case DLX.BGT:
+            case DLX.RET:
+            case DLX.WRI:
+            case DLX.WRF:
+            case DLX.WRB:
+            case DLX.WRL:
+            case DLX.ERR:
+                break;
+            default:
+                // arithmetic, logic, loads and reads write R[a]
+                trace.register(a, R[a]);
+                break;
+        }
+    }
+
+    // check that a branch or jump lands inside memory
+    private void checkTarget (int nextPC, int errorCode) {
+        if (nextPC < 0 || nextPC > memSize/4) {
+            err.println("DLX.execute: " + (4*nextPC) + " is no address "
+                                + "in memory [0, " + memSize + "].");
+            bug(errorCode);
+        }
+    }
+
+// Input/Output ===============================================================
+    // also called by translated code, so the two engines format I/O identically
+    int readInt () throws IOException {
+        prompt(INT_PROMPT);
+        try {
+            return input.nextInt();
+        }
+        catch (IOException e) {
+            throw readError(e);
+        }
+    }
+
+    // returns the bits of the float read
+    int readFloat () throws IOException {
+        prompt(FLOAT_PROMPT);
+        try {
+            return input.nextFloat();
+        }
+        catch (IOException e) {
+            throw readError(e);
+        }
+    }
+
+    int readBool () throws IOException {
+        prompt(BOOL_PROMPT);
+        try {
+            return input.nextBool() ? 1 : 0;
+        }
+        catch (IOException e) {
+            throw readError(e);
+        }
+    }
+
+    private void prompt (byte[] text) throws IOException {
+        if (!quiet) {
+            write(text);
+        }
+    }
+
+    private IOException readError (IOException e) throws IOException {
+        write("error".getBytes());
+        write(NEWLINE);
+        flushOutput();
+        err.println("Interepter: Couldn't read data file");
+        return e;
+    }
+
+    void writeInt (int val) throws IOException {
+        reserve(12);
+        appendInt(val);
+        outBuf[outLen++] = ' ';
+    }
+
+    // val holds the bits of the float to write, formatted like "%.2f "
+    void writeFloat (int val) throws IOException {
+        int exp = (val >>> 23) & 0xFF;
+        if (exp >= FP32_BIAS + 24) {
+            // NaN, infinity and floats without a fractional part to round
+            write(String.format("%.2f ", Float.intBitsToFloat(val)).getBytes());
+            return;
+        }
+
+        // |val| = mant * 2^shift exactly; round |val| * 100 half up
+        long mant = val & 0x7FFFFF;
+        int shift;
+        if (exp == 0) {
+            shift = 1 - FP32_BIAS - 23;
+        }
+        else {
+            mant |= 0x800000;
+            shift = exp - FP32_BIAS - 23;
+        }
+        long hundredths;
+        if (shift >= 0) {
+            hundredths = (100 * mant) << shift;
+        }
+        else if (shift > -63) {
+            hundredths = (100 * mant + (1L << (-shift - 1))) >> -shift;
+        }
+        else {
+            hundredths = 0;
+        }
+
+        reserve(14);
+        if (val < 0) {
+            outBuf[outLen++] = '-';
+        }
+        appendInt((int) (hundredths / 100));
+        int frac = (int) (hundredths % 100);
+        outBuf[outLen++] = '.';
+        outBuf[outLen++] = (byte) ('0' + frac / 10);
+        outBuf[outLen++] = (byte) ('0' + frac % 10);
+        outBuf[outLen++] = ' ';
+    }
+
+    void writeBool (int val) throws IOException {
+        write(val == 1 ? TRUE : FALSE);
+    }
+
+    void writeLine () throws IOException {
+        write(NEWLINE);
+        if (outLen >= OUT_FLUSH_THRESHOLD) {
+            flushOutput();
+        }
+    }
+
+    // decimal digits of val, caller reserves 11 bytes
+    private void appendInt (int val) {
+        if (val < 0) {
+            outBuf[outLen++] = '-';
+            if (val == Integer.MIN_VALUE) {
+                outBuf[outLen++] = '2';
+                val = -147483648;
+            }
+            val = -val;
+        }
+        int digits = 1;
+        for (int v = val; v >= 10; v /= 10) {
+            digits++;
+        }
+        outLen += digits;
+        for (int i = outLen - 1; i >= outLen - digits; i--) {
+            outBuf[i] = (byte) ('0' + val % 10);
+            val /= 10;
+        }
+    }
+
+    private void write (byte[] bytes) throws IOException {
+        reserve(bytes.length);
+        if (bytes.length > outBuf.length) {
+            out.write(bytes);
+            return;
+        }
+        System.arraycopy(bytes, 0, outBuf, outLen, bytes.length);
+        outLen += bytes.length;
+    }
+
+    // make room for n more bytes in outBuf
+    private void reserve (int n) throws IOException {
+        if (outLen + n > outBuf.length) {
+            flushOutput();
+        }
+    }
+
+    void flushOutput () throws IOException {
+        if (outLen > 0) {
+            out.write(outBuf, 0, outLen);
+            outLen = 0;
+        }
+        out.flush();
+    }
+
+    // put val in R[idx]
+    private void fR (int idx, float val) {
+        R[idx] = Float.floatToIntBits(val);
+    }
+
+    // get float value from R[idx]
+    private float fR (int idx) {
+        return Float.intBitsToFloat(R[idx]);
+    }
+
+    private void disassemble (int instrWord) {
+        op = instrWord >>> 26;
+        a = (instrWord >>> 21) & 0x1F;
+        b = (instrWord >>> 16) & 0x1F;
+        format = DLX.format(op);
+        switch (format) {
+            case 1:
+                c = (short) instrWord;
+                break;
+            case 2:
+                c = instrWord & 0x1F;
+                break;
+            case 3:
+                a = -1;
+                b = -1;
+                c = instrWord & 0x3FFFFFF;
+                break;
+            default:
+                err.println("Illegal instruction: (" + PC + ")!");
+                break;
+        }
+    }
+
+    // print the registers and top of stack, then stop the machine
+    void bug (int n) {
+        try {
+            flushOutput();
+        }
+        catch (IOException e) {
+            err.println("DLX: Couldn't write program output");
+        }
+        dumpState();
+        throw new MachineError(n);
+    }
+
+    void dumpState () {
+        if (R[30] != 0) {
+            for (int i = 31; i > 27; i--) {
+                err.println("R[" + i + "] :: " + R[i]);
+            }
+            for (int i = 8; i > 0; i--) {
+                err.println("R[" + i + "] :: " + R[i]);
+            }
+            for (int i = 0; i < 40; i += 4) {
+                int idx = (R[30]-i)/4;
+                if (idx >= 0 && idx < memWords) {
+                    err.println("--M[" + idx + "] :: " + loadWord(idx));
+                }
+            }
+        }
+    }
+}
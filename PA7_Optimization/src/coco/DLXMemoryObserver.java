@@ -0,0 +1,36 @@
+package coco;
+
+// Sees the data memory words a DLX instruction accesses, by word index into M
+public interface DLXMemoryObserver {
+
+    void load (int pc, int idx);
+
+    void store (int pc, int idx);
+
+    // report the accesses of the instruction at pc before it executes, with c already
+    // resolved for F2 instructions; the index expressions match DLXMachine.execute
+    static void observe (DLXMemoryObserver observer, int pc, int op, int a, int b, int c, int[] R) {
+        switch (op) {
+            case DLX.LDW:
+            case DLX.LDX:
+                observer.load(pc, (R[b] + c) / 4);
+                break;
+            case DLX.POP:
+                observer.load(pc, R[b] / 4);
+                break;
+            case DLX.STW:
+            case DLX.STX:
+            case DLX.PSH:
+                observer.store(pc, (R[b] + c) / 4);
+                break;
+            case DLX.ARRCPY:
+                for (int i = 0; i < c; i++) {
+                    observer.load(pc, (R[b] - 4*i) / 4);
+                    observer.store(pc, (R[a] - 4*i) / 4);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package coco;
+
+import java.io.PrintStream;
+
+// Timing of a simple in-order DLX pipeline
+// Each instruction costs the latency of its class, taken branches and jumps pay a
+// refill penalty, using a register loaded by the previous instruction stalls, and so
+// does a branch testing a register written by the previous instruction
+public class DLXPipeline implements DLXTimingModel {
+
+    // latencies in cycles, in the order of NAMES
+    private static final int ALU = 0;
+    private static final int MUL = 1;       // MUL, fMUL
+    private static final int DIV = 2;       // DIV, MOD, POW, fDIV, fMOD
+    private static final int MEM = 3;       // LDW, LDX, POP, STW, STX, PSH, per word of ARRCPY
+    private static final int BRANCH = 4;    // extra cycles for a taken branch, jump or return
+    private static final int LOAD_USE = 5;
+    private static final int BRANCH_DEP = 6;
+
+    private static final String[] NAMES = {
+        "alu", "mul", "div", "mem", "branch", "loaduse", "branchdep"
+    };
+    private static final int[] DEFAULTS = {
+        1, 4, 12, 2, 2, 1, 1
+    };
+
+    private static final byte[] FORMAT = new byte[64];
+    static {
+        for (int op = 0; op < FORMAT.length; op++) {
+            FORMAT[op] = (byte) DLX.format(op);
+        }
+    }
+
+    private final int[] latency = DEFAULTS.clone();
+
+    private long cycles;
+    private long instructions;
+    private long loadUseStalls;
+    private long branchStalls;
+    private long takenPenalty;
+
+    // registers written by the previous instruction, and by it if it was a load
+    private int lastWrites;
+    private int lastLoads;
+
+    public DLXPipeline () {
+    }
+
+    // latencies given as e.g. "mul=3,div=20,mem=1", the rest keep their defaults
+    public DLXPipeline (String spec) {
+        if (spec == null || spec.isEmpty() || spec.equals("default")) {
+            return;
+        }
+        for (String setting : spec.split(",")) {
+            int eq = setting.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected name=cycles but got \"" + setting + "\"");
+            }
+            setLatency(setting.substring(0, eq).trim(), Integer.parseInt(setting.substring(eq + 1).trim()));
+        }
+    }
+
+    public void setLatency (String name, int cycles) {
+        if (cycles < 0) {
+            throw new IllegalArgumentException("negative latency for " + name);
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                latency[i] = cycles;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("unknown latency \"" + name + "\"");
+    }
+
+    @Override
+    public void reset () {
+        cycles = 0;
+        instructions = 0;
+        loadUseStalls = 0;
+        branchStalls = 0;
+        takenPenalty = 0;
+        lastWrites = 0;
+        lastLoads = 0;
+    }
+
+    private static int bit (int reg) {
+        return 1 << reg;
+    }
+
+    @Override
+    public void instruction (int pc, int op, int a, int b, int c, int[] R) {
+        instructions++;
+        int cReg = FORMAT[op] == 2 ? bit(c) : 0;
+        int cVal = FORMAT[op] == 2 ? R[c] : c;
+
+        int cost = latency[ALU];
+        int reads = 0;
+        int writes = 0;
+        int loads = 0;
+        boolean taken = false;
+        boolean branch = false;
+        switch (op) {
+            case DLX.MUL:
+            case DLX.MULI:
+            case DLX.fMUL:
+            case DLX.fMULI:
+                cost = latency[MUL];
+                reads = bit(b) | cReg;
+                writes = bit(a);
+                break;
+            case DLX.DIV:
+            case DLX.DIVI:
+            case DLX.MOD:
+            case DLX.MODI:
+            case DLX.POW:
+            case DLX.POWI:
+            case DLX.fDIV:
+            case DLX.fDIVI:
+            case DLX.fMOD:
+            case DLX.fMODI:
+                cost = latency[DIV];
+                reads = bit(b) | cReg;
+                writes = bit(a);
+                break;
+            case DLX.CHK:
+            case DLX.CHKI:
+                reads = bit(a) | cReg;
+                break;
+            case DLX.LDW:
+            case DLX.LDX:
+                cost = latency[MEM];
+                reads = bit(b) | cReg;
+                writes = bit(a);
+                loads = bit(a);
+                break;
+            case DLX.POP:
+                cost = latency[MEM];
+                reads = bit(b);
+                writes = bit(a) | bit(b);
+                loads = bit(a);
+                break;
+            case DLX.STW:
+            case DLX.STX:
+                cost = latency[MEM];
+                reads = bit(a) | bit(b) | cReg;
+                break;
+            case DLX.PSH:
+                cost = latency[MEM];
+                reads = bit(a) | bit(b);
+                writes = bit(b);
+                break;
+            case DLX.ARRCPY:
+                cost = latency[MEM] * Math.max(cVal, 1);
+                reads = bit(a) | bit(b) | cReg;
+                break;
+            case DLX.BEQ:
+                branch = true;
+                taken = R[a] == 0;
+                break;
+            case DLX.BNE:
+                branch = true;
+                taken = R[a] != 0;
+                break;
+            case DLX.BLT:
+                branch = true;
+                taken = R[a] < 0;
+                break;
+            case DLX.BGE:
+                branch = true;
+                taken = R[a] >= 0;
+                break;
+            case DLX.BLE:
+                branch = true;
+                taken = R[a] <= 0;
+                break;
+            case DLX.BGT:
+                branch = true;
+                taken = R[a] > 0;
+                break;
+            case DLX.BSR:
+            case DLX.JSR:
+                taken = true;
+                writes = bit(31);
+                break;
+            case DLX.RET:
+                taken = true;
+                reads = cReg;
+                break;
+            case DLX.RDI:
+            case DLX.RDF:
+            case DLX.RDB:
+                writes = bit(a);
+                break;
+            case DLX.WRI:
+            case DLX.WRF:
+            case DLX.WRB:
+                reads = bit(b);
+                break;
+            case DLX.WRL:
+            case DLX.ERR:
+                break;
+            default:
+                // remaining arithmetic and logic
+                reads = bit(b) | cReg;
+                writes = bit(a);
+                break;
+        }
+        if (branch) {
+            reads = bit(a);
+        }
+        reads &= ~1;    // R0 is always ready
+
+        cycles += cost;
+        if ((reads & lastLoads) != 0) {
+            cycles += latency[LOAD_USE];
+            loadUseStalls += latency[LOAD_USE];
+        }
+        else if (branch && (reads & lastWrites) != 0) {
+            cycles += latency[BRANCH_DEP];
+            branchStalls += latency[BRANCH_DEP];
+        }
+        if (taken) {
+            cycles += latency[BRANCH];
+            takenPenalty += latency[BRANCH];
+        }
+        lastWrites = writes;
+        lastLoads = loads;
+    }
+
+    @Override
+    public long cycles () {
+        return cycles;
+    }
+
+    @Override
+    public long instructions () {
+        return instructions;
+    }
+
+    @Override
+    public void report (PrintStream out) {
+        DLXTimingModel.super.report(out);
+        out.println("    " + loadUseStalls + " load-use stall cycles, "
+                + branchStalls + " branch dependence stall cycles, "
+                + takenPenalty + " taken branch cycles");
+    }
+}
@@ -0,0 +1,239 @@
+package coco;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Execution profile of one DLX run, filled in by DLXMachine when profiling is on
+// Every counter is a primitive long[] indexed by address, so counting is a single increment
+public class DLXProfiler implements DLXMemoryObserver {
+
+    // memory accesses are counted per range of 2^RANGE_SHIFT words (256 bytes)
+    private static final int RANGE_SHIFT = 6;
+    private static final int HOT_BLOCKS = 10;
+
+    private final int[] M;
+    private final int codeSize;
+    private final int memWords;
+
+    private final long[] executed;  // per PC in [0, codeSize)
+    private long executedOutside;   // instructions fetched from past the program
+    private final long[] taken;     // per branch PC
+    private final long[] notTaken;
+    private final long[] calls;     // per JSR/BSR target in [0, codeSize)
+    private final long[] loads;     // per memory range
+    private final long[] stores;
+
+    DLXProfiler (int[] M, int codeSize, int memWords) {
+        this.M = M;
+        this.codeSize = codeSize;
+        this.memWords = memWords;
+        executed = new long[codeSize];
+        taken = new long[codeSize];
+        notTaken = new long[codeSize];
+        calls = new long[codeSize];
+        int ranges = (memWords >> RANGE_SHIFT) + 1;
+        loads = new long[ranges];
+        stores = new long[ranges];
+    }
+
+    // called before the instruction at pc executes, with c already resolved for F2 instructions
+    void instruction (int pc, int op, int a, int b, int c, int[] R) {
+        if (pc >= codeSize) {
+            executedOutside++;
+            return;
+        }
+        executed[pc]++;
+        DLXMemoryObserver.observe(this, pc, op, a, b, c, R);
+        switch (op) {
+            case DLX.BEQ:
+                branch(pc, R[a] == 0);
+                break;
+            case DLX.BNE:
+                branch(pc, R[a] != 0);
+                break;
+            case DLX.BLT:
+                branch(pc, R[a] < 0);
+                break;
+            case DLX.BGE:
+                branch(pc, R[a] >= 0);
+                break;
+            case DLX.BLE:
+                branch(pc, R[a] <= 0);
+                break;
+            case DLX.BGT:
+                branch(pc, R[a] > 0);
+                break;
+            case DLX.BSR:
+                call(pc + c);
+                break;
+            case DLX.JSR:
+                call(c / 4);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void branch (int pc, boolean isTaken) {
+        if (isTaken) {
+            taken[pc]++;
+        }
+        else {
+            notTaken[pc]++;
+        }
+    }
+
+    private void call (int target) {
+        if (target >= 0 && target < codeSize) {
+            calls[target]++;
+        }
+    }
+
+    // out of range addresses are left for the machine to report
+    @Override
+    public void load (int pc, int idx) {
+        if (idx >= 0 && idx < memWords) {
+            loads[idx >> RANGE_SHIFT]++;
+        }
+    }
+
+    @Override
+    public void store (int pc, int idx) {
+        if (idx >= 0 && idx < memWords) {
+            stores[idx >> RANGE_SHIFT]++;
+        }
+    }
+
+    public long instructionCount () {
+        long total = executedOutside;
+        for (long count : executed) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long executionCount (int pc) {
+        return pc < codeSize ? executed[pc] : 0;
+    }
+
+// Report =====================================================================
+
+    // a basic block [start, end) of the loaded program
+    private static class Block {
+        final int start, end;
+        final long work;    // instructions executed inside the block
+
+        Block (int start, int end, long work) {
+            this.start = start;
+            this.end = end;
+            this.work = work;
+        }
+    }
+
+    // split [0, codeSize) at branch targets and after control transfers
+    private List<Block> blocks () {
+        boolean[] leader = new boolean[codeSize + 1];
+        leader[0] = true;
+        leader[codeSize] = true;
+        for (int pc = 0; pc < codeSize; pc++) {
+            int word = M[pc];
+            int op = word >>> 26;
+            int target = -1;
+            switch (op) {
+                case DLX.BEQ:
+                case DLX.BNE:
+                case DLX.BLT:
+                case DLX.BGE:
+                case DLX.BLE:
+                case DLX.BGT:
+                case DLX.BSR:
+                    target = pc + (short) word;
+                    break;
+                case DLX.JSR:
+                    target = (word & 0x3FFFFFF) / 4;
+                    break;
+                case DLX.RET:
+                case DLX.ERR:
+                    break;
+                default:
+                    continue;
+            }
+            if (target >= 0 && target < codeSize) {
+                leader[target] = true;
+            }
+            leader[pc + 1] = true;
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        int start = 0;
+        long work = 0;
+        for (int pc = 0; pc < codeSize; pc++) {
+            work += executed[pc];
+            if (leader[pc + 1]) {
+                blocks.add(new Block(start, pc + 1, work));
+                start = pc + 1;
+                work = 0;
+            }
+        }
+        return blocks;
+    }
+
+    public void report (PrintStream out) {
+        long total = instructionCount();
+        out.println("Profile: " + total + " instructions executed");
+        if (executedOutside > 0) {
+            out.println("    " + executedOutside + " of them outside the program");
+        }
+
+        List<Block> blocks = blocks();
+        blocks.sort((x, y) -> Long.compare(y.work, x.work));
+        out.println();
+        out.println("Hot blocks:");
+        for (int i = 0; i < Math.min(HOT_BLOCKS, blocks.size()); i++) {
+            Block block = blocks.get(i);
+            if (block.work == 0) {
+                break;
+            }
+            out.println(String.format("  [%d, %d) %d instructions (%.1f%%), entered %d times",
+                    block.start, block.end, block.work, percent(block.work, total),
+                    executed[block.start]));
+            for (int pc = block.start; pc < block.end; pc++) {
+                out.print(String.format("    %6d %12d    %s", pc, executed[pc], DLX.instrString(M[pc])));
+            }
+        }
+
+        out.println();
+        out.println("Branches:");
+        out.println(String.format("  %6s %12s %12s    %s", "pc", "taken", "not taken", "instruction"));
+        for (int pc = 0; pc < codeSize; pc++) {
+            if (taken[pc] + notTaken[pc] > 0) {
+                out.print(String.format("  %6d %12d %12d    %s", pc, taken[pc], notTaken[pc], DLX.instrString(M[pc])));
+            }
+        }
+
+        out.println();
+        out.println("Calls:");
+        out.println(String.format("  %6s %12s", "target", "calls"));
+        for (int pc = 0; pc < codeSize; pc++) {
+            if (calls[pc] > 0) {
+                out.println(String.format("  %6d %12d", pc, calls[pc]));
+            }
+        }
+
+        out.println();
+        out.println("Memory (byte ranges):");
+        out.println(String.format("  %15s %12s %12s", "range", "loads", "stores"));
+        int rangeBytes = 4 << RANGE_SHIFT;
+        for (int i = 0; i < loads.length; i++) {
+            if (loads[i] + stores[i] > 0) {
+                String range = "[" + i * rangeBytes + ", " + (i + 1) * rangeBytes + ")";
+                out.println(String.format("  %15s %12d %12d", range, loads[i], stores[i]));
+            }
+        }
+    }
+
+    private static double percent (long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+}
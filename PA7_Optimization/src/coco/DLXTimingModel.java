@@ -0,0 +1,25 @@
+package coco;
+
+import java.io.PrintStream;
+
+// Estimates the running time of a DLX program from its instruction stream
+// A DLXMachine with a timing model runs in the interpreter and reports every instruction to it
+public interface DLXTimingModel {
+
+    // called when a run starts
+    void reset ();
+
+    // called before the instruction at pc executes
+    // c is the register number for F2 instructions, so R[c] is the operand
+    void instruction (int pc, int op, int a, int b, int c, int[] R);
+
+    long cycles ();
+
+    long instructions ();
+
+    default void report (PrintStream out) {
+        long n = instructions();
+        out.println(String.format("Timing: %d cycles, %d instructions, CPI %.3f",
+                cycles(), n, n == 0 ? 0.0 : (double) cycles() / n));
+    }
+}
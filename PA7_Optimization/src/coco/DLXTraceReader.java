@@ -0,0 +1,85 @@
+package coco;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Renders a trace written by DLXTracer as text, one instruction per line with the
+// registers and memory words it changed below it
+//     java coco.DLXTraceReader trace.bin [first step [number of steps]]
+public class DLXTraceReader {
+
+    private static final long WINDOW_BYTES = 1L << 26;
+
+    public static void main (String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("usage: DLXTraceReader trace-file [first-step [steps]]");
+            System.exit(1);
+        }
+        long first = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        long steps = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+        render(Paths.get(args[0]), out, first, steps);
+        out.flush();
+    }
+
+    // print steps [first, first + steps) of the trace in file
+    public static void render (Path file, PrintStream out, long first, long steps) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 * DLXTracer.HEADER_INTS) {
+                throw new IOException(file + " is too short for a DLX trace");
+            }
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4 * DLXTracer.HEADER_INTS).asIntBuffer();
+            if (header.get(0) != DLXTracer.MAGIC || header.get(1) != DLXTracer.VERSION) {
+                throw new IOException(file + " is not a version " + DLXTracer.VERSION + " DLX trace");
+            }
+            out.println("DLX trace of " + file + ", memory " + header.get(2) + " bytes");
+            out.println(String.format("%12s %8s    %s", "step", "pc", "instruction"));
+
+            long step = -1;
+            long pos = 4 * DLXTracer.HEADER_INTS;
+            while (pos < size) {
+                IntBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                                               Math.min(WINDOW_BYTES, size - pos)).asIntBuffer();
+                pos += 4L * window.remaining();
+                while (window.remaining() >= 2) {
+                    int where = window.get();
+                    int value = window.get();
+                    int kind = where >>> DLXTracer.KIND_SHIFT;
+                    where &= DLXTracer.WHERE_MASK;
+                    if (kind == DLXTracer.STEP) {
+                        step++;
+                        if (step - first >= steps) {
+                            return;
+                        }
+                    }
+                    if (step < first) {
+                        continue;
+                    }
+                    switch (kind) {
+                        case DLXTracer.STEP:
+                            out.print(String.format("%12d %8d    %s", step, where, DLX.instrString(value)));
+                            break;
+                        case DLXTracer.REG:
+                            out.println(String.format("%24s R[%d] = %d", "", where, value));
+                            break;
+                        case DLXTracer.MEM:
+                            out.println(String.format("%24s M[%d] = %d", "", where, value));
+                            break;
+                        default:
+                            throw new IOException("Unknown record kind " + kind + " after step " + step);
+                    }
+                }
+            }
+            out.println((step + 1) + " steps traced");
+        }
+    }
+}
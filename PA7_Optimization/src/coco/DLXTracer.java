@@ -0,0 +1,101 @@
+package coco;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Binary execution trace of one DLX run, written through a memory-mapped file
+// The file is a header of HEADER_INTS ints followed by 8-byte records, all big-endian:
+//     int (kind << KIND_SHIFT | where), int value
+// A STEP record (where = PC, value = instruction word) starts every instruction and is
+// followed by a REG (register, new value) or MEM (word index, new value) record for each
+// location the instruction changed. DLXTraceReader renders the file as text.
+public class DLXTracer implements Closeable {
+
+    public static final int MAGIC = 0x444C5854;     // "DLXT"
+    public static final int VERSION = 1;
+    public static final int HEADER_INTS = 4;        // magic, version, memory size, 0
+
+    public static final int KIND_SHIFT = 30;
+    public static final int WHERE_MASK = (1 << KIND_SHIFT) - 1;
+    public static final int STEP = 0;
+    public static final int REG = 1;
+    public static final int MEM = 2;
+
+    // records are collected in a plain array and copied into the mapping in bulk
+    private static final int STAGE_INTS = 1 << 14;
+    private static final long WINDOW_BYTES = 1L << 26;     // 64 MiB mapped at a time
+
+    private final FileChannel channel;
+    private IntBuffer window;
+    private long windowStart;       // file offset of window
+    private final int[] stage = new int[STAGE_INTS];
+    private int staged = 0;
+
+    public DLXTracer (Path file, int memSize) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        map(0);
+        window.put(new int[] {MAGIC, VERSION, memSize, 0});
+    }
+
+    private void map (long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, start, WINDOW_BYTES).asIntBuffer();
+    }
+
+    void step (int pc, int word) throws IOException {
+        record(STEP << KIND_SHIFT | pc, word);
+    }
+
+    void register (int reg, int value) throws IOException {
+        record(REG << KIND_SHIFT | reg, value);
+    }
+
+    void memory (int idx, int value) throws IOException {
+        record(MEM << KIND_SHIFT | idx, value);
+    }
+
+    private void record (int where, int value) throws IOException {
+        if (staged == STAGE_INTS) {
+            flush();
+        }
+        stage[staged++] = where;
+        stage[staged++] = value;
+    }
+
+    private void flush () throws IOException {
+        int done = 0;
+        while (done < staged) {
+            if (!window.hasRemaining()) {
+                map(windowStart + WINDOW_BYTES);
+            }
+            int n = Math.min(staged - done, window.remaining());
+            window.put(stage, done, n);
+            done += n;
+        }
+        staged = 0;
+    }
+
+    // bytes written so far, header included
+    public long size () {
+        return windowStart + 4L * (window.position() + staged);
+    }
+
+    // cut the file back from the end of the last window to the records written
+    @Override
+    public void close () throws IOException {
+        try {
+            flush();
+            long size = size();
+            window = null;
+            channel.truncate(size);
+        }
+        finally {
+            channel.close();
+        }
+    }
+}
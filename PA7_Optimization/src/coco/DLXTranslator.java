@@ -0,0 +1,934 @@
+package coco;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import coco.ClassFileWriter.Label;
+import coco.ClassFileWriter.Method;
+
+// Translates a loaded DLX program to JVM bytecode so HotSpot can compile it
+//
+// The program is split into basic blocks at branch targets, return addresses and after
+// every BSR/JSR/RET. Blocks are grouped into regions of consecutive addresses, and each
+// region becomes one static method of a hidden class. DLX registers live in JVM locals
+// inside a region; branches between blocks of a region are plain gotos.
+//
+// A region method returns the next PC when control leaves the region, -1 when the program
+// executes RET 0, and -2-PC when the instruction at PC has to be run by the interpreter:
+// illegal opcodes, failing runtime checks, memory faults, stores into the code region and
+// indirect jumps that leave memory. The machine state is exactly the state before that
+// instruction, so the interpreter reproduces the original diagnostics.
+public class DLXTranslator {
+
+    // entry point of the generated class
+    interface Code {
+        int run (int region, int[] R, int[] M, DLXMachine m, int pc);
+    }
+
+    // a translated program, together with the block entry table used to enter it
+    static class Program {
+        private final Code code;
+        private final int[] regionOf;    // region of each block start, -1 if not a block start
+
+        private Program (Code code, int[] regionOf) {
+            this.code = code;
+            this.regionOf = regionOf;
+        }
+
+        // run from pc until the program returns (-1) or needs the interpreter at the returned PC
+        int run (int[] R, int[] M, DLXMachine m, int pc) {
+            while (pc >= 0 && pc < regionOf.length && regionOf[pc] >= 0) {
+                int next = code.run(regionOf[pc], R, M, m, pc);
+                if (next < -1) {
+                    return -2 - next;
+                }
+                pc = next;
+            }
+            return pc;
+        }
+    }
+
+    // keep region methods below HotSpot's huge method limit (8000 bytes)
+    private static final int REGION_BUDGET = 6000;
+    private static final int INSTR_ESTIMATE = 48;
+
+    // JVM locals of a region method
+    private static final int L_R = 0;
+    private static final int L_M = 1;
+    private static final int L_MACHINE = 2;
+    private static final int L_PC = 3;
+    private static final int L_REG = 4;     // DLX register i is in local L_REG + i
+    private static final int L_RET = 36;
+    private static final int L_TMP = 37;
+    private static final int L_FTMP = 38;
+    private static final int MAX_LOCALS = 39;
+    private static final int MAX_STACK = 8;
+
+    private static final String CODE = "coco/DLXTranslator$Code";
+    private static final String MACHINE = "coco/DLXMachine";
+    private static final String REGION_DESC = "([I[ILcoco/DLXMachine;I)I";
+
+    private final int[] program;
+    private final int memSize;
+    private final boolean limits;   // poll the machine's limits at backward jumps
+
+    // decoded fields of the instruction being translated
+    private int op, a, b, c, format;
+
+    // state of the region method being written
+    private Method mv;
+    private Label[] blockLabel;
+    private Label dispatch, exit, bail;
+    private int regionStart, regionEnd;
+
+    private DLXTranslator (int[] program, int memSize, boolean limits) {
+        this.program = program;
+        this.memSize = memSize;
+        this.limits = limits;
+    }
+
+    // translate program, returning null if it cannot be translated
+    static Program translate (int[] program, int memSize, boolean limits) {
+        try {
+            return new DLXTranslator(program, memSize, limits).translate();
+        }
+        catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private Program translate () throws ReflectiveOperationException {
+        int[] starts = blockStarts();
+
+        // group blocks into regions of consecutive addresses
+        List<int[]> regions = new ArrayList<int[]>();
+        int[] regionOf = new int[program.length];
+        Arrays.fill(regionOf, -1);
+        int first = 0;
+        for (int i = 0; i < starts.length; i++) {
+            int blockEnd = (i + 1 < starts.length) ? starts[i + 1] : program.length;
+            if (i > first && (blockEnd - starts[first]) * INSTR_ESTIMATE > REGION_BUDGET) {
+                addRegion(regions, regionOf, starts, first, i);
+                first = i;
+            }
+        }
+        addRegion(regions, regionOf, starts, first, starts.length);
+
+        ClassFileWriter cw = new ClassFileWriter("coco/DLXCompiled", "java/lang/Object", CODE);
+
+        Method init = cw.method(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1);
+        init.aload(0);
+        init.invoke(ClassFileWriter.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.op(ClassFileWriter.RETURN);
+
+        // run (region, R, M, m, pc) calls the method of the region
+        Method run = cw.method(ClassFileWriter.ACC_PUBLIC, "run", "(I[I[ILcoco/DLXMachine;I)I", 5, 6);
+        Label[] cases = new Label[regions.size()];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = run.label();
+        }
+        Label dflt = run.label();
+        run.iload(1);
+        run.tableswitch(dflt, 0, cases);
+        for (int i = 0; i < cases.length; i++) {
+            run.mark(cases[i]);
+            run.aload(2);
+            run.aload(3);
+            run.aload(4);
+            run.iload(5);
+            run.invoke(ClassFileWriter.INVOKESTATIC, "coco/DLXCompiled", "r" + i, REGION_DESC);
+            run.op(ClassFileWriter.IRETURN);
+        }
+        run.mark(dflt);
+        run.iload(5);
+        run.op(ClassFileWriter.IRETURN);
+
+        for (int i = 0; i < regions.size(); i++) {
+            int[] region = regions.get(i);
+            writeRegion(cw, "r" + i, region[0], region[1], starts);
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(cw.toByteArray(), true);
+        Code code = (Code) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        return new Program(code, regionOf);
+    }
+
+    // region made of blocks [from, to) of starts
+    private void addRegion (List<int[]> regions, int[] regionOf, int[] starts, int from, int to) {
+        for (int k = from; k < to; k++) {
+            regionOf[starts[k]] = regions.size();
+        }
+        int end = (to < starts.length) ? starts[to] : program.length;
+        regions.add(new int[] {starts[from], end});
+    }
+
+    // addresses that start a basic block, in increasing order
+    private int[] blockStarts () {
+        TreeSet<Integer> starts = new TreeSet<Integer>();
+        starts.add(0);
+        for (int pc = 0; pc < program.length; pc++) {
+            decode(program[pc]);
+            switch (op) {
+                case DLX.BEQ:
+                case DLX.BNE:
+                case DLX.BLT:
+                case DLX.BGE:
+                case DLX.BLE:
+                case DLX.BGT:
+                case DLX.BSR:
+                    addStart(starts, pc + c);
+                    addStart(starts, pc + 1);
+                    break;
+                case DLX.JSR:
+                    addStart(starts, c / 4);
+                    addStart(starts, pc + 1);
+                    break;
+                case DLX.RET:
+                    addStart(starts, pc + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // split long straight-line code so every block fits in a region
+        int maxBlock = REGION_BUDGET / INSTR_ESTIMATE;
+        int prev = 0;
+        for (int pc = 1; pc < program.length; pc++) {
+            if (starts.contains(pc)) {
+                prev = pc;
+            }
+            else if (pc - prev >= maxBlock) {
+                starts.add(pc);
+                prev = pc;
+            }
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void addStart (TreeSet<Integer> starts, int pc) {
+        if (pc >= 0 && pc < program.length) {
+            starts.add(pc);
+        }
+    }
+
+    private void decode (int instrWord) {
+        op = instrWord >>> 26;
+        a = (instrWord >>> 21) & 0x1F;
+        b = (instrWord >>> 16) & 0x1F;
+        format = DLX.format(op);
+        switch (format) {
+            case 1:
+                c = (short) instrWord;
+                break;
+            case 2:
+                c = instrWord & 0x1F;
+                break;
+            case 3:
+                c = instrWord & 0x3FFFFFF;
+                break;
+            default:
+                c = 0;
+                break;
+        }
+    }
+
+// Region Methods =============================================================
+    private void writeRegion (ClassFileWriter cw, String name, int start, int end, int[] starts) {
+        regionStart = start;
+        regionEnd = end;
+        mv = cw.method(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC, name, REGION_DESC,
+                        MAX_STACK, MAX_LOCALS);
+
+        // registers read or written in the region are loaded on entry, written ones stored on exit
+        boolean[] written = new boolean[32];
+        boolean[] used = new boolean[32];
+        for (int pc = start; pc < end; pc++) {
+            registerUse(program[pc], used, written);
+        }
+
+        blockLabel = new Label[end - start];
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int s : starts) {
+            if (s >= start && s < end) {
+                blockLabel[s - start] = mv.label();
+                keys.add(s);
+            }
+        }
+        dispatch = mv.label();
+        exit = mv.label();
+        bail = mv.label();
+
+        // prologue
+        for (int r = 1; r < 32; r++) {
+            if (used[r]) {
+                mv.aload(L_R);
+                mv.iconst(r);
+                mv.op(ClassFileWriter.IALOAD);
+                mv.istore(L_REG + r);
+            }
+        }
+        mv.iconst(0);
+        mv.istore(L_RET);
+        mv.iconst(0);
+        mv.istore(L_TMP);
+        mv.fconst(0f);
+        mv.fstore(L_FTMP);
+
+        // dispatch on the entry PC or an indirect jump target
+        mv.mark(dispatch);
+        mv.iload(L_PC);
+        Label[] targets = new Label[keys.size()];
+        int[] keyArray = new int[keys.size()];
+        for (int i = 0; i < targets.length; i++) {
+            keyArray[i] = keys.get(i);
+            targets[i] = blockLabel[keys.get(i) - start];
+        }
+        Label leave = mv.label();
+        mv.lookupswitch(leave, keyArray, targets);
+        mv.mark(leave);
+        mv.iload(L_PC);
+        mv.istore(L_RET);
+        mv.jump(ClassFileWriter.GOTO, exit);
+
+        for (int pc = start; pc < end; pc++) {
+            if (blockLabel[pc - start] != null) {
+                mv.mark(blockLabel[pc - start]);
+            }
+            translate(pc);
+        }
+        // fall out of the region into the next block
+        leaveTo(end);
+
+        // bail: the interpreter runs the instruction in L_RET (encoded as -2-PC)
+        mv.mark(bail);
+        // exit: store the registers back and return L_RET
+        mv.mark(exit);
+        for (int r = 1; r < 32; r++) {
+            if (written[r]) {
+                mv.aload(L_R);
+                mv.iconst(r);
+                mv.iload(L_REG + r);
+                mv.op(ClassFileWriter.IASTORE);
+            }
+        }
+        mv.iload(L_RET);
+        mv.op(ClassFileWriter.IRETURN);
+    }
+
+    private void registerUse (int instrWord, boolean[] used, boolean[] written) {
+        decode(instrWord);
+        if (format == 0) {
+            return;
+        }
+        if (format == 3) {
+            used[31] = written[31] = true;
+            return;
+        }
+        used[a] = used[b] = true;
+        if (format == 2) {
+            used[c] = true;
+        }
+        switch (op) {
+            case DLX.CHK:
+            case DLX.CHKI:
+            case DLX.STW:
+            case DLX.STX:
+            case DLX.ARRCPY:
+            case DLX.BEQ:
+            case DLX.BNE:
+            case DLX.BLT:
+            case DLX.BGE:
+            case DLX.BLE:
+            case DLX.BGT:
+            case DLX.RET:
+            case DLX.WRI:
+            case DLX.WRF:
+            case DLX.WRB:
+            case DLX.WRL:
+                break;
+            case DLX.PSH:
+                written[b] = true;
+                break;
+            case DLX.POP:
+                written[a] = written[b] = true;
+                break;
+            case DLX.BSR:
+                used[31] = written[31] = true;
+                break;
+            default:
+                written[a] = true;
+                break;
+        }
+    }
+
+// Instruction Translation ====================================================
+    private void translate (int pc) {
+        decode(program[pc]);
+        Label start = mv.label();
+        Label end = mv.label();
+        mv.mark(start);
+
+        switch (op) {
+            case DLX.ADD:
+            case DLX.ADDI:
+                intOp(ClassFileWriter.IADD);
+                break;
+            case DLX.SUB:
+            case DLX.SUBI:
+                intOp(ClassFileWriter.ISUB);
+                break;
+            case DLX.MUL:
+            case DLX.MULI:
+                intOp(ClassFileWriter.IMUL);
+                break;
+            case DLX.DIV:
+            case DLX.DIVI:
+                intOp(ClassFileWriter.IDIV);
+                break;
+            case DLX.MOD:
+            case DLX.MODI:
+                intOp(ClassFileWriter.IREM);
+                break;
+            case DLX.OR:
+            case DLX.ORI:
+                intOp(ClassFileWriter.IOR);
+                break;
+            case DLX.AND:
+            case DLX.ANDI:
+                intOp(ClassFileWriter.IAND);
+                break;
+            case DLX.XOR:
+            case DLX.XORI:
+                intOp(ClassFileWriter.IXOR);
+                break;
+            case DLX.BIC:
+            case DLX.BICI:
+                readReg(b);
+                pushC();
+                mv.iconst(-1);
+                mv.op(ClassFileWriter.IXOR);
+                mv.op(ClassFileWriter.IAND);
+                writeReg(a);
+                break;
+            case DLX.fADD:
+            case DLX.fADDI:
+                floatOp(ClassFileWriter.FADD);
+                break;
+            case DLX.fSUB:
+            case DLX.fSUBI:
+                floatOp(ClassFileWriter.FSUB);
+                break;
+            case DLX.fMUL:
+            case DLX.fMULI:
+                floatOp(ClassFileWriter.FMUL);
+                break;
+            case DLX.fDIV:
+            case DLX.fDIVI:
+                floatOp(ClassFileWriter.FDIV);
+                break;
+            case DLX.fMOD:
+            case DLX.fMODI:
+                floatOp(ClassFileWriter.FREM);
+                break;
+            case DLX.POW:
+            case DLX.POWI:
+                readReg(b);
+                bailIf(ClassFileWriter.IFLT, pc);
+                pushC();
+                bailIf(ClassFileWriter.IFLT, pc);
+                readReg(b);
+                mv.op(ClassFileWriter.I2D);
+                pushC();
+                mv.op(ClassFileWriter.I2D);
+                mv.invoke(ClassFileWriter.INVOKESTATIC, "java/lang/Math", "pow", "(DD)D");
+                mv.invoke(ClassFileWriter.INVOKESTATIC, "java/lang/Math", "round", "(D)J");
+                mv.op(ClassFileWriter.L2I);
+                writeReg(a);
+                break;
+            case DLX.CMP:
+            case DLX.CMPI: {
+                Label nonNegative = mv.label();
+                Label done = mv.label();
+                readReg(b);
+                pushC();
+                mv.op(ClassFileWriter.ISUB);
+                mv.istore(L_TMP);
+                mv.iload(L_TMP);
+                mv.jump(ClassFileWriter.IFGE, nonNegative);
+                mv.iconst(-1);
+                mv.istore(L_TMP);
+                mv.jump(ClassFileWriter.GOTO, done);
+                mv.mark(nonNegative);
+                mv.iload(L_TMP);
+                mv.iconst(1);
+                mv.jump(ClassFileWriter.IF_ICMPLE, done);
+                mv.iconst(1);
+                mv.istore(L_TMP);
+                mv.mark(done);
+                mv.iload(L_TMP);
+                writeReg(a);
+                break;
+            }
+            case DLX.fCMP:
+            case DLX.fCMPI: {
+                Label notLess = mv.label();
+                Label notGreater = mv.label();
+                Label done = mv.label();
+                readFloatReg(b);
+                pushFloatC();
+                mv.op(ClassFileWriter.FSUB);
+                mv.fstore(L_FTMP);
+                mv.fload(L_FTMP);
+                mv.fconst(-DLX.EPS);
+                mv.op(ClassFileWriter.FCMPG);
+                mv.jump(ClassFileWriter.IFGT, notLess);
+                mv.iconst(-1);
+                mv.jump(ClassFileWriter.GOTO, done);
+                mv.mark(notLess);
+                mv.fload(L_FTMP);
+                mv.fconst(DLX.EPS);
+                mv.op(ClassFileWriter.FCMPL);
+                mv.jump(ClassFileWriter.IFLT, notGreater);
+                mv.iconst(1);
+                mv.jump(ClassFileWriter.GOTO, done);
+                mv.mark(notGreater);
+                mv.iconst(0);
+                mv.mark(done);
+                writeReg(a);
+                break;
+            }
+            case DLX.LSH:
+            case DLX.LSHI:
+                shift(pc, ClassFileWriter.IUSHR);
+                break;
+            case DLX.ASH:
+            case DLX.ASHI:
+                shift(pc, ClassFileWriter.ISHR);
+                break;
+            case DLX.CHK:
+            case DLX.CHKI:
+                readReg(a);
+                bailIf(ClassFileWriter.IFLT, pc);
+                readReg(a);
+                pushC();
+                bailIf(ClassFileWriter.IF_ICMPGE, pc);
+                break;
+            case DLX.LDW:
+            case DLX.LDX:
+                mv.aload(L_M);
+                readReg(b);
+                pushC();
+                mv.op(ClassFileWriter.IADD);
+                mv.iconst(4);
+                mv.op(ClassFileWriter.IDIV);
+                mv.op(ClassFileWriter.IALOAD);
+                writeReg(a);
+                break;
+            case DLX.POP:
+                mv.aload(L_M);
+                readReg(b);
+                mv.iconst(4);
+                mv.op(ClassFileWriter.IDIV);
+                mv.op(ClassFileWriter.IALOAD);
+                if (a == b) {
+                    // R[b] = R[b] + c sees the loaded value
+                    pushC();
+                    mv.op(ClassFileWriter.IADD);
+                    writeReg(a);
+                }
+                else {
+                    writeReg(a);
+                    readReg(b);
+                    pushC();
+                    mv.op(ClassFileWriter.IADD);
+                    writeReg(b);
+                }
+                break;
+            case DLX.STW:
+            case DLX.STX:
+                readReg(b);
+                pushC();
+                mv.op(ClassFileWriter.IADD);
+                mv.iconst(4);
+                mv.op(ClassFileWriter.IDIV);
+                mv.istore(L_TMP);
+                bailIfCode(pc);
+                mv.aload(L_M);
+                mv.iload(L_TMP);
+                readReg(a);
+                mv.op(ClassFileWriter.IASTORE);
+                break;
+            case DLX.PSH:
+                // store first so a memory fault leaves R[b] unchanged
+                readReg(b);
+                pushC();
+                mv.op(ClassFileWriter.IADD);
+                mv.istore(L_RET);
+                mv.iload(L_RET);
+                mv.iconst(4);
+                mv.op(ClassFileWriter.IDIV);
+                mv.istore(L_TMP);
+                bailIfCode(pc);
+                mv.aload(L_M);
+                mv.iload(L_TMP);
+                if (a == b) {
+                    mv.iload(L_RET);
+                }
+                else {
+                    readReg(a);
+                }
+                mv.op(ClassFileWriter.IASTORE);
+                mv.iload(L_RET);
+                writeReg(b);
+                break;
+            case DLX.BEQ:
+                branch(pc, ClassFileWriter.IFEQ);
+                break;
+            case DLX.BNE:
+                branch(pc, ClassFileWriter.IFNE);
+                break;
+            case DLX.BLT:
+                branch(pc, ClassFileWriter.IFLT);
+                break;
+            case DLX.BGE:
+                branch(pc, ClassFileWriter.IFGE);
+                break;
+            case DLX.BLE:
+                branch(pc, ClassFileWriter.IFLE);
+                break;
+            case DLX.BGT:
+                branch(pc, ClassFileWriter.IFGT);
+                break;
+            case DLX.BSR:
+                if (!inMemory(pc + c)) {
+                    bailAlways(pc);
+                    break;
+                }
+                mv.iconst(4 * (pc + 1));
+                writeReg(31);
+                pollLimits(pc, pc + c, 1);
+                jumpTo(pc + c);
+                break;
+            case DLX.JSR:
+                if (!inMemory(c / 4)) {
+                    bailAlways(pc);
+                    break;
+                }
+                mv.iconst(4 * (pc + 1));
+                writeReg(31);
+                pollLimits(pc, c / 4, 1);
+                jumpTo(c / 4);
+                break;
+            case DLX.RET:
+                if (c == 0) {
+                    mv.iconst(-1);
+                    mv.istore(L_RET);
+                    mv.jump(ClassFileWriter.GOTO, exit);
+                    break;
+                }
+                readReg(c);
+                mv.iconst(4);
+                mv.op(ClassFileWriter.IDIV);
+                mv.istore(L_TMP);
+                mv.iload(L_TMP);
+                bailIf(ClassFileWriter.IFLT, pc);
+                mv.iload(L_TMP);
+                mv.iconst(memSize / 4);
+                bailIf(ClassFileWriter.IF_ICMPGT, pc);
+                if (limits) {
+                    Label go = mv.label();
+                    mv.aload(L_MACHINE);
+                    mv.iconst(1);
+                    mv.invoke(ClassFileWriter.INVOKEVIRTUAL, MACHINE, "poll", "(I)Z");
+                    mv.jump(ClassFileWriter.IFEQ, go);
+                    mv.iconst(-2);
+                    mv.iload(L_TMP);
+                    mv.op(ClassFileWriter.ISUB);
+                    mv.istore(L_RET);
+                    mv.jump(ClassFileWriter.GOTO, bail);
+                    mv.mark(go);
+                }
+                mv.iload(L_TMP);
+                mv.istore(L_PC);
+                mv.jump(ClassFileWriter.GOTO, dispatch);
+                break;
+            case DLX.RDI:
+                machineCall("readInt", "()I");
+                writeReg(a);
+                break;
+            case DLX.RDF:
+                machineCall("readFloat", "()I");
+                writeReg(a);
+                break;
+            case DLX.RDB:
+                machineCall("readBool", "()I");
+                writeReg(a);
+                break;
+            case DLX.WRI:
+                machineCall("writeInt", "(I)V", b);
+                break;
+            case DLX.WRF:
+                machineCall("writeFloat", "(I)V", b);
+                break;
+            case DLX.WRB:
+                machineCall("writeBool", "(I)V", b);
+                break;
+            case DLX.WRL:
+                machineCall("writeLine", "()V");
+                break;
+            case DLX.ARRCPY:
+                // the interpreter copies whatever copyWords leaves to the word by word loop
+                mv.aload(L_MACHINE);
+                readReg(a);
+                readReg(b);
+                pushC();
+                mv.iconst(0);
+                mv.invoke(ClassFileWriter.INVOKEVIRTUAL, MACHINE, "copyWords", "(IIIZ)Z");
+                bailIf(ClassFileWriter.IFEQ, pc);
+                break;
+            case DLX.ERR:
+            default:
+                bailAlways(pc);
+                break;
+        }
+        mv.mark(end);
+
+        // memory faults and division by zero are reported by the interpreter
+        switch (op) {
+            case DLX.DIV:
+            case DLX.DIVI:
+            case DLX.MOD:
+            case DLX.MODI:
+            case DLX.LDW:
+            case DLX.LDX:
+            case DLX.POP:
+            case DLX.STW:
+            case DLX.STX:
+            case DLX.PSH: {
+                Label handler = mv.label();
+                Label after = mv.label();
+                mv.jump(ClassFileWriter.GOTO, after);
+                mv.mark(handler);
+                mv.op(ClassFileWriter.POP);
+                bailAlways(pc);
+                mv.mark(after);
+                mv.handler(start, end, handler, "java/lang/RuntimeException");
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void intOp (int opcode) {
+        readReg(b);
+        pushC();
+        mv.op(opcode);
+        writeReg(a);
+    }
+
+    private void floatOp (int opcode) {
+        readFloatReg(b);
+        pushFloatC();
+        mv.op(opcode);
+        writeFloatReg(a);
+    }
+
+    private void shift (int pc, int rightShift) {
+        if (format == 1) {
+            if (c < -31 || c > 31) {
+                bailAlways(pc);
+                return;
+            }
+            readReg(b);
+            mv.iconst(Math.abs(c));
+            mv.op(c < 0 ? rightShift : ClassFileWriter.ISHL);
+            writeReg(a);
+            return;
+        }
+
+        Label left = mv.label();
+        Label done = mv.label();
+        pushC();
+        mv.iconst(-31);
+        bailIf(ClassFileWriter.IF_ICMPLT, pc);
+        pushC();
+        mv.iconst(31);
+        bailIf(ClassFileWriter.IF_ICMPGT, pc);
+        readReg(b);
+        pushC();
+        mv.jump(ClassFileWriter.IFGE, left);
+        pushC();
+        mv.op(ClassFileWriter.INEG);
+        mv.op(rightShift);
+        mv.jump(ClassFileWriter.GOTO, done);
+        mv.mark(left);
+        pushC();
+        mv.op(ClassFileWriter.ISHL);
+        mv.mark(done);
+        writeReg(a);
+    }
+
+    private void branch (int pc, int opcode) {
+        int target = pc + c;
+        Label notTaken = mv.label();
+        readReg(a);
+        mv.jump(invert(opcode), notTaken);
+        if (inMemory(target)) {
+            pollLimits(pc, target, pc - target + 1);
+            jumpTo(target);
+        }
+        else {
+            bailAlways(pc);
+        }
+        mv.mark(notTaken);
+    }
+
+    private static int invert (int opcode) {
+        switch (opcode) {
+            case ClassFileWriter.IFEQ:
+                return ClassFileWriter.IFNE;
+            case ClassFileWriter.IFNE:
+                return ClassFileWriter.IFEQ;
+            case ClassFileWriter.IFLT:
+                return ClassFileWriter.IFGE;
+            case ClassFileWriter.IFGE:
+                return ClassFileWriter.IFLT;
+            case ClassFileWriter.IFLE:
+                return ClassFileWriter.IFGT;
+            default:
+                return ClassFileWriter.IFLE;
+        }
+    }
+
+    // at a jump from pc back to target, count n instructions and leave the instruction at
+    // target to the interpreter, which reports the exceeded limit, once the machine says so
+    private void pollLimits (int pc, int target, int n) {
+        if (!limits || target > pc) {
+            return;
+        }
+        Label go = mv.label();
+        mv.aload(L_MACHINE);
+        mv.iconst(n);
+        mv.invoke(ClassFileWriter.INVOKEVIRTUAL, MACHINE, "poll", "(I)Z");
+        mv.jump(ClassFileWriter.IFEQ, go);
+        bailAlways(target);
+        mv.mark(go);
+    }
+
+    private boolean inMemory (int target) {
+        return target >= 0 && target <= memSize / 4;
+    }
+
+    // continue at target, inside the region if it starts a block here
+    private void jumpTo (int target) {
+        if (target >= regionStart && target < regionEnd && blockLabel[target - regionStart] != null) {
+            mv.jump(ClassFileWriter.GOTO, blockLabel[target - regionStart]);
+        }
+        else {
+            leaveTo(target);
+        }
+    }
+
+    private void leaveTo (int target) {
+        mv.iconst(target);
+        mv.istore(L_RET);
+        mv.jump(ClassFileWriter.GOTO, exit);
+    }
+
+    // hand the instruction at pc to the interpreter if the int comparison holds
+    private void bailIf (int opcode, int pc) {
+        Label ok = mv.label();
+        mv.jump(invertCompare(opcode), ok);
+        bailAlways(pc);
+        mv.mark(ok);
+    }
+
+    private static int invertCompare (int opcode) {
+        switch (opcode) {
+            case ClassFileWriter.IF_ICMPLT:
+                return ClassFileWriter.IF_ICMPGE;
+            case ClassFileWriter.IF_ICMPGE:
+                return ClassFileWriter.IF_ICMPLT;
+            case ClassFileWriter.IF_ICMPGT:
+                return ClassFileWriter.IF_ICMPLE;
+            case ClassFileWriter.IF_ICMPLE:
+                return ClassFileWriter.IF_ICMPGT;
+            default:
+                return invert(opcode);
+        }
+    }
+
+    private void bailAlways (int pc) {
+        mv.iconst(-2 - pc);
+        mv.istore(L_RET);
+        mv.jump(ClassFileWriter.GOTO, bail);
+    }
+
+    // stores into the program would invalidate the translation
+    private void bailIfCode (int pc) {
+        mv.iload(L_TMP);
+        mv.iconst(program.length + 1);
+        bailIf(ClassFileWriter.IF_ICMPLT, pc);
+    }
+
+    private void machineCall (String name, String desc, int... regs) {
+        mv.aload(L_MACHINE);
+        for (int r : regs) {
+            readReg(r);
+        }
+        mv.invoke(ClassFileWriter.INVOKEVIRTUAL, MACHINE, name, desc);
+    }
+
+    // R[0] reads as 0 at the start of every instruction and writes to it are dropped
+    private void readReg (int r) {
+        if (r == 0) {
+            mv.iconst(0);
+        }
+        else {
+            mv.iload(L_REG + r);
+        }
+    }
+
+    private void writeReg (int r) {
+        if (r == 0) {
+            mv.op(ClassFileWriter.POP);
+        }
+        else {
+            mv.istore(L_REG + r);
+        }
+    }
+
+    private void readFloatReg (int r) {
+        readReg(r);
+        mv.invoke(ClassFileWriter.INVOKESTATIC, "java/lang/Float", "intBitsToFloat", "(I)F");
+    }
+
+    private void writeFloatReg (int r) {
+        mv.invoke(ClassFileWriter.INVOKESTATIC, "java/lang/Float", "floatToIntBits", "(F)I");
+        writeReg(r);
+    }
+
+    // c operand: immediate for F1, register contents for F2
+    private void pushC () {
+        if (format == 2) {
+            readReg(c);
+        }
+        else {
+            mv.iconst(c);
+        }
+    }
+
+    private void pushFloatC () {
+        if (format == 2) {
+            readFloatReg(c);
+        }
+        else {
+            mv.fconst(DLX.toFP32FromFP16(c));
+        }
+    }
+}
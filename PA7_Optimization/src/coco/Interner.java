@@ -0,0 +1,92 @@
+package coco;
+
+import java.util.Arrays;
+
+// Identifiers of a compilation, each distinct name numbered densely from 0 in order of first appearance
+// Names are matched straight from the scanner's buffer, so only the first occurrence of a name makes a String
+public final class Interner {
+
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    private int[] table = new int[128];     // id + 1 of the name in each slot, 0 if empty
+    private int size;
+
+    // number of names interned
+    public int size () {
+        return size;
+    }
+
+    public String name (int id) {
+        return names[id];
+    }
+
+    // id of the name chars[offset, offset + count)
+    public int intern (char[] chars, int offset, int count) {
+        int hash = 0;
+        for (int i = offset; i < offset + count; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = slot(hash);
+        for (int entry = table[slot]; entry != 0; entry = table[slot]) {
+            if (hashes[entry - 1] == hash && matches(names[entry - 1], chars, offset, count)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return add(new String(chars, offset, count), hash, slot);
+    }
+
+    public int intern (String name) {
+        int hash = name.hashCode();
+        int slot = slot(hash);
+        for (int entry = table[slot]; entry != 0; entry = table[slot]) {
+            if (hashes[entry - 1] == hash && names[entry - 1].equals(name)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return add(name, hash, slot);
+    }
+
+    private int add (String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        table[slot] = ++size;
+        if (2 * size > table.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    // doubles the table, keeping it at most half full
+    private void rehash () {
+        table = new int[table.length * 2];
+        for (int id = 0; id < size; id++) {
+            int slot = slot(hashes[id]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private int slot (int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private static boolean matches (String name, char[] chars, int offset, int count) {
+        if (name.length() != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
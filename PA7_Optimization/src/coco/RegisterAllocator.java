@@ -1,5 +1,6 @@
 package coco;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.HashSet;
@@ -20,6 +21,9 @@ public class RegisterAllocator implements CFGVisitor {
     private HashMap<Variable, HashSet<Variable>> interferenceGraph;
     private HashMap<Variable, Integer> regAllocs;
     private boolean removeSilly;
+    private SymbolNumbering numbering;   // of the CFG being visited
+    private List<Symbol> globals;
+    private BitSet callVars;             // globals live at each call of the CFG being visited
    
     private void genInterference(SSA ssa) {
         interferenceGraph = new HashMap<Variable, HashSet<Variable>>();
@@ -30,7 +34,7 @@ public class RegisterAllocator implements CFGVisitor {
             cfg.resetLiveSet();
             List<Symbol> vars = new ArrayList<Symbol>();
             vars.addAll(cfg.reassignedVariables());
-            lvg.generate(cfg, vars, true);
+            lvg.generate(cfg, vars, globals, true);
         }
 
         // Create the interference graph
@@ -39,8 +43,11 @@ public class RegisterAllocator implements CFGVisitor {
             for (Symbol s : cfg.parameters()) {
                 interferenceGraph.put(new Variable(s), new HashSet<Variable>());
             }
-            cfg.start().accept(this);
-            cfg.resetVisited();
+            numbering = cfg.numbering();
+            callVars = LiveVarsGenerator.scalars(numbering, globals);
+            for (BasicBlock block : cfg.postorder()) {
+                visit(block);
+            }
         }
 
         // System.out.println("INTERFERENCE GRAPH:");
@@ -122,7 +129,8 @@ public class RegisterAllocator implements CFGVisitor {
         regAllocs.put(toRemove, assignedReg);
     }
 
-    public HashMap<Variable, Integer> allocateRegisters(SSA ssa, int numRegs) {
+    public HashMap<Variable, Integer> allocateRegisters(SSA ssa, int numRegs, List<Symbol> globals) {
+        this.globals = globals;
         regAllocs = new HashMap<Variable, Integer>();
         removeSilly = false;
 
@@ -145,8 +153,9 @@ public class RegisterAllocator implements CFGVisitor {
         // Remove silly moves
         removeSilly = true;
         for (CFG cfg : ssa) {
-            cfg.start().accept(this);
-            cfg.resetVisited();
+            for (BasicBlock block : cfg.preorder()) {
+                visit(block);
+            }
         }
 
         return regAllocs;
@@ -172,50 +181,18 @@ public class RegisterAllocator implements CFGVisitor {
                 }
             }
 
-            for (Successor s : block.getSuccessors()) {
-                s.destination().accept(this);
-            }
-            
             return;
         }
 
-        // Evaluate leaf nodes first
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
-        }
-
         // Get live vars starting at exit
-        HashSet<Symbol> currLive = new HashSet<Symbol>();
-        currLive.addAll(block.getExitLiveSet());
+        BitSet currLive = (BitSet) block.getExitLiveSet().clone();
+        BitSet interfering = new BitSet();
         List<TAC> blockInstr = block.getInstructions();
 
         // Iterate backwards through block instructions
         for (int i = blockInstr.size() - 1; i >= 0; i--) {
             // Check which variables are live at the same time
-            Symbol[] liveSet = new Symbol[currLive.size()];
-            currLive.toArray(liveSet);
-
-            // Need to look at last element in case it never gets added
-            for (int first = 0; first < currLive.size(); first++) {
-                Variable firstVar = new Variable(liveSet[first]);
-
-                // If new need to create new set
-                if (!interferenceGraph.containsKey(firstVar)) {
-                    interferenceGraph.put(firstVar, new HashSet<Variable>());
-                }
-
-                for (int second = first + 1; second < currLive.size(); second++) {
-                    Variable secondVar = new Variable(liveSet[second]);
-
-                    // If new, need to create new set
-                    if (!interferenceGraph.containsKey(secondVar)) {
-                        interferenceGraph.put(secondVar, new HashSet<Variable>());
-                    }
-
-                    interferenceGraph.get(firstVar).add(secondVar);
-                    interferenceGraph.get(secondVar).add(firstVar);
-                }
-            }
+            interfere(currLive, interfering);
 
             TAC tac = blockInstr.get(i);
 
@@ -224,43 +201,21 @@ public class RegisterAllocator implements CFGVisitor {
                 continue;
             }
 
-            Variable dest;
-
             if (tac instanceof Assign) {
                 Assign aTac = (Assign) tac;
-
-                // If reassigned it is no longer live
-                currLive.remove(aTac.destination().symbol());
-
-                // Add destination to graph, even if never live
-                dest = new Variable(aTac.destination().symbol());
-                if (!interferenceGraph.containsKey(dest)) {
-                    interferenceGraph.put(dest, new HashSet<Variable>());
-                }
-
-                // If assigning to a variable, it can't share a register with live variables
-                for (Symbol s : currLive) {
-                    Variable otherVar = new Variable(s);
-
-                    if (!interferenceGraph.containsKey(otherVar)) {
-                        interferenceGraph.put(otherVar, new HashSet<Variable>());
-                    }
-
-                    interferenceGraph.get(dest).add(otherVar);
-                    interferenceGraph.get(otherVar).add(dest);
-                }
+                define(currLive, aTac.destination());
 
                 // Any used variables are live
                 if (aTac.leftOperand() instanceof Variable) {
                     Variable lVar = (Variable) aTac.leftOperand();
-                    currLive.add(lVar.symbol());
+                    currLive.set(numbering.number(lVar.symbol()));
                 }
                 if (!(aTac instanceof Move) && aTac.rightOperand() instanceof Variable) {
                     Variable rVar = (Variable) aTac.rightOperand();
 
                     // Don't count arrays since they live in memory
                     if (!(rVar.symbol().type() instanceof ArrayType)) {
-                        currLive.add(rVar.symbol());
+                        currLive.set(numbering.number(rVar.symbol()));
                     }
                 }
             } else if (tac instanceof Jump) {
@@ -269,38 +224,33 @@ public class RegisterAllocator implements CFGVisitor {
                 // If used in comparison, is live
                 if (jTac.comparison() instanceof Variable) {
                     Variable compVar = (Variable) jTac.comparison();
-                    currLive.add(compVar.symbol());
+                    currLive.set(numbering.number(compVar.symbol()));
                 }
             } else if (tac instanceof Call) {
                 Call cTac = (Call) tac;
                 List<Value> args = cTac.arguments().values();
 
                 if (cTac.destination() != null) {
-                    currLive.remove(cTac.destination().symbol());
+                    define(currLive, cTac.destination());
                 }
 
                 for (Value arg : args) {
                     // If used as arg, is live
                     if (arg instanceof Variable) {
                         Variable argVar = (Variable) arg;
-                        currLive.add(argVar.symbol());
+                        currLive.set(numbering.number(argVar.symbol()));
                     }
                 }
 
-                // Add destination to graph, even if never live
-                if (cTac.destination() != null) {
-                    dest = new Variable(cTac.destination().symbol());
-                    if (!interferenceGraph.containsKey(dest)) {
-                        interferenceGraph.put(dest, new HashSet<Variable>());
-                    }
-                }
+                // Globals the function may read are live
+                currLive.or(callVars);
             } else if (tac instanceof Return) {
                 Return rTac = (Return) tac;
 
                 // If returned, is live
                 if (rTac.returnValue() instanceof Variable) {
                     Variable retVar = (Variable) rTac.returnValue();
-                    currLive.add(retVar.symbol());
+                    currLive.set(numbering.number(retVar.symbol()));
                 }
             } else if (tac instanceof Store) {
                 Store sTac = (Store) tac;
@@ -308,58 +258,83 @@ public class RegisterAllocator implements CFGVisitor {
                 // If stored, is live
                 if (sTac.value() instanceof Variable) {
                     Variable storeVar = (Variable) sTac.value();
-                    currLive.add(storeVar.symbol());
+                    currLive.set(numbering.number(storeVar.symbol()));
                 }
 
                 // Location is also live
-                currLive.add(sTac.location().symbol());
+                currLive.set(numbering.number(sTac.location().symbol()));
             } else if (tac instanceof Print) {
                 Print pTac = (Print) tac;
 
                 // If printed, is live
                 if (pTac.argument() instanceof Variable) {
                     Variable argVar = (Variable) pTac.argument();
-                    currLive.add(argVar.symbol());
+                    currLive.set(numbering.number(argVar.symbol()));
                 }
             } else if (tac instanceof Load) {
                 Load lTac = (Load) tac;
-
-                // Add destination to graph, even if never live
-                dest = new Variable(lTac.destination().symbol());
-                if (!interferenceGraph.containsKey(dest)) {
-                    interferenceGraph.put(dest, new HashSet<Variable>());
-                }
+                define(currLive, lTac.destination());
             } else if (tac instanceof Input) {
                 Input iTac = (Input) tac;
-
-                currLive.remove(iTac.destination().symbol());
+                define(currLive, iTac.destination());
             }
         } 
 
-        // Check which variables are live at the same time
-        Symbol[] liveSet = new Symbol[currLive.size()];
-        currLive.toArray(liveSet);
-
         // Need to look at last element in case it never gets added
-        for (int first = 0; first < currLive.size(); first++) {
-            Variable firstVar = new Variable(liveSet[first]);
+        interfere(currLive, interfering);
+    }
 
-            // If new need to create new set
-            if (!interferenceGraph.containsKey(firstVar)) {
-                interferenceGraph.put(firstVar, new HashSet<Variable>());
-            }
+    // The variable is no longer live above its definition, and is added to the graph even if never live
+    // It can't share a register with the variables live across it, even if it is never used,
+    // or a call or load into it would overwrite them
+    private void define(BitSet currLive, Variable var) {
+        currLive.clear(numbering.number(var.symbol()));
 
-            for (int second = first + 1; second < currLive.size(); second++) {
-                Variable secondVar = new Variable(liveSet[second]);
+        Variable dest = new Variable(var.symbol());
+        if (!interferenceGraph.containsKey(dest)) {
+            interferenceGraph.put(dest, new HashSet<Variable>());
+        }
+        for (int n = currLive.nextSetBit(0); n >= 0; n = currLive.nextSetBit(n + 1)) {
+            Variable otherVar = node(n);
 
-                // If new, need to create new set
-                if (!interferenceGraph.containsKey(secondVar)) {
-                    interferenceGraph.put(secondVar, new HashSet<Variable>());
+            interferenceGraph.get(dest).add(otherVar);
+            interferenceGraph.get(otherVar).add(dest);
+        }
+    }
+
+    // Makes the variables in live interfere with each other, given that those in interfering already do,
+    // and leaves interfering the same as live
+    private void interfere(BitSet live, BitSet interfering) {
+        BitSet added = (BitSet) live.clone();
+        added.andNot(interfering);
+
+        for (int first = added.nextSetBit(0); first >= 0; first = added.nextSetBit(first + 1)) {
+            Variable firstVar = node(first);
+
+            for (int second = live.nextSetBit(0); second >= 0; second = live.nextSetBit(second + 1)) {
+                // Pairs of added variables are made once
+                if (second == first || (second < first && added.get(second))) {
+                    continue;
                 }
+                Variable secondVar = node(second);
 
                 interferenceGraph.get(firstVar).add(secondVar);
                 interferenceGraph.get(secondVar).add(firstVar);
             }
         }
+
+        interfering.clear();
+        interfering.or(live);
+    }
+
+    // The variable with this number in the graph, as a node of it even if it interferes with nothing
+    private Variable node(int number) {
+        Variable var = new Variable(numbering.symbol(number));
+
+        // If new need to create new set
+        if (!interferenceGraph.containsKey(var)) {
+            interferenceGraph.put(var, new HashSet<Variable>());
+        }
+        return var;
     }
 }
@@ -1,31 +1,126 @@
 package coco;
 
-import java.io.BufferedReader;
 import java.io.Reader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 public class Scanner implements Iterator<Token> {
 
-  private BufferedReader input;   // Buffered reader to read file
-  private boolean closed;         // Flag for whether reader is closed or not
+  // Character classes of the ASCII range, non-ASCII characters fall back to java.lang.Character
+  private static final byte LETTER = 1;       // may start an identifier
+  private static final byte DIGIT = 2;        // may start a number
+  private static final byte IDENT = 4;        // may continue an identifier
+  private static final byte SPACE = 8;        // skipped between tokens, ends a purge
+  private static final byte OPERATOR = 16;    // may combine with a following '='
+  private static final byte DELIMITER = 32;   // always a single character token
+  private static final byte FOLLOW = 64;      // may directly follow an identifier or number
+  private static final byte[] CHAR_CLASS = new byte[128];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      CHAR_CLASS[c] = LETTER | IDENT | FOLLOW;
+      CHAR_CLASS[Character.toUpperCase(c)] = LETTER | IDENT | FOLLOW;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      CHAR_CLASS[c] = DIGIT | IDENT | FOLLOW;
+    }
+    CHAR_CLASS['_'] = IDENT;
+    for (char c : " \n\t\r".toCharArray()) {
+      CHAR_CLASS[c] = SPACE | FOLLOW;
+    }
+    for (char c : "=!<>+-*/%^".toCharArray()) {
+      CHAR_CLASS[c] = OPERATOR | FOLLOW;
+    }
+    for (char c : "(){}[]:;,.".toCharArray()) {
+      CHAR_CLASS[c] = DELIMITER | FOLLOW;
+    }
+  }
+
+  private char[] buffer;          // Whole source
+  private int length;             // Number of chars in buffer
+  private int pos;                // Offset of nextChar in buffer
+  private boolean closed;         // Flag for whether EOF has been emitted
 
   private int lineNum;            // Current line number
   private int charPos;            // Character offset on current line
 
-  private String scan;            // Current lexeme being scanned in
+  private int start;              // Offset of the current lexeme being scanned in
   private int nextChar;           // Contains the next char (-1 == EOF)
 
-  // Reader will be a FileReader over the source file
+  // Last token scanned, its lexeme is buffer[tokenStart, tokenStart + tokenLength)
+  // unless it has a lexeme of its own (the message of an ERROR)
+  private Token.Kind tokenKind;
+  private int tokenStart;
+  private int tokenLength;
+  private int tokenLine;
+  private int tokenChar;
+  private String ownLexeme;
+
+  // Reader will be a FileReader over the source file, read in whole
   public Scanner(Reader reader) throws IOException {
-    input = new BufferedReader(reader);
+    buffer = new char[8192];
+    int n;
+    while ((n = reader.read(buffer, length, buffer.length - length)) != -1) {
+      length += n;
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+    reader.close();
+    reset();
+  }
+
+  // Memory-maps the source file and widens its bytes as ASCII, without a Reader or decoder
+  // A file with any other byte is decoded in whole with the default charset, as FileReader would
+  public Scanner(Path file) throws IOException {
+    ByteBuffer mapped;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Source file too large to scan: " + file);
+      }
+      length = (int) channel.size();
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+    buffer = new char[length];
+    if (!widenAscii(mapped, buffer)) {
+      CharBuffer chars = Charset.defaultCharset().decode(mapped);
+      buffer = new char[chars.remaining()];
+      chars.get(buffer);
+      length = buffer.length;
+    }
+    reset();
+  }
+
+  private void reset() {
     closed = false;
     lineNum = 1;
     charPos = 0;
-    scan = "";
-    nextChar = input.read();
+    pos = 0;
+    nextChar = length > 0 ? buffer[0] : -1;
+  }
+
+  // Copies the bytes into chars, false at the first byte outside ASCII
+  private static boolean widenAscii(ByteBuffer bytes, char[] chars) {
+    byte[] chunk = new byte[8192];
+    for (int offset = 0; offset < chars.length; offset += chunk.length) {
+      int count = Math.min(chunk.length, chars.length - offset);
+      bytes.get(offset, chunk, 0, count);
+      for (int i = 0; i < count; i++) {
+        if (chunk[i] < 0) {
+          return false;
+        }
+        chars[offset + i] = (char) chunk[i];
+      }
+    }
+    return true;
   }
 
   // Signal an error message
@@ -39,8 +134,8 @@ public class Scanner implements Iterator<Token> {
 
   /*
    * Helper function for reading a single char from input.
-   * Can be used to catch and handle any IOExceptions,
-   * advance the charPos or lineNum, etc.
+   * Advances the charPos or lineNum; reading past the end
+   * still advances charPos, as the reader based scanner did.
    */
   private int readChar() {
     int curr = nextChar;
@@ -51,17 +146,30 @@ public class Scanner implements Iterator<Token> {
     } else {
       charPos++;
     }
-    
-    try {
-      nextChar = input.read();
-    } catch (IOException e) {
-      nextChar = -1;
-      return -1;
-    }
 
+    if (curr != -1) {
+      pos++;
+      nextChar = pos < length ? buffer[pos] : -1;
+    }
     return curr;
   }
 
+  private static boolean is(int c, byte charClass) {
+    return c >= 0 && c < CHAR_CLASS.length && (CHAR_CLASS[c] & charClass) != 0;
+  }
+
+  private static boolean isLetter(int c) {
+    return c < CHAR_CLASS.length ? is(c, LETTER) : Character.isAlphabetic(c);
+  }
+
+  private static boolean isDigit(int c) {
+    return c < CHAR_CLASS.length ? is(c, DIGIT) : Character.isDigit(c);
+  }
+
+  private static boolean isIdentifierPart(int c) {
+    return c < CHAR_CLASS.length ? is(c, IDENT) : Character.isLetterOrDigit(c);
+  }
+
   /*
    * Function to query whether or not more characters can be read.
    * Depends on closed and nextChar.
@@ -73,58 +181,66 @@ public class Scanner implements Iterator<Token> {
 
   /*
    * Returns next Token from input
-   * 
+   */
+  @Override
+  public Token next() {
+    if (scan() == Token.Kind.EOF) {
+      return Token.EOF(tokenLine, tokenChar);
+    }
+    return new Token(tokenKind, tokenLexeme(), tokenLine, tokenChar);
+  }
+
+  /*
+   * Scans the next token into tokenKind, tokenStart, tokenLength,
+   * tokenLine, tokenChar and ownLexeme without making a Token
+   *
    * Invariants:
    *    1. Call assumes that nextChar is already holding an unread character
    *    2. Return leaves nextChar containing an untokenized character
-   *    3. Closes reader when emitting EOF
+   *    3. Closes scanner when emitting EOF
    */
-  @Override
-  public Token next() {
+  Token.Kind scan() {
     if (!hasNext()) {
       throw new NoSuchElementException();
     }
 
     int inChar, curChar, curLine;
-    scan = "";
 
     // Check if end of file has been reached
     if (nextChar == -1) {
       closed = true;
-      return Token.EOF(lineNum, charPos);
+      return emitEOF();
     }
 
     // Start getting lexemes
     while (nextChar != -1) {
+      start = pos;
       inChar = readChar();
       curChar = charPos;
       curLine = lineNum;
 
       // Skip whitespace
-      if (inChar == ' ' || inChar == '\n' || inChar == '\t' || inChar == '\r') {
+      if (is(inChar, SPACE)) {
         continue;
       }
 
       // Check for identifier or keywords
-      if (Character.isAlphabetic(inChar)) {
-        scan += (char) inChar;
+      if (isLetter(inChar)) {
         return getIdentifierOrKeyword(curLine, curChar);
       }
 
       // Check if could be int or float
-      if (Character.isDigit(inChar)) {
+      if (isDigit(inChar)) {
         // Start building until rule violated
-        scan += (char) inChar;
         return getNumber(curLine, curChar);
       }
 
       // Could be comparison, arithmetic, or assignment
-      if (Arrays.asList('=', '!', '<', '>', '+', '-', '*', '/', '%', '^').contains((char) inChar)) {
+      if (is(inChar, OPERATOR)) {
         // If second character is '=', then return as valid operator
         if (nextChar == '=') {
-          scan += (char) inChar;
-          scan += (char) readChar();
-          return new Token(scan, curLine, curChar);
+          readChar();
+          return emitClassified(curLine, curChar);
         }
 
         // Could be comment
@@ -152,7 +268,7 @@ public class Scanner implements Iterator<Token> {
               inChar = readChar();
             }
             if (nextChar == -1) {
-              return Token.ERROR("Missing closing */", curLine, curChar);
+              return emitError("Missing closing */", curLine, curChar);
             }
             // Continue looking for tokens
             continue;
@@ -163,93 +279,160 @@ public class Scanner implements Iterator<Token> {
 
         // Could be unary operator
         if ((inChar == '+' || inChar == '-') && inChar == nextChar) {
-          scan += (char) inChar;
-          scan += (char) readChar();
-          return new Token(scan, curLine, curChar);
+          readChar();
+          return emitClassified(curLine, curChar);
         }
 
         // Determine if negative number or sub
-        if (inChar == '-') {
-          scan += (char) inChar;
-          if (Character.isDigit(nextChar)) {
-            scan += (char) nextChar;
-            readChar();
-            return getNumber(curLine, curChar);
-          }
-          return new Token(scan, curLine, curChar);
+        if (inChar == '-' && isDigit(nextChar)) {
+          readChar();
+          return getNumber(curLine, curChar);
         }
 
-        scan += (char) inChar;
-        return new Token(scan, curLine, curChar);
+        return emitClassified(curLine, curChar);
       }
 
       // Check if single-character token
-      if (Arrays.asList('(', ')', '{', '}', '[', ']', ':', ';', ',', '.').contains((char) inChar)) {
-        scan += (char) inChar;
-        return new Token(scan, curLine, curChar);
+      if (is(inChar, DELIMITER)) {
+        return emitClassified(curLine, curChar);
       }
 
       // Otherwise, bad character poisions consecutive characters
-      scan += (char) inChar;
       return purgeConsecutiveCharacters(curLine, curChar);
     }
 
     closed = true;
-    return Token.EOF(lineNum, charPos);
+    return emitEOF();
+  }
+
+  char[] source() {
+    return buffer;
+  }
+
+  int tokenStart() {
+    return tokenStart;
+  }
+
+  int tokenLength() {
+    return tokenLength;
+  }
+
+  int tokenLine() {
+    return tokenLine;
+  }
+
+  int tokenChar() {
+    return tokenChar;
+  }
+
+  // Lexeme of the last token scanned
+  String tokenLexeme() {
+    return ownLexeme != null ? ownLexeme : new String(buffer, tokenStart, tokenLength);
+  }
+
+  // Lexeme of the last token scanned if it is not a slice of the source, else null
+  String ownLexeme() {
+    return ownLexeme;
+  }
+
+  private Token.Kind emit(Token.Kind kind, int curLine, int curChar) {
+    tokenKind = kind;
+    tokenStart = start;
+    tokenLength = pos - start;
+    tokenLine = curLine;
+    tokenChar = curChar;
+    ownLexeme = null;
+    return kind;
+  }
+
+  private Token.Kind emitEOF() {
+    start = pos;
+    return emit(Token.Kind.EOF, lineNum, charPos);
+  }
+
+  private Token.Kind emitError(String message, int curLine, int curChar) {
+    emit(Token.Kind.ERROR, curLine, curChar);
+    ownLexeme = message;
+    return Token.Kind.ERROR;
+  }
+
+  // Current lexeme when it is not known which kind it is
+  private Token.Kind emitClassified(int curLine, int curChar) {
+    Token.Kind kind = Token.staticKind(buffer, start, pos - start);
+    if (kind != null) {
+      return emit(kind, curLine, curChar);
+    }
+    String lexeme = new String(buffer, start, pos - start);
+    kind = Token.classify(lexeme);
+    if (kind == Token.Kind.ERROR) {
+      return emitError(Token.unrecognized(lexeme), curLine, curChar);
+    }
+    return emit(kind, curLine, curChar);
   }
 
 
   // OPTIONAL: add any additional helper or convenience methods
   //           that you find make for a cleaner design
   //           (useful for handling special case Tokens)
+
+  // Whether nextChar alone would be a valid token, or is whitespace or '!'
   private boolean nextCharacterValid() {
-    Token temp = new Token("" + (char) nextChar, lineNum, charPos);
-    if (temp.kind() != Token.Kind.ERROR || Arrays.asList('!', ' ', '\n', '\t', '\r').contains((char) nextChar)) {
-      // Them we are good to return the token as is
-      return true;
-    }
-    return false;
+    return is(nextChar, FOLLOW);
   }
 
-  private Token purgeConsecutiveCharacters(int curLine, int curChar) {
-    while (nextChar != ' ' && nextChar != '\n' && nextChar != '\t' && nextChar != -1 && nextChar != '\r') {
-      scan += (char) readChar();
+  private Token.Kind purgeConsecutiveCharacters(int curLine, int curChar) {
+    while (nextChar != -1 && !is(nextChar, SPACE)) {
+      readChar();
     }
-    return new Token(scan, curLine, curChar);
+    return emitClassified(curLine, curChar);
   }
 
-  private Token getIdentifierOrKeyword(int curLine, int curChar) {
+  private Token.Kind getIdentifierOrKeyword(int curLine, int curChar) {
     // Start building lexeme until identifier rule is violated
-    while (Character.isLetterOrDigit(nextChar) || nextChar == '_') {
-      scan += (char) readChar();
+    boolean ascii = buffer[start] < CHAR_CLASS.length;
+    while (isIdentifierPart(nextChar)) {
+      ascii &= nextChar < CHAR_CLASS.length;
+      readChar();
     }
     // Check if next symbol is not start of valid token (or whitespace)
     if (nextCharacterValid()) {
-      // Then we are good to return the token as is
-      return new Token(scan, curLine, curChar);
+      // Then we are good to return the token as is, only
+      // non-ASCII letters need the full identifier rule
+      if (ascii) {
+        Token.Kind keyword = Token.staticKind(buffer, start, pos - start);
+        return emit(keyword != null ? keyword : Token.Kind.IDENT, curLine, curChar);
+      }
+      return emitClassified(curLine, curChar);
     }
     // Otherwise, stray token poisons all consecutive characters
     return purgeConsecutiveCharacters(curLine, curChar);
   }
 
-  private Token getNumber(int curLine, int curChar) {
-    while (Character.isDigit(nextChar)) {
-      scan += (char) readChar();
+  private Token.Kind getNumber(int curLine, int curChar) {
+    boolean ascii = buffer[pos - 1] < CHAR_CLASS.length;
+    while (isDigit(nextChar)) {
+      ascii &= nextChar < CHAR_CLASS.length;
+      readChar();
     }
 
     // Could be float
-    if (nextChar == '.') {
-      scan += (char) nextChar;
+    boolean fraction = nextChar == '.';
+    if (fraction) {
       readChar();
-      while (Character.isDigit(nextChar)) {
-        scan += (char) readChar();
+      while (isDigit(nextChar)) {
+        ascii &= nextChar < CHAR_CLASS.length;
+        readChar();
       }
     }
     // Check if next symbol is invalid, or no number following decimal
-    if (!nextCharacterValid() || (scan.charAt(scan.length() - 1) == '.')) {
+    if (!nextCharacterValid() || buffer[pos - 1] == '.') {
       return purgeConsecutiveCharacters(curLine, curChar);
     }
-    // Otherwise we are good to return the token as is
-    return new Token(scan, curLine, curChar);
+    // Otherwise we are good to return the token as is, only
+    // non-ASCII digits need the full number rules
+    if (!ascii) {
+      return emitClassified(curLine, curChar);
+    }
+    return emit(fraction ? Token.Kind.FLOAT_VAL : Token.Kind.INT_VAL, curLine, curChar);
   }
-}
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ public class Symbol {
     private String name;
     private Type type;
     private Space allocSpace;
+    private int id;     // dense index within a compilation, see SymbolTable
 
     private enum Space {
         GLOBAL,
@@ -14,22 +15,30 @@ public class Symbol {
         PARAMETER,
     };
 
-    public Symbol (String name, Type t) {
+    public Symbol (String name, Type t, int id) {
         this.name = name;
         this.type = t;
         this.allocSpace = Space.LOCAL;
+        this.id = id;
     }
 
-    public Symbol (String name, Type t, boolean isGlobalVar) {
+    public Symbol (String name, Type t, boolean isGlobalVar, int id) {
         this.name = name;
         this.type = t;
         this.allocSpace = isGlobalVar ? Space.GLOBAL : Space.PARAMETER;
+        this.id = id;
     }
 
     public String name () {
         return name;
     }
 
+    // Symbols of one compilation are numbered from 0 to SymbolTable.symbolCount() - 1,
+    // so analyses can keep per symbol facts in arrays and bitsets
+    public int id () {
+        return id;
+    }
+
     public Type type() {
         return type;
     }
@@ -46,6 +55,12 @@ public class Symbol {
         return allocSpace == Space.LOCAL;
     }
 
+    // Hashed by number, so hashed collections of symbols iterate in the same order in every run
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
     @Override
     public String toString() {
         return name + (type != null ? ":" + type : "");
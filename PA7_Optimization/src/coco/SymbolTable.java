@@ -1,183 +1,279 @@
 package coco;
 
-import java.util.Stack;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.NoSuchElementException;
 import types.*;
 
 public class SymbolTable {
 
-    // Stack of scoped symbol tables
-    // Each symbol table is represented as a hash table
-    Stack<HashMap<String, List<Symbol>>> scopedTables;
-
-    // Reserved symbols
-    public final static Symbol mainSymbol = new Symbol("main", new FuncType(new TypeList(), new VoidType()), false);
-    public final static Symbol readIntSymbol = new Symbol("readInt", new FuncType(new TypeList(), new IntType()));
-    public final static Symbol readBoolSymbol = new Symbol("readBool", new FuncType(new TypeList(), new BoolType()));
+    // One flat table for all open scopes, indexed by the interned id of a name
+    // Each declaration of a name in a scope is an entry; binding[name] is the innermost
+    // visible entry and every entry links the one it shadows, so lookup does not depend on
+    // how deeply scopes are nested. The entries of the open scopes are kept on an undo log
+    // that exit() pops to restore what they shadowed.
+    // The symbols of an entry (overloads of a function) are chained through nextOverload
+    private final Interner names;
+    private int[] binding;          // per name id, innermost entry or -1
+
+    private int entryCount;
+    private int[] entryName;
+    private int[] entryShadowed;    // entry of the same name in an enclosing scope, or -1
+    private int[] entryDepth;
+    private int[] entryFirst;       // first and last symbol of the overload chain
+    private int[] entryLast;
+    private Overloads[] views;      // List views handed out by lookup, made on first use
+
+    private int symbolCount;        // symbols declared, also the next symbol id
+    private Symbol[] symbols;
+    private int[] nextOverload;     // per symbol id, next overload of the same entry or -1
+
+    private int depth;
+    private int[] undoLog;          // entries of the open scopes, innermost last
+    private int undoSize;
+    private int[] scopeMarks;       // undoSize at each enter()
+
+    // Reserved symbols, shared by every compilation, take the first ids
+    public final static Symbol mainSymbol = new Symbol("main", new FuncType(new TypeList(), new VoidType()), false, 0);
+    public final static Symbol readIntSymbol = new Symbol("readInt", new FuncType(new TypeList(), new IntType()), 1);
+    public final static Symbol readBoolSymbol = new Symbol("readBool", new FuncType(new TypeList(), new BoolType()), 2);
     // public final static Symbol readFloatSymbol = new Symbol("readFloat", new FuncType(new TypeList(), new FloatType()));
-    public final static Symbol printIntSymbol = new Symbol("printInt", new FuncType(new TypeList(Arrays.asList(new IntType())), new VoidType()));
-    public final static Symbol printBoolSymbol = new Symbol("printBool", new FuncType(new TypeList(Arrays.asList(new BoolType())), new VoidType()));
+    public final static Symbol printIntSymbol = new Symbol("printInt", new FuncType(new TypeList(Arrays.asList(new IntType())), new VoidType()), 3);
+    public final static Symbol printBoolSymbol = new Symbol("printBool", new FuncType(new TypeList(Arrays.asList(new BoolType())), new VoidType()), 4);
     // public final static Symbol printFloatSymbol = new Symbol("printFloat", new FuncType(new TypeList(Arrays.asList(new FloatType())), new VoidType()));
-    public final static Symbol printlnSymbol = new Symbol("println", new FuncType(new TypeList(), new VoidType()));
+    public final static Symbol printlnSymbol = new Symbol("println", new FuncType(new TypeList(), new VoidType()), 5);
+    public final static int reservedSymbols = 6;
 
     public SymbolTable () {
-        // Initialize the scope stack
-        scopedTables = new Stack<HashMap<String, List<Symbol>>>();
-
-        // Initialize the global scope with predefined functions
-        HashMap<String, List<Symbol>> globalScope = new HashMap<String, List<Symbol>>();
-        ArrayList<Symbol> overloads = new ArrayList<Symbol>();
-        overloads.add(readIntSymbol);
-        globalScope.put("readInt", overloads);
-
-        overloads = new ArrayList<Symbol>();
-        overloads.add(readBoolSymbol);
-        globalScope.put("readBool", overloads);
-
-        // overloads = new ArrayList<Symbol>();
-        // overloads.add(readFloatSymbol);
-        // globalScope.put("readFloat", overloads);
-
-        overloads = new ArrayList<Symbol>();
-        overloads.add(printIntSymbol);
-        globalScope.put("printInt", overloads);
+        this(new Interner());
+    }
 
-        overloads = new ArrayList<Symbol>();
-        overloads.add(printBoolSymbol);
-        globalScope.put("printBool", overloads);
+    // Names are looked up by their id in names, normally the names of a TokenBuffer
+    public SymbolTable (Interner names) {
+        this.names = names;
+        binding = new int[Math.max(64, names.size() + 16)];
+        Arrays.fill(binding, -1);
 
-        // overloads = new ArrayList<Symbol>();
-        // overloads.add(printFloatSymbol);
-        // globalScope.put("printFloat", overloads);
+        entryName = new int[64];
+        entryShadowed = new int[64];
+        entryDepth = new int[64];
+        entryFirst = new int[64];
+        entryLast = new int[64];
+        views = new Overloads[64];
 
-        overloads = new ArrayList<Symbol>();
-        overloads.add(printlnSymbol);
-        globalScope.put("println", overloads);
+        symbols = new Symbol[64];
+        nextOverload = new int[64];
+        symbolCount = reservedSymbols;
 
-        overloads = new ArrayList<Symbol>();
-        overloads.add(mainSymbol);
-        globalScope.put("main", overloads);
+        undoLog = new int[64];
+        scopeMarks = new int[16];
 
-        // Add the global scope to the scope stack
-        scopedTables.push(globalScope);
+        // Initialize the global scope with predefined functions
+        declare(names.intern("readInt"), readIntSymbol);
+        declare(names.intern("readBool"), readBoolSymbol);
+        // declare(names.intern("readFloat"), readFloatSymbol);
+        declare(names.intern("printInt"), printIntSymbol);
+        declare(names.intern("printBool"), printBoolSymbol);
+        // declare(names.intern("printFloat"), printFloatSymbol);
+        declare(names.intern("println"), printlnSymbol);
+        declare(names.intern("main"), mainSymbol);
     }
 
     // lookup name in SymbolTable
     public List<Symbol> lookup (String name) throws SymbolNotFoundError {
-        // Look through all scopes starting from the top
-        for (int i = scopedTables.size() - 1; i >= 0; i--) {
-            HashMap<String, List<Symbol>> scope = scopedTables.elementAt(i);
+        return lookup(names.intern(name));
+    }
 
-            // Check if the symbol is defined in this scope
-            if (scope.containsKey(name)) {
-                return scope.get(name);
-            }
+    // lookup the name with this id in names
+    public List<Symbol> lookup (int name) throws SymbolNotFoundError {
+        int entry = name < binding.length ? binding[name] : -1;
+        if (entry < 0) {
+            throw new SymbolNotFoundError(names.name(name));
         }
-
-        throw new SymbolNotFoundError(name);
+        if (views[entry] == null) {
+            views[entry] = new Overloads(entry);
+        }
+        return views[entry];
     }
 
     public Symbol insert (String name, Type type, boolean isGlobal) throws RedeclarationError {
-        // Check if symbol already exists in current scope
-        HashMap<String, List<Symbol>> currScope = scopedTables.lastElement();
-
-        if (currScope.containsKey(name)) {
-            List<Symbol> overloads = currScope.get(name);
-
-            // Functions can be overloaded
-            if (type instanceof FuncType) {
-                // Cannot redeclare with same type (or parameters for function)
-                for (Symbol s : overloads) {
-                    if (type.equals(s.type())) {
-                        throw new RedeclarationError(name);
-                    }
-                }
+        return insert(names.intern(name), type, isGlobal);
+    }
 
-                // If different from every overload, can add
-                Symbol newOverload = new Symbol(name, type);
-                currScope.get(name).add(newOverload);
-                return newOverload;
-            } 
-            // Can overload if it is the only variable with that name 
-            else {
-                for (Symbol s : overloads) {
-                    if (!(s.type() instanceof FuncType)) {
-                        throw new RedeclarationError(name);            
-                    }
-                }
+    public Symbol insert (String name, Type type) throws RedeclarationError {
+        return insert(names.intern(name), type);
+    }
 
-                // If the only variable with this name, can add
-                Symbol newOverload = new Symbol(name, type);
-                currScope.get(name).add(newOverload);
-                return newOverload;
-            }
+    public Symbol insert (int name, Type type, boolean isGlobal) throws RedeclarationError {
+        Symbol overload = insertOverload(name, type);
+        if (overload != null) {
+            return overload;
         }
+        return declare(name, new Symbol(names.name(name), type, isGlobal, symbolCount));
+    }
 
-        Symbol s = new Symbol(name, type, isGlobal);
+    public Symbol insert (int name, Type type) throws RedeclarationError {
+        Symbol overload = insertOverload(name, type);
+        if (overload != null) {
+            return overload;
+        }
+        return declare(name, new Symbol(names.name(name), type, symbolCount));
+    }
 
-        // Should be added to the current scope
-        currScope.put(name, new ArrayList<Symbol>());
-        currScope.get(name).add(s);
-        return s;
+    // If the name is already declared in the current scope, adds the overload to it
+    // or throws if it cannot be one; null if the name is new to the current scope
+    private Symbol insertOverload (int name, Type type) throws RedeclarationError {
+        int entry = name < binding.length ? binding[name] : -1;
+        if (entry < 0 || entryDepth[entry] != depth) {
+            return null;
+        }
+
+        for (int s = entryFirst[entry]; s >= 0; s = nextOverload[s]) {
+            // Functions can be overloaded, but cannot be redeclared with the same parameters
+            if (type instanceof FuncType ? type.equals(symbols[s].type()) : !(symbols[s].type() instanceof FuncType)) {
+                throw new RedeclarationError(names.name(name));
+            }
+        }
+
+        Symbol newOverload = new Symbol(names.name(name), type, symbolCount);
+        addSymbol(newOverload);
+        nextOverload[entryLast[entry]] = newOverload.id();
+        entryLast[entry] = newOverload.id();
+        return newOverload;
     }
 
-    public Symbol insert (String name, Type type) throws RedeclarationError {
-        // Check if symbol already exists in current scope
-        HashMap<String, List<Symbol>> currScope = scopedTables.lastElement();
-
-        if (currScope.containsKey(name)) {
-            List<Symbol> overloads = currScope.get(name);
-
-            // Functions can be overloaded
-            if (type instanceof FuncType) {
-                // Cannot redeclare with same type (or parameters for function)
-                for (Symbol s : overloads) {
-                    if (type.equals(s.type())) {
-                        throw new RedeclarationError(name);
-                    }
-                }
+    // Adds a new entry for the name in the current scope with its first symbol
+    private Symbol declare (int name, Symbol s) {
+        if (name >= binding.length) {
+            int old = binding.length;
+            binding = Arrays.copyOf(binding, Math.max(name + 1, old * 2));
+            Arrays.fill(binding, old, binding.length, -1);
+        }
+        if (entryCount == entryName.length) {
+            int capacity = entryCount * 2;
+            entryName = Arrays.copyOf(entryName, capacity);
+            entryShadowed = Arrays.copyOf(entryShadowed, capacity);
+            entryDepth = Arrays.copyOf(entryDepth, capacity);
+            entryFirst = Arrays.copyOf(entryFirst, capacity);
+            entryLast = Arrays.copyOf(entryLast, capacity);
+            views = Arrays.copyOf(views, capacity);
+        }
+        if (s.id() >= reservedSymbols) {
+            addSymbol(s);
+        } else {
+            symbols[s.id()] = s;
+            nextOverload[s.id()] = -1;
+        }
 
-                // If different from every overload, can add
-                Symbol newOverload = new Symbol(name, type);
-                currScope.get(name).add(newOverload);
-                return newOverload;
-            } 
-            // Can overload if it is the only variable with that name 
-            else {
-                for (Symbol s : overloads) {
-                    if (!(s.type() instanceof FuncType)) {
-                        throw new RedeclarationError(name);            
-                    }
-                }
+        int entry = entryCount++;
+        entryName[entry] = name;
+        entryShadowed[entry] = binding[name];
+        entryDepth[entry] = depth;
+        entryFirst[entry] = s.id();
+        entryLast[entry] = s.id();
+        binding[name] = entry;
 
-                // If the only variable with this name, can add
-                Symbol newOverload = new Symbol(name, type);
-                currScope.get(name).add(newOverload);
-                return newOverload;
-            }
+        if (undoSize == undoLog.length) {
+            undoLog = Arrays.copyOf(undoLog, undoSize * 2);
         }
+        undoLog[undoSize++] = entry;
+        return s;
+    }
 
-        Symbol s = new Symbol(name, type);
+    // Takes the next symbol id
+    private void addSymbol (Symbol s) {
+        if (symbolCount == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbolCount * 2);
+            nextOverload = Arrays.copyOf(nextOverload, symbolCount * 2);
+        }
+        symbols[symbolCount] = s;
+        nextOverload[symbolCount] = -1;
+        symbolCount++;
+    }
 
-        // Should be added to the current scope
-        currScope.put(name, new ArrayList<Symbol>());
-        currScope.get(name).add(s);
+    // Symbol of a compiler generated local, not visible in any scope
+    public Symbol temporary (String name, Type type) {
+        Symbol s = new Symbol(name, type, symbolCount);
+        addSymbol(s);
         return s;
     }
 
+    // Number of symbol ids handed out, including the reserved ones
+    public int symbolCount () {
+        return symbolCount;
+    }
+
     // Enter a new scope
     public void enter() {
-        // Add new symbol table to the stack
-        scopedTables.push(new HashMap<String, List<Symbol>>());
+        if (depth + 1 == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, scopeMarks.length * 2);
+        }
+        scopeMarks[++depth] = undoSize;
     }
 
     // Exit the current scope
     public void exit() {
-        // Remove the most recent scope
-        scopedTables.pop();
+        // Unbind the declarations of the scope, uncovering what they shadowed
+        int mark = scopeMarks[depth--];
+        while (undoSize > mark) {
+            int entry = undoLog[--undoSize];
+            binding[entryName[entry]] = entryShadowed[entry];
+        }
+    }
+
+    // Overloads of one entry as a List; entries are never reused, so the view stays valid
+    // after its scope is exited and sees overloads added later, as the symbol lists did
+    private class Overloads extends AbstractList<Symbol> {
+        private final int entry;
+
+        Overloads (int entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Symbol get (int index) {
+            int s = entryFirst[entry];
+            for (int i = 0; i < index && s >= 0; i++) {
+                s = nextOverload[s];
+            }
+            if (index < 0 || s < 0) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return symbols[s];
+        }
+
+        @Override
+        public int size () {
+            int n = 0;
+            for (int s = entryFirst[entry]; s >= 0; s = nextOverload[s]) {
+                n++;
+            }
+            return n;
+        }
+
+        @Override
+        public Iterator<Symbol> iterator () {
+            return new Iterator<Symbol>() {
+                private int next = entryFirst[entry];
+
+                @Override
+                public boolean hasNext () {
+                    return next >= 0;
+                }
+
+                @Override
+                public Symbol next () {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    Symbol s = symbols[next];
+                    next = nextOverload[next];
+                    return s;
+                }
+            };
+        }
     }
 }
 
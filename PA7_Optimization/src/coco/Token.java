@@ -115,6 +115,63 @@ public class Token {
   private static final Pattern floatPattern = Pattern.compile("^-?[0-9]+.[0-9]+$");
   private static final Pattern identPattern = Pattern.compile("^[a-z][_|[a-z]|[0-9]]*$", Pattern.CASE_INSENSITIVE);
 
+  // Kind of each static lexeme, open addressed by the lexeme's String hash so that
+  // lexemes still in the scanner's buffer can be looked up without making a String
+  // The first kind in declaration order wins
+  private static final Kind[] staticKinds = new Kind[128];
+
+  static {
+    for (Kind k: Kind.values()) {
+      if (k.hasStaticLexeme() && staticKind(k.defaultLexeme) == null) {
+        int slot = slot(k.defaultLexeme.hashCode());
+        while (staticKinds[slot] != null) {
+          slot = (slot + 1) & (staticKinds.length - 1);
+        }
+        staticKinds[slot] = k;
+      }
+    }
+  }
+
+  private static int slot(int hash) {
+    return (hash ^ (hash >>> 16)) & (staticKinds.length - 1);
+  }
+
+  // Kind whose static lexeme this is, or null
+  static Kind staticKind(String lexeme) {
+    for (int slot = slot(lexeme.hashCode()); staticKinds[slot] != null; slot = (slot + 1) & (staticKinds.length - 1)) {
+      if (staticKinds[slot].defaultLexeme.equals(lexeme)) {
+        return staticKinds[slot];
+      }
+    }
+    return null;
+  }
+
+  // Kind whose static lexeme is chars[offset, offset + count), or null
+  static Kind staticKind(char[] chars, int offset, int count) {
+    int hash = 0;
+    for (int i = offset; i < offset + count; i++) {
+      hash = 31 * hash + chars[i];
+    }
+    for (int slot = slot(hash); staticKinds[slot] != null; slot = (slot + 1) & (staticKinds.length - 1)) {
+      if (matches(staticKinds[slot].defaultLexeme, chars, offset, count)) {
+        return staticKinds[slot];
+      }
+    }
+    return null;
+  }
+
+  private static boolean matches(String lexeme, char[] chars, int offset, int count) {
+    if (lexeme.length() != count) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (lexeme.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public static Token EOF(int linePos, int charPos) {
     Token tok = new Token(linePos, charPos);
     tok.kind = Kind.EOF;
@@ -186,37 +243,47 @@ public class Token {
   public Token(String lexeme, int lineNum, int charPos) {
     this.lineNum = lineNum;
     this.charPos = charPos;
+    this.kind = classify(lexeme);
+    this.lexeme = kind == Kind.ERROR ? unrecognized(lexeme) : lexeme;
+  }
+
+  // Token of a lexeme the scanner has already classified
+  Token(Kind kind, String lexeme, int lineNum, int charPos) {
+    this.lineNum = lineNum;
+    this.charPos = charPos;
+    this.kind = kind;
     this.lexeme = lexeme;
+  }
 
+  static Kind classify(String lexeme) {
     // Check if it matches a static value
-    for (Kind k: Kind.values()) {
-      if (k.hasStaticLexeme() && k.hasLexeme(lexeme)) {
-        kind = k;
-        return;
-      }
+    Kind k = staticKind(lexeme);
+    if (k != null) {
+      return k;
     }
 
     // Check if it matches special cases (int, float, identifier, eof)
     Matcher matcher;
     matcher = intPattern.matcher(lexeme);
     if (matcher.matches()) {
-      kind = Kind.INT_VAL;
-      return;
+      return Kind.INT_VAL;
     }
     matcher = floatPattern.matcher(lexeme);
     if (matcher.matches()) {
-      kind = Kind.FLOAT_VAL;
-      return;
+      return Kind.FLOAT_VAL;
     }
     matcher = identPattern.matcher(lexeme);
     if (matcher.matches()) {
-      kind = Kind.IDENT;
-      return;
+      return Kind.IDENT;
     }
 
     // If we don't match anything, signal error
-    this.kind = Kind.ERROR;
-    this.lexeme = "Unrecognized lexeme: " + lexeme;
+    return Kind.ERROR;
+  }
+
+  // Lexeme of the ERROR token for a lexeme that matches no kind
+  static String unrecognized(String lexeme) {
+    return "Unrecognized lexeme: " + lexeme;
   }
 
   public int lineNumber() { return lineNum; }
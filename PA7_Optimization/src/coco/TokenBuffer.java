@@ -0,0 +1,155 @@
+package coco;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+// Every token of a source, lexed up front into parallel int arrays instead of Token objects
+// A token is an index into the arrays: its kind ordinal, the offset and length of its lexeme
+// in the scanner's source buffer, and its line and char position
+// Identifiers are also interned as they are lexed, an IDENT token has the id of its name
+// Lexemes are only made into Strings when asked for, so the parser allocates nothing per token
+// it only checks the kind of, and any token can be looked at again or ahead
+public final class TokenBuffer {
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    private final char[] source;
+    private int[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] chars;
+    private int[] nameIds;      // -1 unless IDENT
+    private int size;
+
+    private final Interner names = new Interner();
+
+    // lexemes of the ERROR tokens, which are messages rather than slices of the source
+    private final HashMap<Integer, String> ownLexemes = new HashMap<>();
+
+    // Lexes the rest of the scanner's input, up to and including EOF
+    public TokenBuffer (Scanner scanner) {
+        source = scanner.source();
+        int capacity = Math.max(16, source.length / 4);
+        kinds = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        chars = new int[capacity];
+        nameIds = new int[capacity];
+
+        Token.Kind kind;
+        do {
+            kind = scanner.scan();
+            if (size == kinds.length) {
+                grow();
+            }
+            kinds[size] = kind.ordinal();
+            starts[size] = scanner.tokenStart();
+            lengths[size] = scanner.tokenLength();
+            lines[size] = scanner.tokenLine();
+            chars[size] = scanner.tokenChar();
+            nameIds[size] = kind == Token.Kind.IDENT
+                ? names.intern(source, scanner.tokenStart(), scanner.tokenLength()) : -1;
+            if (scanner.ownLexeme() != null) {
+                ownLexemes.put(size, scanner.ownLexeme());
+            }
+            size++;
+        } while (kind != Token.Kind.EOF);
+    }
+
+    private void grow () {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        chars = Arrays.copyOf(chars, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+    }
+
+    // names of the identifiers, shared by every IDENT token with that name
+    public Interner names () {
+        return names;
+    }
+
+    // number of tokens, the last one being EOF
+    public int size () {
+        return size;
+    }
+
+    public Token.Kind kind (int token) {
+        return KINDS[kinds[token]];
+    }
+
+    public int lineNumber (int token) {
+        return lines[token];
+    }
+
+    public int charPosition (int token) {
+        return chars[token];
+    }
+
+    // length of the lexeme in the source, 0 for EOF
+    public int length (int token) {
+        return lengths[token];
+    }
+
+    // id in names() of an IDENT token, -1 for any other token
+    public int nameId (int token) {
+        return nameIds[token];
+    }
+
+    public String lexeme (int token) {
+        if (nameIds[token] >= 0) {
+            return names.name(nameIds[token]);
+        }
+        String own = ownLexemes.get(token);
+        if (own != null) {
+            return own;
+        }
+        if (kinds[token] == Token.Kind.EOF.ordinal()) {
+            return Token.EOF(lines[token], chars[token]).lexeme();
+        }
+        return new String(source, starts[token], lengths[token]);
+    }
+
+    // the token as the scanner would have returned it
+    public Token token (int token) {
+        if (kinds[token] == Token.Kind.EOF.ordinal()) {
+            return Token.EOF(lines[token], chars[token]);
+        }
+        return new Token(kind(token), lexeme(token), lines[token], chars[token]);
+    }
+
+    public Cursor cursor () {
+        return new Cursor();
+    }
+
+    // Position of a reader of the tokens, starting at the first
+    public final class Cursor {
+        private int index;
+
+        // the current token
+        public int index () {
+            return index;
+        }
+
+        public Token.Kind kind () {
+            return KINDS[kinds[index]];
+        }
+
+        public boolean is (Token.Kind kind) {
+            return kinds[index] == kind.ordinal();
+        }
+
+        // Moves to the next token, there is none after EOF
+        public void advance () {
+            if (index + 1 >= size) {
+                throw new NoSuchElementException();
+            }
+            index++;
+        }
+    }
+}
@@ -38,13 +38,19 @@ public class IRGenerator implements ast.NodeVisitor, Iterable<CFG>{
     private boolean needBool = false;
     private List<Call> deferredCalls = new ArrayList<Call>();
     private HashMap<Integer, Symbol> tempSyms = new HashMap<Integer, Symbol>();
+    private SymbolTable symbolTable;
 
     public static final Gdb GDB = new Gdb();
     public static final Sp SP = new Sp();
 
+    // Temporaries are numbered after the symbols of the program
+    public IRGenerator(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
     private Symbol getTempSym() {
         if (!tempSyms.containsKey(tempCount)) {
-            tempSyms.put(tempCount, new Symbol("_t" + tempCount, null));
+            tempSyms.put(tempCount, symbolTable.temporary("_t" + tempCount, null));
         }
 
         return tempSyms.get(tempCount);
@@ -56,7 +62,7 @@ public class IRGenerator implements ast.NodeVisitor, Iterable<CFG>{
 
     public SSA generateIR(AST ast) {
         ast.getRoot().accept(this);
-        SSA savedSSA = new SSA(funcs, currBlockNum);
+        SSA savedSSA = new SSA(funcs, currBlockNum, symbolTable.symbolCount());
         return savedSSA;
     }
 
@@ -455,8 +461,19 @@ public class IRGenerator implements ast.NodeVisitor, Iterable<CFG>{
             tempCount--;
         }
 
+        // Whole arrays are copied element by element with a single ARRCPY
+        if (!isArray && destVal.symbol().type() instanceof ArrayType && sourceVal instanceof Variable) {
+            Symbol srcSym = ((Variable) sourceVal).symbol();
+            int words = Math.min(arrayWords((ArrayType) destVal.symbol().type()), arrayWords((ArrayType) srcSym.type()));
+
+            Variable destEnd = arrayEnd(destVal.symbol(), words);
+            tempCount++;
+            Variable srcEnd = arrayEnd(srcSym, words);
+            tempCount--;
+            currBlock.add(new ArrayCopy(currInstr++, srcEnd, destEnd, words));
+        }
         // If array, need to store at address
-        if (isArray) {
+        else if (isArray) {
             currBlock.add(new Store(currInstr++, sourceVal, destVal));
             isArray = false;
         } 
@@ -489,6 +506,26 @@ public class IRGenerator implements ast.NodeVisitor, Iterable<CFG>{
         }
     }
 
+    private static int arrayWords (ArrayType arrType) {
+        int words = arrType.numElements();
+        while (arrType.elementType() instanceof ArrayType) {
+            arrType = (ArrayType) arrType.elementType();
+            words *= arrType.numElements();
+        }
+        return words;
+    }
+
+    // Address of the last of the first words of an array, where ARRCPY starts copying down from
+    private Variable arrayEnd (Symbol arr, int words) {
+        Value base = arr.isGlobalVariable() ? GDB : SP;
+        Variable start = new Temporary(getTempSym(), currInstr);
+        currBlock.add(new Add(currInstr++, start, base, new Variable(arr)));
+
+        Variable end = new Temporary(getTempSym(), currInstr);
+        currBlock.add(new Add(currInstr++, end, start, new Literal(new IntegerLiteral(0, 0, 4 * (words - 1)))));
+        return end;
+    }
+
     @Override
     public void visit (ArgumentList node) {
         // Generate TAC for each argument computation
@@ -2,6 +2,7 @@ package ir;
 
 import java.util.List;
 import java.util.Iterator;
+import coco.Symbol;
 import ir.cfg.CFG;
 import ir.cfg.CFGPrinter;
 
@@ -9,6 +10,8 @@ public class SSA implements Iterable<CFG> {
 
     private List<CFG> funcs;
     private Integer lastBlockNum;
+    private int symbolCount;
+    private int numTemporaries;     // made by passes
 
     public SSA(List<CFG> funcs) {
         this.funcs = funcs;
@@ -19,12 +22,28 @@ public class SSA implements Iterable<CFG> {
         this.lastBlockNum = lastBlockNum;
     }
 
+    public SSA(List<CFG> funcs, int lastBlockNum, int symbolCount) {
+        this(funcs, lastBlockNum);
+        this.symbolCount = symbolCount;
+    }
+
+    // Symbol ids of the program are below this, see Symbol.id
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    // A new temporary for a pass to keep a value in, with the next symbol id
+    // Its name starts with '_' like the temporaries of IRGenerator, so it is given a place on the stack
+    public Symbol temporary() {
+        return new Symbol("_c" + numTemporaries++, null, symbolCount++);
+    }
+
     public String asDotGraph() {
         String dotgraph_text = "digraph G {\n";
         CFGPrinter cfgPrint = new CFGPrinter();
 
         for (CFG cfg : funcs) {
-            dotgraph_text += cfgPrint.printDotGraph(cfg.start());
+            dotgraph_text += cfgPrint.printDotGraph(cfg);
         }
 
         dotgraph_text += "}";
@@ -54,10 +73,4 @@ public class SSA implements Iterable<CFG> {
     public Iterator<CFG> iterator() {
         return funcs.iterator();
     }
-
-    public void resetVisited() {
-        for (CFG cfg : funcs) {
-            cfg.resetVisited();
-        }
-    }
 }
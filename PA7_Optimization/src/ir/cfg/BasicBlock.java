@@ -1,46 +1,35 @@
 package ir.cfg;
 
+import java.util.AbstractList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.RandomAccess;
 
 import ir.tac.TAC;
-import ir.tac.Value;
-import coco.Symbol;
 
 public class BasicBlock extends Block implements Iterable<TAC> {
 
     private int num; // block number;
+    private int position; // in the last order of its CFG, see CFG.reversePostorder
+    private CFG cfg;      // whose orders it was last in, told when its successors change
     private List<TAC> instructions;
     private String funcName;
 
     private List<BasicBlock> predecessors;
     private List<Successor> successors;
 
-    // For optimizations
-    private HashMap<Symbol, Value> entryValueSet;
-    private HashMap<Symbol, Value> exitValueSet;
-    private HashSet<Symbol> exitLiveVars;  // at exit of bblock
-    private HashSet<Symbol> entryLiveVars; // at entry of bblock
-
-    public static final Symbol unitializedSymbol = new Symbol("__uninitialized__", null);
+    // For optimizations, numbered by the SymbolNumbering of the CFG, null until computed
+    private BitSet exitLiveVars;  // at exit of bblock
+    private BitSet entryLiveVars; // at entry of bblock
 
     public BasicBlock(int num) {
         this.num = num;
         this.funcName = null;
         instructions = new ArrayList<TAC>();
         predecessors = new ArrayList<BasicBlock>();
-        successors = new ArrayList<Successor>();
-        entryValueSet = new HashMap<Symbol, Value>();
-        exitValueSet = new HashMap<Symbol, Value>();
-        entryValueSet.put(unitializedSymbol, null);
-        exitValueSet.put(unitializedSymbol, null);
-        exitLiveVars = new HashSet<Symbol>();
-        entryLiveVars = new HashSet<Symbol>();
-        exitLiveVars.add(unitializedSymbol);
-        entryLiveVars.add(unitializedSymbol);
+        successors = new SuccessorList();
     }
     
     public BasicBlock(int num, String funcName) {
@@ -48,21 +37,25 @@ public class BasicBlock extends Block implements Iterable<TAC> {
         this.funcName = funcName;
         instructions = new ArrayList<TAC>();
         predecessors = new ArrayList<BasicBlock>();
-        successors = new ArrayList<Successor>();
-        entryValueSet = new HashMap<Symbol, Value>();
-        exitValueSet = new HashMap<Symbol, Value>();
-        entryValueSet.put(unitializedSymbol, null);
-        exitValueSet.put(unitializedSymbol, null);
-        exitLiveVars = new HashSet<Symbol>();
-        entryLiveVars = new HashSet<Symbol>();
-        exitLiveVars.add(unitializedSymbol);
-        entryLiveVars.add(unitializedSymbol);
+        successors = new SuccessorList();
     }
 
     public int blockNumber() {
         return num;
     }
 
+    public int position() {
+        return position;
+    }
+
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    void setCFG(CFG cfg) {
+        this.cfg = cfg;
+    }
+
     public List<TAC> getInstructions() {
         return instructions;
     }
@@ -79,22 +72,24 @@ public class BasicBlock extends Block implements Iterable<TAC> {
         return successors;
     }
 
-    public HashMap<Symbol, Value> getEntryValueSet() {
-        return entryValueSet;
+    public boolean liveSetComputed() {
+        return entryLiveVars != null;
     }
 
-    public HashMap<Symbol, Value> getExitValueSet() {
-        return exitValueSet;
-    }
-    
-    public HashSet<Symbol> getExitLiveSet() {
+    // Shared with the liveness result, not to be changed
+    public BitSet getExitLiveSet() {
         return exitLiveVars;
     }
 
-    public HashSet<Symbol> getEntryLiveSet() {
+    public BitSet getEntryLiveSet() {
         return entryLiveVars;
     }
 
+    public void setLiveSets(BitSet entry, BitSet exit) {
+        entryLiveVars = entry;
+        exitLiveVars = exit;
+    }
+
     public void add(TAC instr) {
         instructions.add(instr);
     }
@@ -126,24 +121,51 @@ public class BasicBlock extends Block implements Iterable<TAC> {
 
     @Override
     public void accept(CFGVisitor visitor) {
-        if(!visited) {
-            visited = true;
-            visitor.visit(this);
-        }
+        visitor.visit(this);
     }
 
-    public void accept(CFGVisitor visitor, boolean reset) {
-        if (reset && visited) {
-            visited = false;
-            visitor.visit(this);
-        } else if (!reset && visited) {
-            visited = true;
-            visitor.visit(this);
+    // Every change of the list goes through add, set and remove,
+    // so the orders of the CFG are dropped whatever changes the edges
+    private class SuccessorList extends AbstractList<Successor> implements RandomAccess {
+
+        private final ArrayList<Successor> list = new ArrayList<Successor>(2);
+
+        @Override
+        public Successor get(int index) {
+            return list.get(index);
         }
-    }
 
-    @Override
-    public void resetVisited() {
-        visited = false;
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public void add(int index, Successor s) {
+            list.add(index, s);
+            modCount++;
+            edgesChanged();
+        }
+
+        @Override
+        public Successor set(int index, Successor s) {
+            Successor old = list.set(index, s);
+            edgesChanged();
+            return old;
+        }
+
+        @Override
+        public Successor remove(int index) {
+            Successor old = list.remove(index);
+            modCount++;
+            edgesChanged();
+            return old;
+        }
+
+        private void edgesChanged() {
+            if (cfg != null) {
+                cfg.edgesChanged();
+            }
+        }
     }
-}
\ No newline at end of file
+}
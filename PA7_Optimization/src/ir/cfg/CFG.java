@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import coco.Symbol;
 import ir.tac.TAC;
@@ -13,10 +14,15 @@ public class CFG {
     private BasicBlock startBlock;
     private HashMap<Integer, BasicBlock> blocks;
     private Symbol func;
-    private CFGReset reset = new CFGReset();
     private HashSet<Symbol> reassignedVars;
     private List<Symbol> locals;
     private List<Symbol> params;
+    private SymbolNumbering numbering = new SymbolNumbering();
+
+    // Blocks reachable from the start, null until asked for after a change of the edges
+    private BasicBlock[] preorder;
+    private BasicBlock[] postorder;
+    private BasicBlock[] reversePostorder;
 
     public CFG(int startNum, Symbol func) {
         startBlock = new BasicBlock(startNum, func.name());
@@ -66,19 +72,104 @@ public class CFG {
         return params;
     }
 
+    // numbers of the symbols in the bitsets of the blocks
+    public SymbolNumbering numbering() {
+        return numbering;
+    }
+
     public void setStart(BasicBlock bb) {
         startBlock = bb;
+        edgesChanged();
+    }
+
+    // Orders of the blocks reachable from the start, shared and not to be changed
+    // Computed once and kept until an edge of one of these blocks or the start changes
+    public BasicBlock[] preorder() {
+        if (preorder == null) {
+            computeOrders();
+        }
+        return preorder;
+    }
+
+    public BasicBlock[] postorder() {
+        if (postorder == null) {
+            computeOrders();
+        }
+        return postorder;
+    }
+
+    // Each block before its successors except along back edges,
+    // numbered with its place in it so that blocks[b.position()] == b for each of them
+    public BasicBlock[] reversePostorder() {
+        if (reversePostorder == null) {
+            computeOrders();
+        }
+        return reversePostorder;
     }
 
-    public void resetVisited() {
-        reset.visit(startBlock);
+    // Called by the blocks of the orders when their successors change
+    void edgesChanged() {
+        preorder = null;
+        postorder = null;
+        reversePostorder = null;
     }
 
-    public void resetValueSet() {
-        reset.resetValueSet(this);
+    // Depth first from the start with an explicit stack, successors in order,
+    // which visits the blocks in the same order as a recursive walk would
+    private void computeOrders() {
+        BasicBlock[] found = new BasicBlock[16];  // in preorder, as position until numbered
+        BasicBlock[] stack = new BasicBlock[16];
+        int[] nextSucc = new int[16];
+        BasicBlock[] post = new BasicBlock[16];
+        int numFound = 0;
+        int depth = 0;
+        int numPost = 0;
+
+        startBlock.setPosition(numFound);
+        found[numFound++] = startBlock;
+        stack[depth++] = startBlock;
+        while (depth > 0) {
+            BasicBlock block = stack[depth - 1];
+            List<Successor> succs = block.getSuccessors();
+            if (nextSucc[depth - 1] < succs.size()) {
+                BasicBlock next = succs.get(nextSucc[depth - 1]++).destination();
+                int p = next.position();
+                if (p >= 0 && p < numFound && found[p] == next) {
+                    continue;
+                }
+                if (numFound == found.length) {
+                    found = Arrays.copyOf(found, numFound * 2);
+                    post = Arrays.copyOf(post, numFound * 2);
+                }
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                    nextSucc = Arrays.copyOf(nextSucc, depth * 2);
+                }
+                next.setPosition(numFound);
+                found[numFound++] = next;
+                stack[depth] = next;
+                nextSucc[depth++] = 0;
+            } else {
+                post[numPost++] = block;
+                depth--;
+            }
+        }
+
+        preorder = Arrays.copyOf(found, numFound);
+        postorder = Arrays.copyOf(post, numPost);
+        reversePostorder = new BasicBlock[numPost];
+        for (int i = 0; i < numPost; i++) {
+            BasicBlock block = post[numPost - 1 - i];
+            reversePostorder[i] = block;
+            block.setPosition(i);
+            block.setCFG(this);
+        }
     }
 
+    // Back to not computed, for the blocks reachable from the start
     public void resetLiveSet() {
-        reset.resetLiveSet(this);
+        for (BasicBlock block : reversePostorder()) {
+            block.setLiveSets(null, null);
+        }
     }
 }
@@ -29,13 +29,17 @@ public class CFGCleanup implements CFGVisitor {
         for (CFG cfg : ssa) {
             currCFG = cfg;
 
+            // Each round walks the blocks as they were before it, skipping
+            // those merged into their predecessor earlier in the round
             do {
                 noChanges = true;
-                cfg.start().accept(this);
-                cfg.resetVisited();
+                for (BasicBlock block : cfg.preorder()) {
+                    if (block == cfg.start() || !block.getPredecessors().isEmpty()) {
+                        visit(block);
+                    }
+                }
             } while (!noChanges);
         }
-        ssa.resetVisited();
 
         // Eliminate orphan functions
         getUsedFuncs = true;
@@ -54,7 +58,9 @@ public class CFGCleanup implements CFGVisitor {
                 visited.add(curr);
 
                 // Determine which functions get used
-                curr.start().accept(this);
+                for (BasicBlock block : curr.preorder()) {
+                    visit(block);
+                }
 
                 // Find which CFGs need to be visited next
                 for (CFG cfg : ssa) {
@@ -78,10 +84,6 @@ public class CFGCleanup implements CFGVisitor {
                 noChanges = false;
             }
 
-            for (CFG cfg : ssa) {
-                cfg.resetVisited();
-            }
-
             visited.clear();
             usedFunc.clear();
         } while (!noChanges);
@@ -171,16 +173,5 @@ public class CFGCleanup implements CFGVisitor {
                 noChanges = false;
             }
         }
-
-        List<BasicBlock> nextBlocks = new ArrayList<BasicBlock>();
-
-        for (Successor s : block.getSuccessors()) {
-            // Get successor blocks for later (may be removed)
-            nextBlocks.add(s.destination());
-        }
-
-        for (BasicBlock bb : nextBlocks) {
-            bb.accept(this);
-        }
     }
 }
@@ -11,8 +11,10 @@ public class CFGPrinter implements CFGVisitor {
     String outStr = "";
     int count = 0;
 
-    public String printDotGraph(BasicBlock start) {
-        start.accept(this);
+    public String printDotGraph(CFG cfg) {
+        for (BasicBlock block : cfg.preorder()) {
+            visit(block);
+        }
         String ret = outStr;
         outStr = "";
         return ret;
@@ -47,11 +49,6 @@ public class CFGPrinter implements CFGVisitor {
             BasicBlock dest = s.destination();
             outStr += "BB" + (block.blockNumber() >= 0 ? block.blockNumber() : "_" + block.blockNumber() * -1) + ":s -> BB" + dest.blockNumber() + ":" + s.arrowType() + " [label=\"" + s.label() + "\"];\n";
         }
-        // Visit successors
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
-        }
-
         // Create the labels for function calls
         for (Map.Entry<String, BasicBlock> entry : callLabels.entrySet()) {
             outStr += "BB" + block.blockNumber() + ":" + entry.getKey() + " -> " + "BB" + entry.getValue().blockNumber() + ":b [color=red];\n";
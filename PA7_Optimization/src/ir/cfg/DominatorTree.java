@@ -0,0 +1,140 @@
+package ir.cfg;
+
+import java.util.Arrays;
+
+// Immediate dominators and dominance frontiers of the blocks reachable from the start of a CFG,
+// by the iterative algorithm of Cooper, Harvey and Kennedy over the reverse postorder
+// Blocks are referred to by their position in cfg.reversePostorder(), so the start is 0
+// and a block comes after its immediate dominator
+// Predecessors are found from the successors, unreachable blocks are not among them
+public final class DominatorTree {
+
+    private final BasicBlock[] blocks;
+    private final int[][] preds;    // in the order of the successors of the blocks in reverse postorder
+    private final int[] idom;       // idom[0] == 0
+    private final int[][] children; // in reverse postorder
+    private final int[][] frontiers;
+
+    public DominatorTree (CFG cfg) {
+        blocks = cfg.reversePostorder();
+        int n = blocks.length;
+
+        // Predecessors, counted then filled
+        int[] numPreds = new int[n];
+        for (BasicBlock block : blocks) {
+            for (Successor s : block.getSuccessors()) {
+                numPreds[s.destination().position()]++;
+            }
+        }
+        preds = new int[n][];
+        for (int b = 0; b < n; b++) {
+            preds[b] = new int[numPreds[b]];
+            numPreds[b] = 0;
+        }
+        for (int p = 0; p < n; p++) {
+            for (Successor s : blocks[p].getSuccessors()) {
+                int b = s.destination().position();
+                preds[b][numPreds[b]++] = p;
+            }
+        }
+
+        // Each block meets the dominators of its processed predecessors until none changes
+        idom = new int[n];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 1; b < n; b++) {
+                int newIdom = -1;
+                for (int p : preds[b]) {
+                    if (idom[p] >= 0) {
+                        newIdom = newIdom < 0 ? p : intersect(p, newIdom);
+                    }
+                }
+                if (idom[b] != newIdom) {
+                    idom[b] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        int[] numChildren = new int[n];
+        for (int b = 1; b < n; b++) {
+            numChildren[idom[b]]++;
+        }
+        children = new int[n][];
+        for (int b = 0; b < n; b++) {
+            children[b] = new int[numChildren[b]];
+            numChildren[b] = 0;
+        }
+        for (int b = 1; b < n; b++) {
+            children[idom[b]][numChildren[idom[b]]++] = b;
+        }
+
+        // A join is in the frontier of each block from its predecessors up to its immediate dominator
+        int[][] front = new int[n][];
+        int[] frontSize = new int[n];
+        for (int b = 0; b < n; b++) {
+            if (preds[b].length < 2) {
+                continue;
+            }
+            for (int p : preds[b]) {
+                for (int runner = p; runner != idom[b]; runner = idom[runner]) {
+                    int size = frontSize[runner];
+                    if (size > 0 && front[runner][size - 1] == b) {
+                        break;
+                    }
+                    if (front[runner] == null) {
+                        front[runner] = new int[2];
+                    } else if (size == front[runner].length) {
+                        front[runner] = Arrays.copyOf(front[runner], size * 2);
+                    }
+                    front[runner][frontSize[runner]++] = b;
+                }
+            }
+        }
+        frontiers = new int[n][];
+        for (int b = 0; b < n; b++) {
+            frontiers[b] = front[b] == null ? new int[0] : Arrays.copyOf(front[b], frontSize[b]);
+        }
+    }
+
+    // nearest common dominator, going up from whichever is later in the order
+    private int intersect (int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = idom[a];
+            }
+            while (b > a) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    public int size () {
+        return blocks.length;
+    }
+
+    public BasicBlock block (int b) {
+        return blocks[b];
+    }
+
+    // the start has itself
+    public int immediateDominator (int b) {
+        return idom[b];
+    }
+
+    public int[] children (int b) {
+        return children[b];
+    }
+
+    public int[] predecessors (int b) {
+        return preds[b];
+    }
+
+    public int[] frontier (int b) {
+        return frontiers[b];
+    }
+}
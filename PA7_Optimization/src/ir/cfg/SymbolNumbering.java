@@ -0,0 +1,50 @@
+package ir.cfg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import coco.Symbol;
+
+// Dense numbers for the symbols used in one CFG, so that sets of them can be bitsets
+// A symbol is numbered when first asked for and keeps its number
+public final class SymbolNumbering {
+
+    private int[] numbers = new int[64];    // number + 1 of each symbol by Symbol.id, 0 if not numbered
+    private Symbol[] symbols = new Symbol[16];
+    private int size;
+
+    // number of symbols numbered
+    public int size () {
+        return size;
+    }
+
+    public Symbol symbol (int number) {
+        return symbols[number];
+    }
+
+    public int number (Symbol sym) {
+        int id = sym.id();
+        if (id >= numbers.length) {
+            numbers = Arrays.copyOf(numbers, Math.max(id + 1, numbers.length * 2));
+        }
+        if (numbers[id] == 0) {
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+            }
+            symbols[size] = sym;
+            numbers[id] = ++size;
+        }
+        return numbers[id] - 1;
+    }
+
+    // Adds to set the symbols of other, a set numbered by from
+    public void addAll (BitSet set, SymbolNumbering from, BitSet other) {
+        if (from == this) {
+            set.or(other);
+            return;
+        }
+        for (int i = other.nextSetBit(0); i >= 0; i = other.nextSetBit(i + 1)) {
+            set.set(number(from.symbol(i)));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ir.dataflow;
+
+import ir.cfg.BasicBlock;
+
+// A dataflow problem over the blocks of one CFG, solved by WorklistSolver
+public interface DataflowAnalysis<F> {
+
+    public Direction direction ();
+
+    public Lattice<F> lattice ();
+
+    // What flows into a block from outside the CFG: into the start going forward,
+    // into the blocks without successors going backward
+    public default F boundary (BasicBlock block) {
+        return lattice().boundary();
+    }
+
+    // What flows out of the block given what flows into it, as a new fact unless nothing changes it
+    public F transfer (BasicBlock block, F in);
+}
@@ -0,0 +1,38 @@
+package ir.dataflow;
+
+import ir.cfg.BasicBlock;
+
+// The facts at the entry and exit of each block an analysis reached
+// Blocks are found by their position, so a result is only good until the CFG is ordered again
+public final class DataflowResult<F> {
+
+    private final BasicBlock[] blocks;
+    private final F[] entries;
+    private final F[] exits;
+
+    DataflowResult (BasicBlock[] blocks, F[] entries, F[] exits) {
+        this.blocks = blocks;
+        this.entries = entries;
+        this.exits = exits;
+    }
+
+    // Blocks reachable from the start, in reverse postorder
+    public BasicBlock[] blocks () {
+        return blocks;
+    }
+
+    // null if the block is not reachable
+    public F entry (BasicBlock block) {
+        return reached(block) ? entries[block.position()] : null;
+    }
+
+    // null if the block is not reachable
+    public F exit (BasicBlock block) {
+        return reached(block) ? exits[block.position()] : null;
+    }
+
+    public boolean reached (BasicBlock block) {
+        int p = block.position();
+        return p >= 0 && p < blocks.length && blocks[p] == block;
+    }
+}
@@ -0,0 +1,7 @@
+package ir.dataflow;
+
+// Which way facts flow through a CFG
+public enum Direction {
+    FORWARD,    // from the entry of a block to its exit, and on to its successors
+    BACKWARD    // from the exit of a block to its entry, and back to its predecessors
+}
@@ -0,0 +1,13 @@
+package ir.dataflow;
+
+// The facts an analysis computes, and how facts coming from different blocks are combined
+// Facts are never changed once made, so one fact can be shared by several blocks
+public interface Lattice<F> {
+
+    // What is known where nothing flows in: at the boundary of the CFG,
+    // and in a block none of whose neighbours has been computed yet
+    public F boundary ();
+
+    // What holds on both a and b, as a new fact
+    public F meet (F a, F b);
+}
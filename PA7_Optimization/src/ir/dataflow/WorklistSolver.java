@@ -0,0 +1,105 @@
+package ir.dataflow;
+
+import java.util.BitSet;
+import java.util.List;
+
+import ir.cfg.BasicBlock;
+import ir.cfg.CFG;
+import ir.cfg.Successor;
+
+// Solves a dataflow analysis over the blocks reachable from the start of a CFG
+// Blocks wait on a worklist taken in reverse postorder going forward and in postorder going backward,
+// so a block is mostly computed after what flows into it, and only the neighbours downstream of a
+// block whose facts changed are computed again
+// A neighbour not computed yet is left out of the meet, as if it allowed everything
+public final class WorklistSolver {
+
+    private WorklistSolver () {}
+
+    @SuppressWarnings("unchecked")
+    public static <F> DataflowResult<F> solve (CFG cfg, DataflowAnalysis<F> analysis) {
+        BasicBlock[] blocks = cfg.reversePostorder();
+        int n = blocks.length;
+        boolean forward = analysis.direction() == Direction.FORWARD;
+        Lattice<F> lattice = analysis.lattice();
+
+        F[] in = (F[]) new Object[n];   // flowing into each block, by position
+        F[] out = (F[]) new Object[n];  // flowing out of each block, null until computed
+
+        // Work goes by order: position going forward, from the last position going backward
+        BitSet pending = new BitSet(n);
+        pending.set(0, n);
+        int order = 0;
+        while ((order = next(pending, order)) >= 0) {
+            pending.clear(order);
+            int p = forward ? order : n - 1 - order;
+            BasicBlock block = blocks[p];
+
+            F value = null;
+            boolean boundary;
+            if (forward) {
+                for (BasicBlock pred : block.getPredecessors()) {
+                    value = meet(lattice, value, computedAt(blocks, out, pred));
+                }
+                boundary = block == cfg.start();
+            } else {
+                for (Successor s : block.getSuccessors()) {
+                    value = meet(lattice, value, computedAt(blocks, out, s.destination()));
+                }
+                boundary = block.getSuccessors().isEmpty();
+            }
+            if (boundary || value == null) {
+                value = meet(lattice, value, analysis.boundary(block));
+            }
+
+            F result = analysis.transfer(block, value);
+            boolean changed = !result.equals(out[p]);
+            in[p] = value;
+            out[p] = result;
+
+            if (changed) {
+                if (forward) {
+                    for (Successor s : block.getSuccessors()) {
+                        int q = position(blocks, s.destination());
+                        if (q >= 0) {
+                            pending.set(q);
+                        }
+                    }
+                } else {
+                    for (BasicBlock pred : block.getPredecessors()) {
+                        int q = position(blocks, pred);
+                        if (q >= 0) {
+                            pending.set(n - 1 - q);
+                        }
+                    }
+                }
+            }
+        }
+
+        return forward ? new DataflowResult<F>(blocks, in, out) : new DataflowResult<F>(blocks, out, in);
+    }
+
+    // The next pending block at or after order, wrapping around to the first
+    private static int next (BitSet pending, int order) {
+        int next = pending.nextSetBit(order);
+        return next >= 0 ? next : pending.nextSetBit(0);
+    }
+
+    private static <F> F meet (Lattice<F> lattice, F value, F other) {
+        if (other == null) {
+            return value;
+        }
+        return value == null ? other : lattice.meet(value, other);
+    }
+
+    // what has flowed out of the block, null if it is not computed yet or not reachable
+    private static <F> F computedAt (BasicBlock[] blocks, F[] out, BasicBlock block) {
+        int p = position(blocks, block);
+        return p >= 0 ? out[p] : null;
+    }
+
+    private static int position (BasicBlock[] blocks, BasicBlock block) {
+        int p = block.position();
+        return p >= 0 && p < blocks.length && blocks[p] == block ? p : -1;
+    }
+}
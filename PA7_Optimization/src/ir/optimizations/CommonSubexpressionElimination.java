@@ -1,226 +1,375 @@
 package ir.optimizations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
-import ir.cfg.BasicBlock;
-import ir.cfg.CFGVisitor;
-import ir.cfg.Successor;
-import ir.tac.*;
+import ir.SSA;
 import ir.cfg.CFG;
+import ir.cfg.DominatorTree;
+import ir.tac.*;
+
+// Global common subexpression elimination by hash based value numbering over the SSA form of a CFG
+// Walking the dominator tree, each name gets the number of the value it holds, and an expression
+// over value numbers is looked up among those computed in the blocks dominating it
+// An expression computed again becomes a move from the name holding it, or when that name no
+// longer reaches it, from a new temporary the first computation is renamed to
+// Loads are numbered with the state of memory, which stores and calls change, carried only into
+// a block entered from its immediate dominator alone
+// An ADDA is only numbered, the code generator folds it into the load or store right after it
+public class CommonSubexpressionElimination implements TACVisitor, SSAForm.Walker {
+
+    private enum Operator {
+        ADD,
+        ADDA,
+        AND,
+        CMP,
+        DIV,
+        LSH,
+        MOD,
+        MUL,
+        OR,
+        POW,
+        SUB,
+        XOR,
+        LOAD
+    }
+
+    // An operator over value numbers, commutative ones with the lower first
+    private static final class Expression {
+        private final Operator op;
+        private final int left;
+        private final int right;    // for a load, the state of memory
+
+        private Expression (Operator op, int left, int right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            if (!(o instanceof Expression)) {
+                return false;
+            }
+            Expression other = (Expression) o;
+            return op == other.op && left == other.left && right == other.right;
+        }
+
+        @Override
+        public int hashCode () {
+            return (op.ordinal() * 31 + left) * 31 + right;
+        }
+    }
+
+    // The instruction computing an expression first among those dominating the walk
+    private static final class Available {
+        private final TAC tac;
+        private final int name;     // it defines
+        private final int value;
+        private Variable holder;    // the temporary it was renamed to, null if not
+
+        private Available (TAC tac, int name, int value) {
+            this.tac = tac;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private static final int GDB_VALUE = 0;
+    private static final int SP_VALUE = 1;
+
+    private final SSA program;
+    private SSAForm ssa;
+    private DominatorTree dom;
+
+    // by name, -1 until known
+    private int[] values;
+    private int numValues;
+    private HashMap<Integer, Integer> literalValues;
+    private HashMap<Expression, Integer> addressValues;
 
-public class CommonSubexpressionElimination implements TACVisitor, CFGVisitor {
+    // expressions of the blocks being walked, with the entries they replaced to put back on leaving
+    private HashMap<Expression, Available> available;
+    private List<Expression> undoKeys;
+    private List<Available> undoEntries;
+    private int[] marks;            // by block, undoKeys.size() on entering
 
-    boolean noChanges;
-    HashMap<Variable, Assign> availableExpr = new HashMap<Variable, Assign> ();
+    private int block;
+    private int[] memory;           // by block, state of memory at the end of what was walked
+    private int numMemoryStates;
+
+    private TAC replacement;
+    private int numReplaced;
+
+    // New temporaries are made by the program
+    public CommonSubexpressionElimination (SSA program) {
+        this.program = program;
+    }
 
     public boolean optimize (CFG cfg) {
-        int attempts = 0;
-        do {
-            attempts++;
-            noChanges = true;
-            cfg.start().accept(this);
-        } while (!noChanges);
-
-        return attempts > 1;
-    }
-
-    public void updateVars(Assign instr) {
-        if (availableExpr.containsValue(instr)) {
-            for (Map.Entry<Variable,Assign> entry : availableExpr.entrySet()) {
-                if (entry.getValue().equals(instr)) {
-                    // ???
-                }
-            }
+        // Calls define the globals their functions assign
+        new ReassignedSetGenerator().generate(cfg);
+        ssa = new SSAForm(cfg);
+        dom = ssa.dominatorTree();
+
+        values = new int[ssa.size()];
+        Arrays.fill(values, -1);
+        numValues = SP_VALUE + 1;
+        literalValues = new HashMap<Integer, Integer>();
+        addressValues = new HashMap<Expression, Integer>();
+        available = new HashMap<Expression, Available>();
+        undoKeys = new ArrayList<Expression>();
+        undoEntries = new ArrayList<Available>();
+        marks = new int[dom.size()];
+        memory = new int[dom.size()];
+        numMemoryStates = 0;
+        numReplaced = 0;
+
+        ssa.walk(this);
+        ssa.destroy();
+
+        ssa = null;
+        dom = null;
+        values = null;
+        literalValues = null;
+        addressValues = null;
+        available = null;
+        return numReplaced > 0;
+    }
+
+    @Override
+    public void enter (int b) {
+        block = b;
+        marks[b] = undoKeys.size();
+        int[] preds = dom.predecessors(b);
+        if (b != 0 && preds.length == 1 && preds[0] == dom.immediateDominator(b)) {
+            memory[b] = memory[preds[0]];
+        } else {
+            memory[b] = numMemoryStates++;
         }
     }
 
     @Override
-    public void visit(BasicBlock block) {
-        for (TAC tac : block) {
-            if (!tac.isEliminated()) {
-                tac.accept(this);
+    public TAC instruction (TAC tac) {
+        replacement = tac;
+        // Phis and what does not run get values of their own when used
+        if (!(tac instanceof Phi) && !tac.isEliminated()) {
+            tac.accept(this);
+        }
+        return replacement;
+    }
+
+    @Override
+    public void leave (int b) {
+        for (int i = undoKeys.size() - 1; i >= marks[b]; i--) {
+            Expression key = undoKeys.remove(i);
+            Available previous = undoEntries.remove(i);
+            if (previous == null) {
+                available.remove(key);
+            } else {
+                available.put(key, previous);
             }
         }
+    }
+
+    // Values =================================================================
 
-        // Visit connected blocks
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
+    private int valueOf (Value v) {
+        if (v instanceof Literal) {
+            return literalValues.computeIfAbsent(((Literal) v).value(), k -> numValues++);
+        }
+        if (v instanceof Gdb) {
+            return GDB_VALUE;
+        }
+        if (v instanceof Sp) {
+            return SP_VALUE;
+        }
+        int name = ((Variable) v).version();
+        if (name < 0) {
+            return numValues++;
+        }
+        if (values[name] < 0) {
+            values[name] = numValues++;
         }
+        return values[name];
     }
 
+    private void number (Assign instr, Operator op, boolean commutative) {
+        int left = valueOf(instr.leftOperand());
+        int right = valueOf(instr.rightOperand());
+        if (commutative && left > right) {
+            int swap = left;
+            left = right;
+            right = swap;
+        }
+        values[instr.destination().version()] = lookup(instr, instr.destination(), new Expression(op, left, right));
+    }
+
+    // Value of the expression computed by the instruction, replacing it if it is available
+    private int lookup (TAC tac, Variable dest, Expression key) {
+        Available found = available.get(key);
+        if (found != null) {
+            Variable holder = holder(found);
+            if (holder != null) {
+                replacement = new Move(tac.getID(), dest, holder);
+                numReplaced++;
+                return found.value;
+            }
+        }
+
+        // Later computations in the blocks dominated are replaced by this one
+        Available entry = new Available(tac, dest.version(), numValues++);
+        undoKeys.add(key);
+        undoEntries.add(available.put(key, entry));
+        return entry.value;
+    }
+
+    // A variable holding the value where the walk is, null if there is none
+    private Variable holder (Available found) {
+        if (found.holder != null) {
+            return found.holder;
+        }
+
+        // Temporaries are reused by the next statement, and only used where the def-use chains say,
+        // so one is renamed the first time its value is, as the moves made from it are not in the chains
+        Variable dest = ssa.variable(found.name);
+        if (dest instanceof Temporary) {
+            Variable renamed = new Temporary(program.temporary(), found.tac.getID()).withVersion(found.name);
+            if (ssa.rename(found.name, renamed)) {
+                found.holder = renamed;
+                return renamed;
+            }
+            return null;
+        }
+        return ssa.isCurrent(found.name) ? dest : null;
+    }
+
+    // Expressions ============================================================
+
     @Override
     public void visit(Add instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.ADD, true);
     }
 
+    // Values of names are the same everywhere, so addresses need no scope
     @Override
     public void visit(Adda instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        Expression key = new Expression(Operator.ADDA, valueOf(instr.leftOperand()), valueOf(instr.rightOperand()));
+        values[instr.destination().version()] = addressValues.computeIfAbsent(key, k -> numValues++);
     }
 
     @Override
     public void visit(And instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.AND, true);
     }
 
     @Override
     public void visit(Cmp instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.CMP, false);
     }
 
     @Override
     public void visit(Div instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.DIV, false);
     }
 
     @Override
     public void visit(Lsh instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.LSH, false);
     }
 
     @Override
     public void visit(Mod instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.MOD, false);
     }
 
     @Override
     public void visit(Move instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        values[instr.destination().version()] = valueOf(instr.leftOperand());
     }
 
     @Override
     public void visit(Mul instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.MUL, true);
     }
 
     @Override
     public void visit(Or instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.OR, true);
     }
 
     @Override
     public void visit(Pow instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.POW, false);
     }
 
     @Override
     public void visit(Sub instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.SUB, false);
     }
 
     @Override
     public void visit(Xor instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+        number(instr, Operator.XOR, true);
     }
 
+    // Memory =================================================================
+
     @Override
-    public void visit(Beq instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+    public void visit(Load instr) {
+        Expression key = new Expression(Operator.LOAD, valueOf(instr.location()), memory[block]);
+        values[instr.destination().version()] = lookup(instr, instr.destination(), key);
     }
 
     @Override
-    public void visit(Bge instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+    public void visit(Store instr) {
+        memory[block] = numMemoryStates++;
     }
 
+    // The function may store to any array
     @Override
-    public void visit(Bgt instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
+    public void visit(Call instr) {
+        memory[block] = numMemoryStates++;
     }
 
     @Override
-    public void visit(Ble instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Beq instr) {}
 
     @Override
-    public void visit(Blt instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Bge instr) {}
 
     @Override
-    public void visit(Bne instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Bgt instr) {}
 
     @Override
-    public void visit(Bra instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Ble instr) {}
 
     @Override
-    public void visit(Call instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Blt instr) {}
 
     @Override
-    public void visit(Return instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Bne instr) {}
 
     @Override
-    public void visit(Load instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Bra instr) {}
 
     @Override
-    public void visit(Store instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Return instr) {}
 
     @Override
-    public void visit(Read instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Read instr) {}
 
     @Override
-    public void visit(ReadB instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(ReadB instr) {}
 
     @Override
-    public void visit(Write instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(Write instr) {}
 
     @Override
-    public void visit(WriteB instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
+    public void visit(WriteB instr) {}
 
     @Override
-    public void visit(WriteNL instr) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'visit'");
-    }
-    
+    public void visit(WriteNL instr) {}
 }
@@ -6,43 +6,56 @@ import java.util.ArrayList;
 
 import ir.cfg.CFG;
 import ir.cfg.BasicBlock;
-import ir.cfg.CFGVisitor;
 import ir.cfg.Successor;
 import ast.IntegerLiteral;
 import ir.tac.*;
 import ir.tac.Jump.JumpType;
 
-public class ConstantFolding implements TACVisitor, CFGVisitor {
+public class ConstantFolding implements TACVisitor {
 
     private boolean noChanges;
     private BasicBlock currBlock;
     private int currIdx;
     private List<BasicBlock> makeUnconditionalJump = new ArrayList<BasicBlock>();
    
+    // Folding is local to an instruction, so one pass over the blocks finds everything there is
     public boolean optimize(CFG cfg) {
-        int attempts = 0;
-        do {
-            attempts++;
-            noChanges = true;
-            cfg.start().accept(this);
-
-            // Fix repeat jumps
-            for (BasicBlock bb : makeUnconditionalJump) {
-                List<TAC> bbInstr = bb.getInstructions();
-
-                if (bbInstr.get(bbInstr.size() - 1) instanceof Jump) {
-                    Jump instr = (Jump) bbInstr.get(bbInstr.size() - 1);
-                    bbInstr.add(new Bra(instr.getID(), instr.jumpDestination()));
-                } else {
-                    // TODO: Remove if this is proven to not be possible
-                    System.err.println("LAST INSTRUCTION OF BLOCK " + bb.blockNumber() + " IS NOT JUMP");
+        noChanges = true;
+        BasicBlock[] blocks = cfg.reversePostorder();
+        boolean[] reached = new boolean[blocks.length];
+        reached[0] = true;
+
+        for (BasicBlock block : blocks) {
+            // Skip blocks cut off by a jump folded before them
+            if (!reached[block.position()]) {
+                continue;
+            }
+            fold(block);
+
+            for (Successor s : block.getSuccessors()) {
+                BasicBlock next = s.destination();
+                if (next.position() < blocks.length && blocks[next.position()] == next) {
+                    reached[next.position()] = true;
                 }
             }
+        }
 
-            makeUnconditionalJump.clear();
-        } while (!noChanges);
+        // Fix repeat jumps
+        for (BasicBlock bb : makeUnconditionalJump) {
+            List<TAC> bbInstr = bb.getInstructions();
 
-        return attempts > 1;
+            if (bbInstr.get(bbInstr.size() - 1) instanceof Jump) {
+                Jump instr = (Jump) bbInstr.get(bbInstr.size() - 1);
+                bbInstr.add(new Bra(instr.getID(), instr.jumpDestination()));
+            } else {
+                // TODO: Remove if this is proven to not be possible
+                System.err.println("LAST INSTRUCTION OF BLOCK " + bb.blockNumber() + " IS NOT JUMP");
+            }
+        }
+
+        makeUnconditionalJump.clear();
+
+        return !noChanges;
     }
 
     private void foldAssign(int id, Variable destination, Value source) {
@@ -276,13 +289,21 @@ public class ConstantFolding implements TACVisitor, CFGVisitor {
     }
 
     private BasicBlock findFirstIntersect(BasicBlock curr, HashSet<BasicBlock> reached) {
+        return findFirstIntersect(curr, reached, new HashSet<BasicBlock>());
+    }
+
+    // visited keeps a loop in the path from being followed forever
+    private BasicBlock findFirstIntersect(BasicBlock curr, HashSet<BasicBlock> reached, HashSet<BasicBlock> visited) {
         if (reached.contains(curr)) {
             return curr;
         }
+        if (!visited.add(curr)) {
+            return null;
+        }
         
         for (Successor s : curr.getSuccessors()) {
             BasicBlock ret;
-            if ((ret = findFirstIntersect(s.destination(), reached)) != null) {
+            if ((ret = findFirstIntersect(s.destination(), reached, visited)) != null) {
                 return ret;
             }
         }
@@ -290,8 +311,7 @@ public class ConstantFolding implements TACVisitor, CFGVisitor {
         return null;
     }
 
-    @Override
-    public void visit(BasicBlock block) {
+    private void fold(BasicBlock block) {
         currBlock = block;
 
         // Go through each instruction in the basic block
@@ -302,11 +322,6 @@ public class ConstantFolding implements TACVisitor, CFGVisitor {
             }
             currIdx++;
         }
-
-        // Visit connected blocks
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
-        }
     }
 
     @Override
@@ -349,13 +364,10 @@ public class ConstantFolding implements TACVisitor, CFGVisitor {
             int lVal = ((Literal) instr.leftOperand()).value();
 
             // x = 0 and y => x = 0
+            // and 1 is kept, it turns a -1/0/1 comparison into a bool
             if (lVal == 0) {
                 Literal result = new Literal(new IntegerLiteral(0));
                 foldAssign(instr.getID(), instr.destination(), result);
-            } 
-            // x = 1 and y => x = y 
-            else if (lVal == 1) {
-                foldAssign(instr.getID(), instr.destination(), instr.rightOperand());
             }
         } else if (instr.rightOperand() instanceof Literal) {
             int rVal = ((Literal) instr.rightOperand()).value();
@@ -364,10 +376,6 @@ public class ConstantFolding implements TACVisitor, CFGVisitor {
             if (rVal == 0) {
                 foldAssign(instr.getID(), instr.destination(), instr.rightOperand());
             }
-            // x = y and 1 => x = y
-            else if (rVal == 1) {
-                foldAssign(instr.getID(), instr.destination(), instr.leftOperand());
-            }
         }
     }
 
@@ -426,10 +434,11 @@ public class ConstantFolding implements TACVisitor, CFGVisitor {
             int rVal = ((Literal) instr.rightOperand()).value();
             Literal result;
 
+            // Same as DLX LSH: a negative amount shifts right
             if (rVal >= 0) {
-                result = new Literal(new IntegerLiteral(lVal >>> rVal));
-            } else {
                 result = new Literal(new IntegerLiteral(lVal << rVal));
+            } else {
+                result = new Literal(new IntegerLiteral(lVal >>> -rVal));
             }
 
             foldAssign(instr.getID(), instr.destination(), result);
@@ -1,45 +1,44 @@
 package ir.optimizations;
 
+import java.util.BitSet;
 import java.util.List;
-import java.util.HashSet;
 
 import coco.Symbol;
 import ir.cfg.BasicBlock;
 import ir.cfg.CFG;
-import ir.cfg.Successor;
-import ir.cfg.CFGVisitor;
+import ir.cfg.SymbolNumbering;
+import ir.dataflow.DataflowResult;
 import ir.tac.*;
 import types.ArrayType;
 
-public class DeadCodeElimination implements CFGVisitor {
+public class DeadCodeElimination {
 
     private boolean noChanges;
+    private SymbolNumbering numbering;
+    private BitSet callVars;
 
     public boolean optimize (CFG cfg, List<Symbol> globalSymbols) {
         int attempts = 0;
         LiveVarsGenerator liveVarGen = new LiveVarsGenerator();
+        numbering = cfg.numbering();
+        callVars = LiveVarsGenerator.scalars(numbering, globalSymbols);
 
         do {
             attempts++;
             noChanges = true;
-            liveVarGen.generate(cfg, globalSymbols);
-            cfg.start().accept(this);
+            DataflowResult<BitSet> live = liveVarGen.generate(cfg, globalSymbols);
+            for (BasicBlock block : live.blocks()) {
+                eliminate(block);
+            }
             cfg.resetLiveSet();
         } while (!noChanges);
 
         return attempts > 1;
     }
 
-    @Override
-    public void visit(BasicBlock block) {
-        // Evaluate leaf nodes first
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
-        }
-
+    private void eliminate(BasicBlock block) {
         // Get live vars starting at exit
-        HashSet<Symbol> currLive = new HashSet<Symbol>();
-        currLive.addAll(block.getExitLiveSet());
+        BitSet currLive = (BitSet) block.getExitLiveSet().clone();
         List<TAC> blockInstr = block.getInstructions();
 
         // Iterate backwards through block instructions
@@ -65,22 +64,22 @@ public class DeadCodeElimination implements CFGVisitor {
                 if (aTac instanceof Move && aTac.destination().equals(aTac.leftOperand())) {
                     aTac.eliminate();
                     noChanges = false;
-                } else if (!currLive.contains(aTac.destination().symbol())) {
+                } else if (!currLive.get(numbering.number(aTac.destination().symbol()))) {
                     tac.eliminate();
                     noChanges = false;
                 } else {
-                    currLive.remove(aTac.destination().symbol());
+                    currLive.clear(numbering.number(aTac.destination().symbol()));
                     // If not eliminated, then any used variables are live
                     if (aTac.leftOperand() instanceof Variable) {
                         Variable lVar = (Variable) aTac.leftOperand();
-                        currLive.add(lVar.symbol());
+                        currLive.set(numbering.number(lVar.symbol()));
                     }
                     if (!(aTac instanceof Move) && aTac.rightOperand() instanceof Variable) {
                         Variable rVar = (Variable) aTac.rightOperand();
 
                         // Don't count arrays since they live in memory
                         if (!(rVar.symbol().type() instanceof ArrayType)) {
-                            currLive.add(rVar.symbol());
+                            currLive.set(numbering.number(rVar.symbol()));
                         }
                     }
                 }
@@ -90,7 +89,7 @@ public class DeadCodeElimination implements CFGVisitor {
                 // If used in comparison, is live
                 if (jTac.comparison() instanceof Variable) {
                     Variable compVar = (Variable) jTac.comparison();
-                    currLive.add(compVar.symbol());
+                    currLive.set(numbering.number(compVar.symbol()));
                 }
             } else if (tac instanceof Call) {
                 Call cTac = (Call) tac;
@@ -98,27 +97,32 @@ public class DeadCodeElimination implements CFGVisitor {
 
                 // If reassigned, it is no longer live
                 if (cTac.destination() != null) {
-                    currLive.remove(cTac.destination().symbol());
+                    currLive.clear(numbering.number(cTac.destination().symbol()));
                 }
 
                 for (Value arg : args) {
                     // If used as arg, is live
                     if (arg instanceof Variable) {
                         Variable argVar = (Variable) arg;
-                        currLive.add(argVar.symbol());
+                        currLive.set(numbering.number(argVar.symbol()));
                     }
                 }
 
+                // Globals the function may read are live
+                currLive.or(callVars);
+
                 // Check if any variables in the function call are live
-                HashSet<Symbol> funcLiveSet = cTac.functionCFG().start().getEntryLiveSet();
-                currLive.addAll(funcLiveSet);
+                BasicBlock funcStart = cTac.functionCFG().start();
+                if (funcStart.liveSetComputed()) {
+                    numbering.addAll(currLive, cTac.functionCFG().numbering(), funcStart.getEntryLiveSet());
+                }
             } else if (tac instanceof Return) {
                 Return rTac = (Return) tac;
 
                 // If returned, is live
                 if (rTac.returnValue() instanceof Variable) {
                     Variable retVar = (Variable) rTac.returnValue();
-                    currLive.add(retVar.symbol());
+                    currLive.set(numbering.number(retVar.symbol()));
                 }
             } else if (tac instanceof Store) {
                 Store sTac = (Store) tac;
@@ -126,28 +130,28 @@ public class DeadCodeElimination implements CFGVisitor {
                 // If stored, is live
                 if (sTac.value() instanceof Variable) {
                     Variable storeVar = (Variable) sTac.value();
-                    currLive.add(storeVar.symbol());
+                    currLive.set(numbering.number(storeVar.symbol()));
                 }
 
                 // Location is also live
-                currLive.add(sTac.location().symbol());
+                currLive.set(numbering.number(sTac.location().symbol()));
             } else if (tac instanceof Print) {
                 Print pTac = (Print) tac;
 
                 // If printed, is live
                 if (pTac.argument() instanceof Variable) {
                     Variable argVar = (Variable) pTac.argument();
-                    currLive.add(argVar.symbol());
+                    currLive.set(numbering.number(argVar.symbol()));
                 }
             } else if (tac instanceof Input) {
                 Input iTac = (Input) tac;
 
                 // If read into, no longer live
-                currLive.remove(iTac.destination().symbol());
+                currLive.clear(numbering.number(iTac.destination().symbol()));
             } else if (tac instanceof Load) {
                 Load lTac = (Load) tac;
-                currLive.remove(lTac.destination().symbol());
-                currLive.add(lTac.location().symbol());
+                currLive.clear(numbering.number(lTac.destination().symbol()));
+                currLive.set(numbering.number(lTac.location().symbol()));
             }
         }
     } 
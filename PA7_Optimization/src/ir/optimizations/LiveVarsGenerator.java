@@ -1,114 +1,118 @@
 package ir.optimizations;
 
+import java.util.BitSet;
 import java.util.List;
-import java.util.HashSet;
 
 import coco.Symbol;
 import coco.SymbolTable;
 import ir.cfg.BasicBlock;
 import ir.cfg.CFG;
-import ir.cfg.CFGVisitor;
-import ir.cfg.Successor;
+import ir.cfg.SymbolNumbering;
+import ir.dataflow.DataflowAnalysis;
+import ir.dataflow.DataflowResult;
+import ir.dataflow.Direction;
+import ir.dataflow.Lattice;
+import ir.dataflow.WorklistSolver;
 import ir.tac.*;
 import types.ArrayType;
 
-public class LiveVarsGenerator implements CFGVisitor {
+// Variables live at the entry and exit of each block, left in the block's live sets
+// as bitsets over the numbering of the CFG
+public class LiveVarsGenerator implements DataflowAnalysis<BitSet>, Lattice<BitSet> {
 
-    private boolean noChanges;
     private boolean noFunc;
-    private List<Symbol> globalVars;
+    private BitSet globalVars;
+    private BitSet callVars;
     private CFG currCFG;
+    private SymbolNumbering numbering;
+    private boolean callsItself;
 
-    public void generate(CFG cfg) {
-        // Run until no more changes
-        this.noFunc = false;
-        this.globalVars = null;
-        this.currCFG = cfg;
-        do {
-            noChanges = true;
-            cfg.start().accept(this);
-            cfg.resetVisited();
-        } while (!noChanges);
+    public DataflowResult<BitSet> generate(CFG cfg) {
+        return generate(cfg, null, null, false);
     }
     
-    public void generate(CFG cfg, List<Symbol> globalSymbols) {
-        // Run until no more changes
-        this.noFunc = false;
-        this.globalVars = globalSymbols;
-        this.currCFG = cfg;
-        do {
-            noChanges = true;
-            cfg.start().accept(this);
-            cfg.resetVisited();
-        } while (!noChanges);
+    public DataflowResult<BitSet> generate(CFG cfg, List<Symbol> globalSymbols) {
+        return generate(cfg, globalSymbols, globalSymbols, false);
     }
 
-    public void generate(CFG cfg, List<Symbol> globalSymbols, boolean noFunc) {
-        // Run until no more changes
+    // globalSymbols are live at the exit of a function, and the scalars of callSymbols at every call
+    public DataflowResult<BitSet> generate(CFG cfg, List<Symbol> globalSymbols, List<Symbol> callSymbols, boolean noFunc) {
         this.noFunc = noFunc;
-        this.globalVars = globalSymbols;
         this.currCFG = cfg;
+        this.numbering = cfg.numbering();
+        this.globalVars = null;
+        if (globalSymbols != null) {
+            globalVars = new BitSet();
+            for (Symbol s : globalSymbols) {
+                globalVars.set(numbering.number(s));
+            }
+        }
+        this.callVars = callSymbols != null ? scalars(numbering, callSymbols) : null;
+
+        // A call of the function itself makes live what is live at its start, only known once solved
+        DataflowResult<BitSet> live;
+        BitSet startLive;
         do {
-            noChanges = true;
-            cfg.start().accept(this);
-            cfg.resetVisited();
-        } while (!noChanges);
+            callsItself = false;
+            startLive = cfg.start().getEntryLiveSet();
+            live = WorklistSolver.solve(cfg, this);
+
+            for (BasicBlock block : live.blocks()) {
+                block.setLiveSets(live.entry(block), live.exit(block));
+            }
+        } while (callsItself && !cfg.start().getEntryLiveSet().equals(startLive));
+
+        return live;
     }
 
-    @Override
-    public void visit(BasicBlock block) {
-        // Make sure to evaluate leafs first
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
+    // A called function reads globals from the registers of its caller, so whether or not it uses
+    // them, they are live at the call
+    public static BitSet scalars(SymbolNumbering numbering, List<Symbol> symbols) {
+        BitSet set = new BitSet();
+        for (Symbol s : symbols) {
+            if (!(s.type() instanceof ArrayType)) {
+                set.set(numbering.number(s));
+            }
         }
+        return set;
+    }
 
-        // Shallow copy of exit vars list
-        HashSet<Symbol> exitSet = block.getExitLiveSet();
-        HashSet<Symbol> tempSet;
-
-        // If exit set uninitialized, clear it
-        if (exitSet.contains(BasicBlock.unitializedSymbol)) {
-            exitSet.clear();
-            noChanges = false;
-            tempSet = exitSet;
-        } else {
-            tempSet = new HashSet<Symbol>();
-        }
+    @Override
+    public Direction direction() {
+        return Direction.BACKWARD;
+    }
 
+    @Override
+    public Lattice<BitSet> lattice() {
+        return this;
+    }
+
+    @Override
+    public BitSet boundary() {
+        return new BitSet();
+    }
+
+    // Live on any successor
+    @Override
+    public BitSet meet(BitSet a, BitSet b) {
+        BitSet union = (BitSet) a.clone();
+        union.or(b);
+        return union;
+    }
+
+    @Override
+    public BitSet boundary(BasicBlock block) {
         // Leaf node, exit set should have globals (non-main)
         if (globalVars != null && currCFG.function() != SymbolTable.mainSymbol && block.getSuccessors().isEmpty()) {
-            // System.out.println("ADDING");
-            tempSet.addAll(globalVars);
-        } else {
-            // Build exit set; get union of successors
-            for (Successor s : block.getSuccessors()) {
-                HashSet<Symbol> otherEntrySet = s.destination().getEntryLiveSet();
-
-                // Only add successor data if initialized
-                if (!otherEntrySet.contains(BasicBlock.unitializedSymbol)) {
-                    // Add all data
-                    tempSet.addAll(otherEntrySet);
-                }
-            }
-        }
-
-        // Check if new set is different from old set
-        if (!tempSet.equals(exitSet)) {
-            exitSet.clear();
-            exitSet.addAll(tempSet);
-            noChanges = false;
+            return globalVars;
         }
+        return boundary();
+    }
 
+    @Override
+    public BitSet transfer(BasicBlock block, BitSet exitSet) {
         // Build entry set starting from exit set
-        HashSet<Symbol> entrySet = block.getEntryLiveSet();
-        entrySet.clear();
-        entrySet.addAll(exitSet);
-
-        // System.out.println("EXIT LIVE SET FOR BLOCK " + block.blockNumber() + ":");
-        // for (Symbol s : entrySet) {
-        //     System.out.print(s.name() + " ");
-        // }  
-        // System.out.println();
+        BitSet entrySet = (BitSet) exitSet.clone();
 
         // Iterate backwards through block instructions
         List<TAC> blockInstr = block.getInstructions();
@@ -125,19 +129,19 @@ public class LiveVarsGenerator implements CFGVisitor {
                 Variable dest = aTac.destination();
 
                 // If reassigned, it is no longer live
-                entrySet.remove(dest.symbol());
+                entrySet.clear(numbering.number(dest.symbol()));
 
                 // If operand, it is now live
                 if (aTac.leftOperand() instanceof Variable) {
                     Variable lVar = (Variable) aTac.leftOperand();
-                    entrySet.add(lVar.symbol());
+                    entrySet.set(numbering.number(lVar.symbol()));
                 }
                 if (!(aTac instanceof Move) && aTac.rightOperand() instanceof Variable) {
                     Variable rVar = (Variable) aTac.rightOperand();
 
                     // Don't count arrays since they live in memory
                     if (!(rVar.symbol().type() instanceof ArrayType)) {
-                        entrySet.add(rVar.symbol());
+                        entrySet.set(numbering.number(rVar.symbol()));
                     }
                 }
             } else if (tac instanceof Jump) {
@@ -146,7 +150,7 @@ public class LiveVarsGenerator implements CFGVisitor {
                 // If used in comparison, is live
                 if (jTac.comparison() instanceof Variable) {
                     Variable compVar = (Variable) jTac.comparison();
-                    entrySet.add(compVar.symbol());
+                    entrySet.set(numbering.number(compVar.symbol()));
                 }
             } else if (tac instanceof Call) {
                 Call cTac = (Call) tac;
@@ -154,22 +158,28 @@ public class LiveVarsGenerator implements CFGVisitor {
 
                 // If reassigned, it is no longer live
                 if (cTac.destination() != null) {
-                    entrySet.remove(cTac.destination().symbol());
+                    entrySet.clear(numbering.number(cTac.destination().symbol()));
                 }
 
                 for (Value arg : args) {
                     // If used as arg, is live
                     if (arg instanceof Variable) {
                         Variable argVar = (Variable) arg;
-                        entrySet.add(argVar.symbol());
+                        entrySet.set(numbering.number(argVar.symbol()));
                     }
                 }
 
+                // Globals the function may read are live
+                if (callVars != null) {
+                    entrySet.or(callVars);
+                }
+
                 // Check if any variables in the function call are live
                 if (!noFunc) {
-                    HashSet<Symbol> funcLiveSet = cTac.functionCFG().start().getEntryLiveSet();
-                    if (!funcLiveSet.contains(BasicBlock.unitializedSymbol)) {
-                        entrySet.addAll(funcLiveSet);
+                    callsItself |= cTac.functionCFG() == currCFG;
+                    BasicBlock funcStart = cTac.functionCFG().start();
+                    if (funcStart.liveSetComputed()) {
+                        numbering.addAll(entrySet, cTac.functionCFG().numbering(), funcStart.getEntryLiveSet());
                     }
                 }
             } else if (tac instanceof Return) {
@@ -178,7 +188,7 @@ public class LiveVarsGenerator implements CFGVisitor {
                 // If returned, is live
                 if (rTac.returnValue() instanceof Variable) {
                     Variable retVar = (Variable) rTac.returnValue();
-                    entrySet.add(retVar.symbol());
+                    entrySet.set(numbering.number(retVar.symbol()));
                 }
             } else if (tac instanceof Store) {
                 Store sTac = (Store) tac;
@@ -186,33 +196,29 @@ public class LiveVarsGenerator implements CFGVisitor {
                 // If stored, is live
                 if (sTac.value() instanceof Variable) {
                     Variable storeVar = (Variable) sTac.value();
-                    entrySet.add(storeVar.symbol());
+                    entrySet.set(numbering.number(storeVar.symbol()));
                 }
 
                 // Location is also live
-                entrySet.add(sTac.location().symbol());
+                entrySet.set(numbering.number(sTac.location().symbol()));
             } else if (tac instanceof Print) {
                 Print pTac = (Print) tac;
 
                 // If printed, is live
                 if (pTac.argument() instanceof Variable) {
                     Variable argVar = (Variable) pTac.argument();
-                    entrySet.add(argVar.symbol());
+                    entrySet.set(numbering.number(argVar.symbol()));
                 }
             } else if (tac instanceof Input) {
                 Input iTac = (Input) tac;
-                entrySet.remove(iTac.destination().symbol());
+                entrySet.clear(numbering.number(iTac.destination().symbol()));
             } else if (tac instanceof Load) {
                 Load lTac = (Load) tac;
-                entrySet.remove(lTac.destination().symbol());
-                entrySet.add(lTac.location().symbol());
+                entrySet.clear(numbering.number(lTac.destination().symbol()));
+                entrySet.set(numbering.number(lTac.location().symbol()));
             }
         }
 
-        // System.out.println("ENTRY LIVE SET FOR BLOCK " + block.blockNumber() + ":");
-        // for (Symbol s : entrySet) {
-        //     System.out.print(s.name() + " ");
-        // }  
-        // System.out.println();
+        return entrySet;
     }
 }
@@ -1,43 +1,40 @@
 package ir.optimizations;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.ArrayList;
-
-import ir.cfg.BasicBlock;
-import ir.cfg.CFGVisitor;
-import ir.cfg.Successor;
+import java.util.Arrays;
+
 import ir.cfg.CFG;
 import ir.tac.*;
-import coco.Symbol;
 
-public class Propagation implements CFGVisitor {
+// Constant and copy propagation over the SSA form of a CFG
+// The value of each name is found by walking its def-use chains, optimistically so that
+// a variable given the same value around a loop keeps it, then each use is replaced by
+// the constant, or the copied variable still holding the value where it is used
+public class Propagation {
 
     public enum PropagationMode {
         CP,
         CPP
     }
 
-    private boolean noChanges;
     private PropagationMode mode;
+    private SSAForm ssa;
+
+    // by name: null until known, a Literal, or the Variable of the name whose value it holds
+    private Value[] values;
 
     private boolean optimize(CFG cfg, PropagationMode mode) {
-        int attempts = 0;
-        ValueSetGenerator constSetGen = new ValueSetGenerator();
-        ReassignedSetGenerator reassignSetGen = new ReassignedSetGenerator();
         this.mode = mode;
 
-        do {
-            attempts++;
-            noChanges = true;
-            reassignSetGen.generate(cfg);
-            constSetGen.generate(cfg);
-            cfg.start().accept(this);
-            cfg.resetValueSet();
-        } while (!noChanges);
+        // Calls define the globals their functions assign
+        new ReassignedSetGenerator().generate(cfg);
+        ssa = new SSAForm(cfg);
+        solve();
+        int replaced = ssa.rewriteUses(this::substitute);
+        ssa.destroy();
 
-        return attempts > 1;
+        ssa = null;
+        values = null;
+        return replaced > 0;
     }
 
     public boolean optimizeCP(CFG cfg) {
@@ -47,209 +44,136 @@ public class Propagation implements CFGVisitor {
     public boolean optimizeCPP(CFG cfg) {
         return optimize(cfg, PropagationMode.CPP);
     }
-   
-    @Override
-    public void visit(BasicBlock block) {
-        HashMap<Symbol, Value> currSet = new HashMap<Symbol, Value>();
-        currSet.putAll(block.getEntryValueSet());
-
-        // System.out.println("ENTRY SET FOR BLOCK " + block.blockNumber() + ":");
-        // for (Map.Entry<Symbol, Value> e : currSet.entrySet()) {
-        //     System.out.println("\t" + e.getKey() + ": " + e.getValue());
-        // }
-        // System.out.println();
-
-        // After getting the constant set for the block, determine if you can replace any operands
-        for (TAC tac : block) {
-            if (tac instanceof Assign) {
-                Assign aTac = (Assign) tac;
-
-                // Check if left operand can be replaced
-                if (aTac.leftOperand() instanceof Variable) {
-                    Symbol left = ((Variable) aTac.leftOperand()).symbol();
-                    if (currSet.containsKey(left)) {
-                        Value sub = currSet.get(left);
-
-                        if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                            aTac.setLeftOperand(sub);
-                            noChanges = false;
-                        }
-                    }
-                }
-
-                // Check if right operand can be replaced (Only if not Move)
-                if (!(tac instanceof Move) && aTac.rightOperand() instanceof Variable) {
-                    Symbol right = ((Variable) aTac.rightOperand()).symbol();
-                    if (currSet.containsKey(right)) {
-                        Value sub = currSet.get(right);
-
-                        if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                            aTac.setRightOperand(sub);
-                            noChanges = false;
-                        }
-                    }
-                }
-
-                // Log new constant or remove from set if changed
-                if (tac instanceof Move) {
-                    if (!(aTac.leftOperand() instanceof Temporary)) {
-                        currSet.put(aTac.destination().symbol(), aTac.leftOperand());
-                    }
-                } else {
-                    currSet.remove(aTac.destination().symbol());
-                }
-
-                // If changed, unregister any copies
-                ArrayList<Symbol> toRemove = new ArrayList<Symbol>();
 
-                for (Map.Entry<Symbol, Value> e : currSet.entrySet()) {
-                    if (e.getValue() instanceof Variable) {
-                        Variable eVar = (Variable) e.getValue();
-
-                        if (aTac.destination().symbol() == eVar.symbol()) {
-                            toRemove.add(e.getKey());
-                        }
-                    }
-                }
+    // Values of moves and phis from those of their operands, until none changes
+    private void solve() {
+        int size = ssa.size();
+        values = new Value[size];
+        int[] work = new int[size];
+        boolean[] queued = new boolean[size];
+        int numWork = 0;
+
+        for (int name = 0; name < size; name++) {
+            if (isCopy(ssa.definition(name))) {
+                work[numWork++] = name;
+                queued[name] = true;
+            } else {
+                values[name] = ssa.variable(name);
+            }
+        }
 
-                for (Symbol s : toRemove) {
-                    currSet.remove(s);
-                }
-            } else if (tac instanceof Jump) {
-                Jump jTac = (Jump) tac;
-                
-                // Check if comparison can be replaced
-                if (jTac.comparison() instanceof Variable) {
-                    Symbol comp = ((Variable) jTac.comparison()).symbol();
-                    if (currSet.containsKey(comp)) {
-                        Value sub = currSet.get(comp);
-
-                        if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                            jTac.setComparison(sub);
-                            noChanges = false;
-                        }
-                    }
-                }
-            } else if (tac instanceof Call) {
-                Call cTac = (Call) tac;
-
-                // Check if any parameters can be replaced
-                List<Value> args = cTac.arguments().values();
-                for (int i = 0; i < args.size(); i++) {
-                    if (args.get(i) instanceof Variable) {
-                        Symbol arg = ((Variable) args.get(i)).symbol();
-                        if (currSet.containsKey(arg)) {
-                            Value sub = currSet.get(arg);
-
-                            if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                                args.set(i, sub);
-                                noChanges = false;
-                            }
+        while (numWork > 0) {
+            int name = work[--numWork];
+            queued[name] = false;
+            Value value = evaluate(name);
+            if (same(value, values[name])) {
+                continue;
+            }
+            values[name] = value;
+
+            for (int use = ssa.firstUse(name); use >= 0; use = ssa.nextUse(use)) {
+                TAC user = ssa.user(use);
+                if (isCopy(user)) {
+                    int dest = destination(user).version();
+                    if (!queued[dest]) {
+                        if (numWork == work.length) {
+                            work = Arrays.copyOf(work, numWork * 2);
                         }
+                        work[numWork++] = dest;
+                        queued[dest] = true;
                     }
                 }
+            }
+        }
+    }
 
-                // Remove any variables the function changes
-                for (Symbol s : cTac.functionCFG().reassignedVariables()) {
-                    currSet.remove(s);
-                }
-
-                if (cTac.destination() != null) {
-                    currSet.remove(cTac.destination().symbol());
-
-                    // Need to remove any copies of this variable
-                    ArrayList<Symbol> toRemove = new ArrayList<Symbol>();
-
-                    for (Map.Entry<Symbol, Value> e : currSet.entrySet()) {
-                        if (e.getValue() instanceof Variable) {
-                            Variable eVar = (Variable) e.getValue();
+    private Value evaluate(int name) {
+        TAC def = ssa.definition(name);
+        Variable self = ssa.variable(name);
 
-                            if (cTac.destination().symbol() == eVar.symbol()) {
-                                toRemove.add(e.getKey());
-                            }
-                        }
-                    }
+        if (def instanceof Move) {
+            Value source = ((Move) def).leftOperand();
+            if (source instanceof Literal) {
+                return mode == PropagationMode.CP ? source : self;
+            }
+            // Temporaries are not kept alive past their instruction for a copy
+            if (source instanceof Temporary && mode == PropagationMode.CPP) {
+                return self;
+            }
+            Value value = values[((Variable) source).version()];
+            if (value == null) {
+                return null;
+            }
+            if (mode == PropagationMode.CP) {
+                return value instanceof Literal ? value : self;
+            }
+            return value;
+        }
 
-                    for (Symbol s : toRemove) {
-                        currSet.remove(s);
-                    }
-                }
-            } else if (tac instanceof Return) {
-                Return rTac = (Return) tac;
-
-                // Check if return can be replaced
-                if (rTac.returnValue() instanceof Variable) {
-                    Symbol val = ((Variable) rTac.returnValue()).symbol();
-                    if (currSet.containsKey(val)) {
-                        Value sub = currSet.get(val);
-
-                        if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                            rTac.setReturn(sub);
-                            noChanges = false;
-                        }
-                    }
-                }
-            } else if (tac instanceof Store) {
-                Store sTac = (Store) tac;
-                
-                // Check if value can be replaced
-                if (sTac.value() instanceof Variable) {
-                    Symbol val = ((Variable) sTac.value()).symbol();
-                    if (currSet.containsKey(val)) {
-                        Value sub = currSet.get(val);
-
-                        if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                            sTac.setValue(sub);
-                            noChanges = false;
-                        }
-                    }
-                }
-            } else if (tac instanceof Print) {
-                Print pTac = (Print) tac;
-
-                // Check if arg can be replaced
-                if (pTac.argument() instanceof Variable) {
-                    Symbol arg = ((Variable) pTac.argument()).symbol();
-                    if (currSet.containsKey(arg)) {
-                        Value sub = currSet.get(arg);
-
-                        if ((sub instanceof Literal && mode == PropagationMode.CP) || (sub instanceof Variable && mode == PropagationMode.CPP)) {    
-                            pTac.setArgument(sub);
-                            noChanges = false;
-                        }
-                    }
-                }
-            } else if (tac instanceof Input) {
-                Input iTac = (Input) tac;
+        // Same value on every edge, not counting the phi itself and what is not known yet
+        Value meet = null;
+        for (Value arg : ((Phi) def).arguments()) {
+            int argName = ((Variable) arg).version();
+            Value value = values[argName];
+            if (argName == name || value == null) {
+                continue;
+            }
+            if (meet == null) {
+                meet = value;
+            } else if (!same(meet, value)) {
+                return self;
+            }
+        }
+        return meet;
+    }
 
-                // Invalidate old value
-                currSet.remove(iTac.destination().symbol());
-            } else if (tac instanceof Load) {
-                Load lTac = (Load) tac;
+    private Value substitute(int name) {
+        Value value = values[name];
+        if (value == null) {
+            return null;
+        }
+        if (mode == PropagationMode.CP) {
+            return value instanceof Literal ? value : null;
+        }
 
-                currSet.remove(lTac.destination().symbol());
+        // The last name along the copies that still reaches this use
+        Variable sub = null;
+        for (int copied = copied(name); copied >= 0; copied = copied(copied)) {
+            if (ssa.isCurrent(copied)) {
+                sub = ssa.variable(copied);
+            }
+        }
+        return sub;
+    }
 
-                // Need to remove any copies of this variable
-                ArrayList<Symbol> toRemove = new ArrayList<Symbol>();
+    // The name a copy takes its value from, -1 if it is not one
+    private int copied(int name) {
+        TAC def = ssa.definition(name);
+        if (def instanceof Move) {
+            Value source = ((Move) def).leftOperand();
+            return source instanceof Variable && !(source instanceof Temporary) ? ((Variable) source).version() : -1;
+        }
+        if (def instanceof Phi && values[name] instanceof Variable && ((Variable) values[name]).version() != name) {
+            return ((Variable) values[name]).version();
+        }
+        return -1;
+    }
 
-                for (Map.Entry<Symbol, Value> e : currSet.entrySet()) {
-                    if (e.getValue() instanceof Variable) {
-                        Variable eVar = (Variable) e.getValue();
+    private static boolean isCopy(TAC tac) {
+        return tac instanceof Move || tac instanceof Phi;
+    }
 
-                        if (lTac.destination().symbol() == eVar.symbol()) {
-                            toRemove.add(e.getKey());
-                        }
-                    }
-                }
+    private static Variable destination(TAC tac) {
+        return tac instanceof Phi ? ((Phi) tac).destination() : ((Move) tac).destination();
+    }
 
-                for (Symbol s : toRemove) {
-                    currSet.remove(s);
-                }
-            }
+    private static boolean same(Value a, Value b) {
+        if (a instanceof Literal && b instanceof Literal) {
+            return ((Literal) a).value() == ((Literal) b).value();
         }
-
-        for (Successor s : block.getSuccessors()) {
-            s.destination().accept(this);
+        if (a instanceof Variable && b instanceof Variable) {
+            return ((Variable) a).version() == ((Variable) b).version();
         }
+        return a == b;
     }
 }
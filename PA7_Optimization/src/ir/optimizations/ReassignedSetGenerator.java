@@ -1,6 +1,9 @@
 package ir.optimizations;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 import ir.cfg.BasicBlock;
 import ir.cfg.CFG;
@@ -15,25 +18,42 @@ public class ReassignedSetGenerator implements CFGVisitor {
     private HashSet<CFG> funcCalls = null;
     private HashSet<Symbol> reassignedVars = null;
 
+    // Fills in the set of the function and of every function it calls, directly or not
     public void generate(CFG cfg) {
-        reassignedVars = cfg.reassignedVariables();
-        funcCalls = new HashSet<CFG>();
-        cfg.start().accept(this);
-        cfg.resetVisited();
-
-        // For any function calls, add their hashsets
-        HashSet<Symbol> oldSet = reassignedVars;
-        HashSet<CFG> oldCalls = funcCalls;
-
-        for (CFG funcCFG : oldCalls) {
-            generate(funcCFG);
-            
-            for (Symbol s : funcCFG.reassignedVariables()) {
-                oldSet.add(s);
+        // Find the functions reachable through calls, with what each assigns and calls itself
+        HashMap<CFG, HashSet<CFG>> calls = new HashMap<CFG, HashSet<CFG>>();
+        List<CFG> funcs = new ArrayList<CFG>();
+        calls.put(cfg, new HashSet<CFG>());
+        funcs.add(cfg);
+        for (int i = 0; i < funcs.size(); i++) {
+            CFG func = funcs.get(i);
+            reassignedVars = func.reassignedVariables();
+            funcCalls = calls.get(func);
+            for (BasicBlock block : func.preorder()) {
+                visit(block);
+            }
+
+            for (CFG callee : funcCalls) {
+                if (!calls.containsKey(callee)) {
+                    calls.put(callee, new HashSet<CFG>());
+                    funcs.add(callee);
+                }
             }
         }
 
+        // Add the sets of the callees until they stop growing, recursion makes cycles
+        boolean changed;
+        do {
+            changed = false;
+            for (CFG func : funcs) {
+                for (CFG callee : calls.get(func)) {
+                    changed |= func.reassignedVariables().addAll(callee.reassignedVariables());
+                }
+            }
+        } while (changed);
+
         reassignedVars = null;
+        funcCalls = null;
     }
 
     @Override
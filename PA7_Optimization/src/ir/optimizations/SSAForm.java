@@ -0,0 +1,608 @@
+package ir.optimizations;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import coco.Symbol;
+import ir.cfg.BasicBlock;
+import ir.cfg.CFG;
+import ir.cfg.DominatorTree;
+import ir.cfg.SymbolNumbering;
+import ir.tac.*;
+
+// A CFG in SSA form, each use of a variable tied to the one definition reaching it
+// Phis go on the iterated dominance frontiers of the definitions of a variable, and every
+// definition and use becomes a version of its variable, numbered densely as the names of the form
+// Only variables used in a block before being defined there, or copied, get phis (semi-pruned),
+// every use of the others is defined earlier in its block
+// The uses are the operands propagation rewrites and the locations of loads and stores, a call
+// also defines the globals its function assigns, and each variable has an entry name for its value
+// at the start
+// Phi arguments are never rewritten, so each phi stays over versions of one variable
+// and destroy() leaves SSA form by dropping the phis and the versions
+public final class SSAForm {
+
+    // Rewrites a use of a name, null keeps it
+    public interface UseRewriter {
+        Value rewrite(int name);
+    }
+
+    // Told of the blocks and instructions in a preorder of the dominator tree, see walk
+    public interface Walker {
+        void enter(int block);
+
+        // Before the names the instruction defines, returns what to put in its place,
+        // which must define the same names
+        TAC instruction(TAC tac);
+
+        // After the blocks it dominates
+        void leave(int block);
+    }
+
+    // What operands() does with each operand
+    private enum Pass {
+        NUMBER,
+        SCAN,
+        RENAME,
+        REWRITE,
+        WALK,
+        REPLACE,
+        DESTROY
+    }
+
+    private final DominatorTree dom;
+    private final SymbolNumbering numbering;
+    private Pass pass;
+    private int block;              // being scanned
+
+    // successors of each block with the index of the block among their predecessors
+    private final int[][] succs;
+    private final int[][] argIndices;
+
+    // by symbol number
+    private Variable[] variables = new Variable[16];    // an operand of the symbol
+    private int[] definedIn;                            // block + 1 of the last definition scanned
+    private int[] numDefBlocks;
+    private int[][] defBlocks;
+    private BitSet needPhis = new BitSet();
+    private int[] current;                              // name reaching the walk, -1 for the entry name
+    private int[] entryNames;                           // -1 until used
+
+    // by name
+    private int numNames;
+    private int[] nameSymbols = new int[64];
+    private TAC[] definitions = new TAC[64];            // null for entry names
+    private Variable[] nameVariables = new Variable[64];
+    private int[] firstUses = new int[64];
+
+    // def-use chains, linked through the uses
+    private int numUses;
+    private TAC[] users = new TAC[64];
+    private int[] nextUses = new int[64];
+
+    // changes to current[] in the walk, undone when it leaves a block
+    private int undoSize;
+    private int[] undoSymbols = new int[64];
+    private int[] undoNames = new int[64];
+
+    // names of the globals defined by calls, in the order of the walk
+    private int numCallDefs;
+    private int callDefCursor;
+    private int[] callDefs = new int[16];
+
+    private UseRewriter rewriter;
+    private int numRewritten;
+    private Walker walker;
+
+    // renaming a name
+    private int replacedName;
+    private Variable replacement;
+
+    public SSAForm (CFG cfg) {
+        dom = new DominatorTree(cfg);
+        // its own numbering, so the order the CFG's is filled in by later passes is left alone
+        numbering = new SymbolNumbering();
+        int n = dom.size();
+
+        int[] numSuccs = new int[n];
+        for (int b = 0; b < n; b++) {
+            for (int p : dom.predecessors(b)) {
+                numSuccs[p]++;
+            }
+        }
+        succs = new int[n][];
+        argIndices = new int[n][];
+        for (int b = 0; b < n; b++) {
+            succs[b] = new int[numSuccs[b]];
+            argIndices[b] = new int[numSuccs[b]];
+            numSuccs[b] = 0;
+        }
+        for (int b = 0; b < n; b++) {
+            int[] preds = dom.predecessors(b);
+            for (int i = 0; i < preds.length; i++) {
+                int p = preds[i];
+                succs[p][numSuccs[p]] = b;
+                argIndices[p][numSuccs[p]++] = i;
+            }
+        }
+
+        // Number the symbols first, so the rest is sized once
+        pass = Pass.NUMBER;
+        for (int b = 0; b < n; b++) {
+            for (TAC tac : dom.block(b)) {
+                operands(tac);
+            }
+        }
+        int numSymbols = numbering.size();
+        variables = Arrays.copyOf(variables, numSymbols);
+        definedIn = new int[numSymbols];
+        numDefBlocks = new int[numSymbols];
+        defBlocks = new int[numSymbols][];
+        current = new int[numSymbols];
+        entryNames = new int[numSymbols];
+        Arrays.fill(current, -1);
+        Arrays.fill(entryNames, -1);
+
+        pass = Pass.SCAN;
+        for (block = 0; block < n; block++) {
+            for (TAC tac : dom.block(block)) {
+                operands(tac);
+            }
+        }
+        insertPhis();
+        definedIn = null;
+        defBlocks = null;
+
+        pass = Pass.RENAME;
+        walk();
+    }
+
+    // Blocks are numbered as in the tree
+    public DominatorTree dominatorTree () {
+        return dom;
+    }
+
+    // Number of names
+    public int size () {
+        return numNames;
+    }
+
+    public Symbol symbol (int name) {
+        return numbering.symbol(nameSymbols[name]);
+    }
+
+    // The instruction defining the name, a Phi, or null for the entry name of a variable
+    public TAC definition (int name) {
+        return definitions[name];
+    }
+
+    // The name as an operand
+    public Variable variable (int name) {
+        return nameVariables[name];
+    }
+
+    // Uses of the name, once for each operand, -1 after the last
+    public int firstUse (int name) {
+        return firstUses[name];
+    }
+
+    public int nextUse (int use) {
+        return nextUses[use];
+    }
+
+    public TAC user (int use) {
+        return users[use];
+    }
+
+    // Rewrites each use outside of phis, walking the dominator tree so that isCurrent
+    // tells which names reach the use, and returns how many were replaced
+    public int rewriteUses (UseRewriter rewriter) {
+        this.rewriter = rewriter;
+        numRewritten = 0;
+        callDefCursor = 0;
+        pass = Pass.REWRITE;
+        walk();
+        this.rewriter = null;
+        return numRewritten;
+    }
+
+    // Walks the dominator tree as rewriteUses does, so that isCurrent tells which names
+    // reach each instruction
+    public void walk (Walker walker) {
+        this.walker = walker;
+        callDefCursor = 0;
+        pass = Pass.WALK;
+        walk();
+        this.walker = null;
+    }
+
+    // While rewriting or walking, whether the name is the version of its variable reaching the use
+    public boolean isCurrent (int name) {
+        return currentName(nameSymbols[name]) == name;
+    }
+
+    // Renames the name where it is defined and used to a version of a variable with no other
+    // definition, so that it still reaches every use, and returns false if a phi uses the name,
+    // since each phi stays over versions of one variable
+    public boolean rename (int name, Variable to) {
+        for (int use = firstUses[name]; use >= 0; use = nextUses[use]) {
+            if (users[use] instanceof Phi) {
+                return false;
+            }
+        }
+
+        Pass walking = pass;
+        pass = Pass.REPLACE;
+        replacedName = name;
+        replacement = to;
+        operands(definitions[name]);
+        for (int use = firstUses[name]; use >= 0; use = nextUses[use]) {
+            operands(users[use]);
+        }
+        nameVariables[name] = to;
+        replacement = null;
+        pass = walking;
+        return true;
+    }
+
+    // Takes the CFG out of SSA form
+    public void destroy () {
+        pass = Pass.DESTROY;
+        for (int b = 0; b < dom.size(); b++) {
+            List<TAC> instrs = dom.block(b).getInstructions();
+            int numPhis = 0;
+            while (numPhis < instrs.size() && instrs.get(numPhis) instanceof Phi) {
+                numPhis++;
+            }
+            instrs.subList(0, numPhis).clear();
+
+            for (TAC tac : instrs) {
+                operands(tac);
+            }
+        }
+    }
+
+    // Construction ===========================================================
+
+    // Phis of the variables that need them on the iterated frontiers of their definitions,
+    // none at the start whose entry names stand for the values it is entered with
+    private void insertPhis () {
+        int n = dom.size();
+        int[] hasPhi = new int[n];  // symbol + 1 of the last phi placed
+        int[] inWork = new int[n];
+        int[] work = new int[n];
+        Phi[][] phis = new Phi[n][];
+        int[] numPhis = new int[n];
+
+        for (int s = needPhis.nextSetBit(0); s >= 0; s = needPhis.nextSetBit(s + 1)) {
+            int size = 0;
+            for (int i = 0; i < numDefBlocks[s]; i++) {
+                int b = defBlocks[s][i];
+                inWork[b] = s + 1;
+                work[size++] = b;
+            }
+            while (size > 0) {
+                int x = work[--size];
+                for (int y : dom.frontier(x)) {
+                    if (y == 0 || hasPhi[y] == s + 1) {
+                        continue;
+                    }
+                    hasPhi[y] = s + 1;
+                    if (phis[y] == null) {
+                        phis[y] = new Phi[4];
+                    } else if (numPhis[y] == phis[y].length) {
+                        phis[y] = Arrays.copyOf(phis[y], numPhis[y] * 2);
+                    }
+                    phis[y][numPhis[y]++] = new Phi(-1, variables[s], dom.predecessors(y).length);
+                    if (inWork[y] != s + 1) {
+                        inWork[y] = s + 1;
+                        work[size++] = y;
+                    }
+                }
+            }
+        }
+
+        for (int b = 0; b < n; b++) {
+            if (numPhis[b] > 0) {
+                dom.block(b).getInstructions().addAll(0, Arrays.asList(phis[b]).subList(0, numPhis[b]));
+            }
+        }
+    }
+
+    // Preorder of the dominator tree, undoing the names a block defined when leaving it
+    private void walk () {
+        int n = dom.size();
+        int[] stack = new int[n];
+        int[] nextChild = new int[n];
+        int[] marks = new int[n];
+        int depth = 0;
+
+        marks[depth] = undoSize;
+        visit(0);
+        stack[depth] = 0;
+        nextChild[depth++] = 0;
+        while (depth > 0) {
+            int b = stack[depth - 1];
+            int[] children = dom.children(b);
+            if (nextChild[depth - 1] < children.length) {
+                int c = children[nextChild[depth - 1]++];
+                marks[depth] = undoSize;
+                visit(c);
+                stack[depth] = c;
+                nextChild[depth++] = 0;
+            } else {
+                depth--;
+                while (undoSize > marks[depth]) {
+                    undoSize--;
+                    current[undoSymbols[undoSize]] = undoNames[undoSize];
+                }
+                if (pass == Pass.WALK) {
+                    walker.leave(b);
+                }
+            }
+        }
+    }
+
+    private void visit (int b) {
+        BasicBlock bb = dom.block(b);
+        if (pass == Pass.WALK) {
+            walker.enter(b);
+            List<TAC> instrs = bb.getInstructions();
+            for (int i = 0; i < instrs.size(); i++) {
+                TAC tac = walker.instruction(instrs.get(i));
+                instrs.set(i, tac);
+                operands(tac);
+            }
+            return;
+        }
+        for (TAC tac : bb) {
+            operands(tac);
+        }
+        if (pass != Pass.RENAME) {
+            return;
+        }
+
+        // Arguments of the phis of the successors for the edge from this block
+        for (int k = 0; k < succs[b].length; k++) {
+            List<TAC> instrs = dom.block(succs[b][k]).getInstructions();
+            for (int i = 0; i < instrs.size() && instrs.get(i) instanceof Phi; i++) {
+                Phi phi = (Phi) instrs.get(i);
+                int name = currentName(numbering.number(phi.destination().symbol()));
+                phi.arguments().set(argIndices[b][k], nameVariables[name]);
+                addUse(name, phi);
+            }
+        }
+    }
+
+    // Operands ===============================================================
+
+    // Uses before definitions, as the instruction evaluates them
+    private void operands (TAC tac) {
+        if (tac instanceof Assign) {
+            Assign aTac = (Assign) tac;
+            aTac.setLeftOperand(use(tac, aTac.leftOperand()));
+            if (aTac.rightOperand() != null) {
+                aTac.setRightOperand(use(tac, aTac.rightOperand()));
+            }
+            aTac.setDestination(def(tac, aTac.destination()));
+        } else if (tac instanceof Jump) {
+            Jump jTac = (Jump) tac;
+            jTac.setComparison(use(tac, jTac.comparison()));
+        } else if (tac instanceof Call) {
+            Call cTac = (Call) tac;
+            List<Value> args = cTac.arguments().values();
+            for (int i = 0; i < args.size(); i++) {
+                args.set(i, use(tac, args.get(i)));
+            }
+            if (cTac.destination() != null) {
+                cTac.setDestination(def(tac, cTac.destination()));
+            }
+            if (cTac.functionCFG() != null) {
+                for (Symbol s : cTac.functionCFG().reassignedVariables()) {
+                    callDef(cTac, s);
+                }
+            }
+        } else if (tac instanceof Return) {
+            Return rTac = (Return) tac;
+            if (rTac.hasReturnValue()) {
+                rTac.setReturn(use(tac, rTac.returnValue()));
+            }
+        } else if (tac instanceof Store) {
+            Store sTac = (Store) tac;
+            sTac.setValue(use(tac, sTac.value()));
+            sTac.setLocation(location(tac, sTac.location()));
+        } else if (tac instanceof Print) {
+            Print pTac = (Print) tac;
+            if (pTac.argument() != null) {
+                pTac.setArgument(use(tac, pTac.argument()));
+            }
+        } else if (tac instanceof Input) {
+            Input iTac = (Input) tac;
+            iTac.setDestination(def(tac, iTac.destination()));
+        } else if (tac instanceof Load) {
+            Load lTac = (Load) tac;
+            lTac.setLocation(location(tac, lTac.location()));
+            lTac.setDestination(def(tac, lTac.destination()));
+        } else if (tac instanceof Phi) {
+            Phi phi = (Phi) tac;
+            phi.setDestination(def(tac, phi.destination()));
+        }
+    }
+
+    private Value use (TAC tac, Value v) {
+        if (!(v instanceof Variable)) {
+            return v;
+        }
+        Variable var = (Variable) v;
+
+        switch (pass) {
+            case NUMBER:
+                number(var);
+                return v;
+            case SCAN:
+                int s = numbering.number(var.symbol());
+                if (definedIn[s] != block + 1 || tac instanceof Move) {
+                    needPhis.set(s);
+                }
+                return v;
+            case RENAME:
+                int name = currentName(numbering.number(var.symbol()));
+                addUse(name, tac);
+                return var.withVersion(name);
+            case REWRITE:
+                if (var.version() < 0) {
+                    return v;
+                }
+                Value sub = rewriter.rewrite(var.version());
+                if (sub == null) {
+                    return v;
+                }
+                numRewritten++;
+                return sub;
+            case WALK:
+                return v;
+            case REPLACE:
+                return var.version() == replacedName ? replacement : v;
+            default:
+                return var.unversioned();
+        }
+    }
+
+    // A use that must stay a variable, which propagation leaves alone
+    private Variable location (TAC tac, Variable var) {
+        return pass == Pass.REWRITE ? var : (Variable) use(tac, var);
+    }
+
+    private Variable def (TAC tac, Variable var) {
+        switch (pass) {
+            case NUMBER:
+                number(var);
+                return var;
+            case SCAN:
+                define(numbering.number(var.symbol()));
+                return var;
+            case RENAME:
+                int name = newName(numbering.number(var.symbol()), tac);
+                Variable version = var.withVersion(name);
+                nameVariables[name] = version;
+                return version;
+            case REWRITE:
+            case WALK:
+                push(numbering.number(var.symbol()), var.version());
+                return var;
+            case REPLACE:
+                return var.version() == replacedName ? replacement : var;
+            default:
+                return var.unversioned();
+        }
+    }
+
+    // A global the function of the call may assign
+    private void callDef (Call tac, Symbol sym) {
+        switch (pass) {
+            case NUMBER:
+                int n = numbering.number(sym);
+                if (n >= variables.length) {
+                    variables = Arrays.copyOf(variables, Math.max(n + 1, variables.length * 2));
+                }
+                if (variables[n] == null) {
+                    variables[n] = new Variable(sym);
+                }
+                break;
+            case SCAN:
+                define(numbering.number(sym));
+                break;
+            case RENAME:
+                int s = numbering.number(sym);
+                int name = newName(s, tac);
+                nameVariables[name] = variables[s].withVersion(name);
+                if (numCallDefs == callDefs.length) {
+                    callDefs = Arrays.copyOf(callDefs, numCallDefs * 2);
+                }
+                callDefs[numCallDefs++] = name;
+                break;
+            case REWRITE:
+            case WALK:
+                push(numbering.number(sym), callDefs[callDefCursor++]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void number (Variable var) {
+        int n = numbering.number(var.symbol());
+        if (n >= variables.length) {
+            variables = Arrays.copyOf(variables, Math.max(n + 1, variables.length * 2));
+        }
+        if (variables[n] == null) {
+            variables[n] = var;
+        }
+    }
+
+    private void define (int s) {
+        if (definedIn[s] == block + 1) {
+            return;
+        }
+        definedIn[s] = block + 1;
+        if (defBlocks[s] == null) {
+            defBlocks[s] = new int[2];
+        } else if (numDefBlocks[s] == defBlocks[s].length) {
+            defBlocks[s] = Arrays.copyOf(defBlocks[s], numDefBlocks[s] * 2);
+        }
+        defBlocks[s][numDefBlocks[s]++] = block;
+    }
+
+    // Names ==================================================================
+
+    private int currentName (int s) {
+        if (current[s] >= 0) {
+            return current[s];
+        }
+        if (entryNames[s] < 0) {
+            entryNames[s] = newName(s, null);
+            nameVariables[entryNames[s]] = variables[s].withVersion(entryNames[s]);
+        }
+        return entryNames[s];
+    }
+
+    // A name defined by the instruction, reaching what follows in the walk
+    private int newName (int s, TAC def) {
+        if (numNames == nameSymbols.length) {
+            int capacity = numNames * 2;
+            nameSymbols = Arrays.copyOf(nameSymbols, capacity);
+            definitions = Arrays.copyOf(definitions, capacity);
+            nameVariables = Arrays.copyOf(nameVariables, capacity);
+            firstUses = Arrays.copyOf(firstUses, capacity);
+        }
+        int name = numNames++;
+        nameSymbols[name] = s;
+        definitions[name] = def;
+        firstUses[name] = -1;
+        if (def != null) {
+            push(s, name);
+        }
+        return name;
+    }
+
+    private void push (int s, int name) {
+        if (undoSize == undoSymbols.length) {
+            undoSymbols = Arrays.copyOf(undoSymbols, undoSize * 2);
+            undoNames = Arrays.copyOf(undoNames, undoSize * 2);
+        }
+        undoSymbols[undoSize] = s;
+        undoNames[undoSize++] = current[s];
+        current[s] = name;
+    }
+
+    private void addUse (int name, TAC user) {
+        if (numUses == users.length) {
+            users = Arrays.copyOf(users, numUses * 2);
+            nextUses = Arrays.copyOf(nextUses, numUses * 2);
+        }
+        users[numUses] = user;
+        nextUses[numUses] = firstUses[name];
+        firstUses[name] = numUses++;
+    }
+}
@@ -0,0 +1,37 @@
+package ir.tac;
+
+// Copies words from the source address down to the location, like DLX ARRCPY
+// Passes that track stores see the source address as the stored value
+public class ArrayCopy extends Store {
+
+    private int words;
+
+    public ArrayCopy(int id, Variable source, Variable loc, int words) {
+        super(id, source, loc);
+        this.words = words;
+    }
+
+    public ArrayCopy(ArrayCopy other) {
+        super(other);
+        this.words = other.words;
+    }
+
+    public int words() {
+        return words;
+    }
+
+    @Override
+    public void accept(TACVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public String toString() {
+        return (super.isEliminated() ? "eliminated-" : "") + super.getID() + " : ARRCPY " + value() + " " + location() + " " + words;
+    }
+
+    @Override
+    public TAC clone() {
+        return new ArrayCopy(this);
+    }
+}
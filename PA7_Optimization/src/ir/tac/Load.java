@@ -29,6 +29,10 @@ public class Load extends TAC {
         this.dest = dest;
     }
 
+    public void setLocation(Variable loc) {
+        this.loc = loc;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
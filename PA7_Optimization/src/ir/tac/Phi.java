@@ -0,0 +1,55 @@
+package ir.tac;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Version of a variable chosen by the edge a block is entered from, one argument for each predecessor
+// Only at the start of blocks of a CFG in SSA form, see ir.optimizations.SSAForm
+public class Phi extends TAC {
+
+    private Variable dest;
+    private List<Value> args;
+
+    public Phi(int id, Variable dest, int numArgs) {
+        super(id);
+        this.dest = dest;
+        this.args = new ArrayList<Value>(numArgs);
+        for (int i = 0; i < numArgs; i++) {
+            args.add(null);
+        }
+    }
+
+    public Phi(Phi other) {
+        super(other);
+        this.dest = other.dest;
+        this.args = new ArrayList<Value>(other.args);
+    }
+
+    public Variable destination() {
+        return dest;
+    }
+
+    public void setDestination(Variable dest) {
+        this.dest = dest;
+    }
+
+    // in the order of DominatorTree.predecessors
+    public List<Value> arguments() {
+        return args;
+    }
+
+    @Override
+    public void accept(TACVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public String toString() {
+        return (super.isEliminated() ? "eliminated-" : "") + super.getID() + " : " + dest + " := PHI " + args;
+    }
+
+    @Override
+    public TAC clone() {
+        return new Phi(this);
+    }
+}
@@ -29,6 +29,10 @@ public class Store extends TAC {
         val = newVal;
     }
 
+    public void setLocation(Variable newLoc) {
+        loc = newLoc;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -30,6 +30,11 @@ public interface TACVisitor {
     public void visit(Load instr);
     public void visit(Store instr);
 
+    // a bulk store, visited like any other store unless a visitor needs the difference
+    public default void visit(ArrayCopy instr) {
+        visit((Store) instr);
+    }
+
     public void visit(Read instr);
     public void visit(ReadB instr);
 
@@ -37,4 +42,9 @@ public interface TACVisitor {
     public void visit(WriteB instr);
     public void visit(WriteNL instr);
 
+    // only found in a CFG while it is in SSA form, which no visitor sees
+    public default void visit(Phi instr) {
+        throw new UnsupportedOperationException("Phi outside of SSA form");
+    }
+
 }
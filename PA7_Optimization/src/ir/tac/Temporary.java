@@ -11,6 +11,16 @@ public class Temporary extends Variable {
         this.instr = instr;
     }
 
+    protected Temporary(Temporary base, int version) {
+        super(base, version);
+        this.instr = base.instr;
+    }
+
+    @Override
+    public Variable withVersion(int version) {
+        return new Temporary((Temporary) unversioned(), version);
+    }
+
     public int definition() {
         return instr;
     }
@@ -5,15 +5,39 @@ import coco.Symbol;
 public class Variable implements Value {
 
     private Symbol sym;
+    private int version;    // SSA name, -1 outside of SSA form
+    private Variable base;  // what this is a version of, null if not a version
 
     public Variable(Symbol sym) {
         this.sym = sym;
+        this.version = -1;
+    }
+
+    protected Variable(Variable base, int version) {
+        this.sym = base.sym;
+        this.version = version;
+        this.base = base;
     }
 
     public Symbol symbol() {
         return sym;
     }
 
+    // A version of the variable in SSA form, see ir.optimizations.SSAForm
+    // Versions are still equal to the variable, only version() tells them apart
+    public Variable withVersion(int version) {
+        return new Variable(unversioned(), version);
+    }
+
+    public int version() {
+        return version;
+    }
+
+    // The variable this is a version of, or itself
+    public Variable unversioned() {
+        return base != null ? base : this;
+    }
+
     public boolean isGlobal() {
         return sym.isGlobalVariable();
     }
@@ -33,7 +57,7 @@ public class Variable implements Value {
 
     @Override
     public String toString() {
-        return sym.name();
+        return version >= 0 ? sym.name() + "_" + version : sym.name();
     }
 
     @Override